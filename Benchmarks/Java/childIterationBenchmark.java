@@ -0,0 +1,144 @@
+package SuffixTree.Java;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+  JMH benchmark of visiting the children of the vertices, packaged with the other
+  benchmarks into Benchmarks/target/benchmarks.jar:
+
+    java -jar Benchmarks/target/benchmarks.jar childIterationBenchmark -rf json -rff results.json
+
+  For K = 256 and K = 4096 it builds a suffix tree over symbols drawn from a skewed
+  distribution, like words in a text, and finds the contexts of patterns of two symbols
+  taken from the symbol list. The benchmarks are in nanoseconds per query:
+    scan                  Counts the leaves below the context by trying all K directions
+                          of every vertex, which is what every query cost before the
+                          children were visited in direction order
+    children              Counts the same leaves by visiting only the children, through
+                          getFirstDirection and getNextDirection
+    getInstanceEndPoints  Collects the instance endpoints of the context
+  and printIndexTree prints the whole suffix tree into a stream which discards it, in
+  milliseconds. The ratio of scan to children is the gain of visiting the children over
+  trying every direction, which grows with K.
+*/
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class childIterationBenchmark{
+
+    static final int NR_OF_QUERIES = 2000;
+
+    @Param({"SUFFIX_LINK_ENGINE", "ARENA_ENGINE"})
+    public String engine;
+
+    @Param({"256", "4096"})
+    public int K;
+
+    @Param({"200000"})
+    public int n;
+
+    private suffixTree T;
+    private Context contexts[];
+    private int next;  //the context queried next
+    private PrintStream out;
+
+    /**
+       Builds the suffix tree and finds the contexts queried.
+
+       @throws ContextException If a pattern taken from the symbol list is not a context
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ContextException{
+	Random R = new Random(K);
+	T = new suffixTree(K, engine.equals("ARENA_ENGINE") ? suffixTree.ARENA_ENGINE : suffixTree.SUFFIX_LINK_ENGINE);
+	for (int i=0; i<n; i++) T.add((int)(K * Math.pow(R.nextDouble(), 3)));
+	symbolList L = T.getSymbolList();
+
+	contexts = new Context[NR_OF_QUERIES];
+	for (int q=0; q<NR_OF_QUERIES; q++){
+	    int i = R.nextInt(n - 2);
+	    contexts[q] = new Context(T.getRoot(), -1, -1, L).newContext(L.get(i)).newContext(L.get(i + 1));
+	}
+	next = 0;
+
+	out = System.out;
+	System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+	System.setOut(out);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int scan(){
+	Context C = nextContext();
+	Vertex v = C.getBaseVertex();
+	if (C.getDirection() >= 0){
+	    if (v.isLeafChild(C.getDirection())) return 1;
+	    v = v.getInternalChild(C.getDirection());
+	}
+	return scanLeaves(v);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int children(){
+	Context C = nextContext();
+	Vertex v = C.getBaseVertex();
+	if (C.getDirection() >= 0){
+	    if (v.isLeafChild(C.getDirection())) return 1;
+	    v = v.getInternalChild(C.getDirection());
+	}
+	return countLeaves(v);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ArrayList<Integer> getInstanceEndPoints(){
+	return nextContext().getInstanceEndPoints();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void printIndexTree(){
+	T.printIndexTree();
+    }
+
+    /*
+       Gets the contexts in turn.
+     */
+    private Context nextContext(){
+	Context C = contexts[next];
+	if (++next == contexts.length) next = 0;
+	return C;
+    }
+
+    private int scanLeaves(Vertex v){
+	int count = 0;
+	for (int k=0; k<K; k++){
+	    if (!v.hasChild(k)) continue;
+	    if (v.isLeafChild(k)) count++;
+	    else count += scanLeaves(v.getInternalChild(k));
+	}
+	return count;
+    }
+
+    private static int countLeaves(Vertex v){
+	int count = 0;
+	for (int k=v.getFirstDirection(); k!=-1; k=v.getNextDirection(k)){
+	    if (v.isLeafChild(k)) count++;
+	    else count += countLeaves(v.getInternalChild(k));
+	}
+	return count;
+    }
+}
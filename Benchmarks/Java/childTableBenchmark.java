@@ -0,0 +1,98 @@
+package SuffixTree.Java;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+  JMH benchmark of the child tables of the vertices, packaged with the other benchmarks
+  into Benchmarks/target/benchmarks.jar:
+
+    java -jar Benchmarks/target/benchmarks.jar childTableBenchmark -rf json -rff results.json
+
+  For a range of alphabet sizes it builds a suffix tree over symbols drawn from a skewed
+  distribution, like words in a text:
+    lookup     Walks from the root along the suffix beginning at a random index, looking
+               up the child of every vertex on the way. The result is the walks per
+               second, with the child lookups per second as the secondary metric lookups
+    footprint  The time of building one suffix tree, with the bytes retained per symbol
+               as the secondary metric bytesPerSymbol, found as by suffixTreeBenchmark
+*/
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class childTableBenchmark{
+
+    @Param({"SUFFIX_LINK_ENGINE", "ARENA_ENGINE"})
+    public String engine;
+
+    @Param({"2", "4", "256", "4096", "65536"})
+    public int K;
+
+    @Param({"200000"})
+    public int n;
+
+    private int A[];
+    private suffixTree T;
+    private symbolList L;
+    private Random R;
+
+    /**
+       The child lookups, counted as a rate next to the walks.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class lookupCounter{
+	public long lookups;
+    }
+
+    /**
+       Makes the symbols and the suffix tree which is walked.
+     */
+    @Setup(Level.Trial)
+    public void setUp(){
+	R = new Random(K);
+	A = new int[n];
+	for (int i=0; i<n; i++) A[i] = (int)(K * Math.pow(R.nextDouble(), 3));
+	T = new suffixTree(K, getEngine());
+	T.add(A, 0, n);
+	L = T.getSymbolList();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int lookup(lookupCounter C){
+	Vertex v = T.getRoot();
+	int j = R.nextInt(n);
+	while (j < n){
+	    int k = L.get(j);
+	    C.lookups++;
+	    if (!v.hasChild(k) || v.isLeafChild(k)) break;
+	    Vertex child = v.getInternalChild(k);
+	    j += child.getIndexTo() - v.getIndexFrom(k) + 1;
+	    v = child;
+	}
+	return j;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public suffixTree footprint(suffixTreeBenchmark.footprintCounter F){
+	suffixTree S = new suffixTree(K, getEngine());
+	S.add(A, 0, A.length);
+	F.bytesPerSymbol = (double)suffixTreeBenchmark.retainedBytes(S) / A.length;
+	return S;
+    }
+
+    /*
+       Maps the name of the engine to the engine.
+     */
+    private int getEngine(){
+	return engine.equals("ARENA_ENGINE") ? suffixTree.ARENA_ENGINE : suffixTree.SUFFIX_LINK_ENGINE;
+    }
+}
@@ -0,0 +1,90 @@
+package SuffixTree.Java;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+  JMH benchmark of the ways of adding symbols to the suffix tree, packaged with the other
+  benchmarks into Benchmarks/target/benchmarks.jar:
+
+    java -jar Benchmarks/target/benchmarks.jar ingestionBenchmark -rf json -rff results.json
+
+  For every engine it builds a suffix tree of random symbols over an alphabet of 4 symbols,
+  adding them by every method:
+    each    add(int), one symbol at a time
+    array   add(int[], off, len)
+    buffer  add(IntBuffer)
+    stream  add(IntStream)
+  The result is the suffix trees built per second, with the symbols added per second as
+  the secondary metric symbols. The context set engine is given nContextSet symbols
+  instead of n, as in suffixTreeBenchmark.
+*/
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ingestionBenchmark{
+
+    static final int K = 4;
+
+    @Param({"CONTEXT_SET_ENGINE", "SUFFIX_LINK_ENGINE", "ARENA_ENGINE"})
+    public String engine;
+
+    @Param({"each", "array", "buffer", "stream"})
+    public String method;
+
+    @Param({"1000000"})
+    public int n;  //the number of symbols given to the suffix link engine and the arena engine
+
+    @Param({"12500"})
+    public int nContextSet;  //the number of symbols given to the context set engine
+
+    private int A[];
+
+    /**
+       Makes the symbols.
+     */
+    @Setup(Level.Trial)
+    public void setUp(){
+	A = new int[(getEngine() == suffixTree.CONTEXT_SET_ENGINE) ? nContextSet : n];
+	Random R = new Random(1);
+	for (int i=0; i<A.length; i++) A[i] = R.nextInt(K);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public contextSet add(suffixTreeBenchmark.symbolCounter S){
+	suffixTree T = new suffixTree(K, getEngine());
+	S.symbols += A.length;
+	switch (method){
+	case "each":
+	    contextSet CS = null;
+	    for (int a : A) CS = T.add(a);
+	    return CS;
+	case "array":
+	    return T.add(A, 0, A.length);
+	case "buffer":
+	    return T.add(IntBuffer.wrap(A));
+	default:
+	    return T.add(IntStream.of(A));
+	}
+    }
+
+    /*
+       Maps the name of the engine to the engine.
+     */
+    private int getEngine(){
+	switch (engine){
+	case "CONTEXT_SET_ENGINE":
+	    return suffixTree.CONTEXT_SET_ENGINE;
+	case "SUFFIX_LINK_ENGINE":
+	    return suffixTree.SUFFIX_LINK_ENGINE;
+	default:
+	    return suffixTree.ARENA_ENGINE;
+	}
+    }
+}
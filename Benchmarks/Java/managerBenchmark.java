@@ -0,0 +1,106 @@
+package SuffixTree.Java;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+  JMH benchmark of the suffix tree manager, packaged with the other benchmarks into
+  Benchmarks/target/benchmarks.jar:
+
+    java -jar Benchmarks/target/benchmarks.jar managerBenchmark -rf json -rff results.json
+
+  PRODUCERS producer threads submit random symbols over an alphabet of 4 symbols to many
+  streams, BLOCK symbols at a time, and a query counting a pattern now and then. The
+  result is the blocks submitted per second, with the symbols submitted per second as
+  the secondary metric symbols. At the end of every iteration the queue depth, the
+  number of streams and the latencies of every shard are printed, and the mailboxes are
+  flushed, so every iteration begins with the writers caught up.
+*/
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class managerBenchmark{
+
+    static final int K = 4;
+    static final int BLOCK = 8;        //the symbols submitted at a time
+    static final int PRODUCERS = 4;    //the threads submitting symbols
+    static final int QUERY_RATE = 100; //one block in this many is followed by a query
+
+    @Param({"SUFFIX_LINK_ENGINE", "ARENA_ENGINE"})
+    public String engine;
+
+    @Param({"1000"})
+    public int streams;
+
+    @Param({"4"})
+    public int nrOfShards;
+
+    @Param({"256"})
+    public int batchSize;
+
+    private suffixTreeManager<Integer> M;
+    private final AtomicInteger nextProducer = new AtomicInteger();
+
+    /**
+       The stream a producer submits to next, and its symbols.
+     */
+    @State(Scope.Thread)
+    public static class producer{
+	int first, stream;
+	Random R;
+	int A[] = new int[BLOCK];
+
+	@Setup(Level.Trial)
+	public void setUp(managerBenchmark B){
+	    first = B.nextProducer.getAndIncrement();
+	    stream = first;
+	    R = new Random(first);
+	}
+    }
+
+    /**
+       Starts the manager.
+     */
+    @Setup(Level.Trial)
+    public void setUp(){
+	M = new suffixTreeManager<Integer>(K, engine.equals("ARENA_ENGINE") ? suffixTree.ARENA_ENGINE : suffixTree.SUFFIX_LINK_ENGINE, nrOfShards, batchSize);
+    }
+
+    /**
+       Prints the statistics of every shard and lets the writers catch up.
+
+       @throws java.lang.InterruptedException If the thread is interrupted while
+               waiting for the writers
+     */
+    @TearDown(Level.Iteration)
+    public void flush() throws InterruptedException{
+	System.out.println();
+	System.out.println(String.format("%-8s%10s%10s%16s%16s%18s", "shard", "depth", "streams", "mean add (us)", "max add (us)", "mean query (us)"));
+	for (int i=0; i<M.getNrOfShards(); i++){
+	    System.out.println(String.format("%-8d%10d%10d%16d%16d%18d", i, M.getQueueDepth(i), M.getNrOfStreams(i),
+					     M.getMeanAddLatency(i) / 1000, M.getMaxAddLatency(i) / 1000, M.getMeanQueryLatency(i) / 1000));
+	}
+	M.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+	M.close();
+    }
+
+    @Benchmark
+    @Threads(PRODUCERS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void submit(producer P, suffixTreeBenchmark.symbolCounter S){
+	for (int i=0; i<BLOCK; i++) P.A[i] = P.R.nextInt(K);
+	M.submit(P.stream, P.A, 0, BLOCK);
+	if (P.R.nextInt(QUERY_RATE) == 0) M.count(P.stream, new int[]{P.A[0], P.A[1]});
+	S.symbols += BLOCK;
+	P.stream += PRODUCERS;
+	if (P.stream >= streams) P.stream = P.first;
+    }
+}
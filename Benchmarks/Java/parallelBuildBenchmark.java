@@ -0,0 +1,68 @@
+package SuffixTree.Java;
+
+import java.io.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+  JMH benchmark of building the suffix tree on a fork/join pool, packaged with the other
+  benchmarks into Benchmarks/target/benchmarks.jar:
+
+    java -jar Benchmarks/target/benchmarks.jar parallelBuildBenchmark -rf json -rff results.json
+
+  It runs for pools of 1, 4, 16 and 32 threads, for the suffix link engine and the arena
+  engine, and for the inputs of suffixTreeBenchmark. The result is the suffix trees built
+  per second, with the symbols per second as the secondary metric symbols, so the speedup
+  over one thread is the ratio of two results, and the add benchmark of suffixTreeBenchmark
+  gives the time of adding the symbols one at a time. The speedup is bounded by the number
+  of cores of the machine, and the periodic input has long repeats, for which adding the
+  symbols one at a time is faster.
+*/
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class parallelBuildBenchmark{
+
+    @Param({"1", "4", "16", "32"})
+    public int threads;
+
+    @Param({"SUFFIX_LINK_ENGINE", "ARENA_ENGINE"})
+    public String engine;
+
+    @Param({"random", "periodic", "fibonacci", "text"})
+    public String input;
+
+    @Param({"4", "256"})
+    public int K;
+
+    @Param({"1000000"})
+    public int n;
+
+    private int A[];
+    private ForkJoinPool pool;
+
+    /**
+       Makes the symbols and the pool.
+
+       @throws java.io.IOException If the text cannot be read
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException{
+	A = suffixTreeBenchmark.input(input, K, n, suffixTreeBenchmark.sources());
+	pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+	pool.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public suffixTree build(suffixTreeBenchmark.symbolCounter S){
+	S.symbols += A.length;
+	return new suffixTree(K, engine.equals("ARENA_ENGINE") ? suffixTree.ARENA_ENGINE : suffixTree.SUFFIX_LINK_ENGINE, A, 0, A.length, pool);
+    }
+}
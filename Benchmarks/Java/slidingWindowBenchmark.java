@@ -0,0 +1,129 @@
+package SuffixTree.Java;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+  JMH benchmark of the sliding window suffix tree under an endless stream of symbols,
+  packaged with the other benchmarks into Benchmarks/target/benchmarks.jar:
+
+    java -jar Benchmarks/target/benchmarks.jar slidingWindowBenchmark -rf json -rff results.json
+
+  The symbols are random symbols over an alphabet of 4 symbols, drawn as they are added,
+  so the stream has no end. It runs for every engine and the window sizes W = 2^16, 2^18
+  and 2^20:
+    add        Blocks of BLOCK symbols added per second once the window is full, with the
+               symbols added per second as the secondary metric symbols. The window is
+               full before the first block, so every block evicts as many symbols as it
+               adds
+    footprint  The time of streaming 8W symbols through an empty window, with the bytes
+               retained per window symbol after 8W symbols as the secondary metric
+               bytesPerSymbol, and the bytes retained after 8W symbols divided by the
+               bytes retained after 2W symbols as the secondary metric growth. The bytes
+               are found as by suffixTreeBenchmark, and at both points the window has
+               just turned over, so the suffix trees are alike
+  The store is proportional to W when bytesPerSymbol is about the same for every W and
+  growth is about 1, however many symbols have passed through the window.
+*/
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class slidingWindowBenchmark{
+
+    static final int K = 4;
+    static final int BLOCK = 4096;  //the symbols added by one call of add
+
+    @Param({"CONTEXT_SET_ENGINE", "SUFFIX_LINK_ENGINE", "ARENA_ENGINE"})
+    public String engine;
+
+    @Param({"65536", "262144", "1048576"})
+    public int W;
+
+    private slidingWindowSuffixTree T;
+    private SplittableRandom R;
+    private int A[];
+
+    /**
+       The symbols added, counted as a rate next to the blocks added.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class symbolCounter{
+	public long symbols;
+    }
+
+    /**
+       The store of the last window streamed through.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class footprintCounter{
+	public double bytesPerSymbol;
+	public double growth;
+    }
+
+    /**
+       Fills the window, so the benchmark starts in the steady state.
+     */
+    @Setup(Level.Trial)
+    public void setUp(){
+	R = new SplittableRandom(1);
+	A = new int[BLOCK];
+	T = new slidingWindowSuffixTree(K, W, getEngine());
+	stream(T, 2L * W);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public slidingWindowSuffixTree add(symbolCounter S){
+	for (int i=0; i<BLOCK; i++) A[i] = R.nextInt(K);
+	T.add(A, 0, BLOCK);
+	S.symbols += BLOCK;
+	return T;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public slidingWindowSuffixTree footprint(footprintCounter F){
+	slidingWindowSuffixTree S = new slidingWindowSuffixTree(K, W, getEngine());
+	stream(S, 2L * W);
+	long early = suffixTreeBenchmark.retainedBytes(S);
+	stream(S, 6L * W);
+	long late = suffixTreeBenchmark.retainedBytes(S);
+	F.bytesPerSymbol = (double)late / W;
+	F.growth = (double)late / early;
+	return S;
+    }
+
+    /*
+       Adds the given number of symbols from the stream.
+     */
+    private void stream(slidingWindowSuffixTree S, long n){
+	for (long added=0; added<n; ){
+	    int length = (int)Math.min(BLOCK, n - added);
+	    for (int i=0; i<length; i++) A[i] = R.nextInt(K);
+	    S.add(A, 0, length);
+	    added += length;
+	}
+    }
+
+    /*
+       Maps the name of the engine to the engine.
+     */
+    private int getEngine(){
+	switch (engine){
+	case "CONTEXT_SET_ENGINE":
+	    return suffixTree.CONTEXT_SET_ENGINE;
+	case "SUFFIX_LINK_ENGINE":
+	    return suffixTree.SUFFIX_LINK_ENGINE;
+	default:
+	    return suffixTree.ARENA_ENGINE;
+	}
+    }
+}
@@ -0,0 +1,301 @@
+package SuffixTree.Java;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+  JMH benchmarks of the construction, the context queries and the store of the suffix tree.
+  They are packaged by the build in Benchmarks into Benchmarks/target/benchmarks.jar, and
+  the option -rf json writes the results as JSON, so they can be kept and compared from one
+  change to the next:
+
+    java -jar Benchmarks/target/benchmarks.jar suffixTreeBenchmark -rf json -rff results.json
+
+  Every benchmark runs for every engine, every input, every alphabet size K = 2, 4, 256,
+  4096 and 65536 and the number of symbols, which are parameters that -p may narrow down:
+    add                   Suffix trees built by add(int[], off, len) per second, with the
+                          symbols added per second as the secondary metric symbols
+    addEach               The same, with the symbols added one at a time by add(int)
+    getInstanceEndPoints  Nanoseconds per call, for contexts spread over the context set
+    getSymbols            Nanoseconds per call, for the same contexts
+    getSize               Nanoseconds per call, for the same contexts
+    footprint             The time of building one suffix tree, with the bytes retained per
+                          symbol as the secondary metric bytesPerSymbol. They are found by
+                          walking the objects reachable from the suffix tree and adding up
+                          their sizes in the usual layout of a 64 bit virtual machine with
+                          compressed references
+
+  The inputs are random symbols, a random block of 1000 symbols repeated, the Fibonacci word
+  and a text, whose bytes are the symbols when K <= 256 and whose characters are the symbols
+  when K = 65536. The text is the Java sources in the directory Java, or in the current
+  directory if there is none. The symbols are mapped into the alphabet the same way as add
+  does. The context set engine takes time proportional to the number of contexts for every
+  symbol, so it is given the number of symbols nContextSet instead of n.
+*/
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class suffixTreeBenchmark{
+
+    static final int NR_OF_CONTEXTS = 64;  //the contexts queried in every suffix tree
+
+    @Param({"CONTEXT_SET_ENGINE", "SUFFIX_LINK_ENGINE", "ARENA_ENGINE"})
+    public String engine;
+
+    @Param({"random", "periodic", "fibonacci", "text"})
+    public String input;
+
+    @Param({"2", "4", "256", "4096", "65536"})
+    public int K;
+
+    @Param({"200000"})
+    public int n;  //the number of symbols given to the suffix link engine and the arena engine
+
+    @Param({"12500"})
+    public int nContextSet;  //the number of symbols given to the context set engine
+
+    private int A[];
+    private Context contexts[];
+    private int next;  //the context queried next
+
+    /**
+       The symbols added, counted as a rate next to the suffix trees built.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class symbolCounter{
+	public long symbols;
+    }
+
+    /**
+       The bytes retained per symbol by the last suffix tree built.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class footprintCounter{
+	public double bytesPerSymbol;
+    }
+
+    /**
+       Makes the symbols and the suffix tree whose contexts are queried.
+
+       @throws java.io.IOException If the text cannot be read
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException{
+	A = input(input, K, (getEngine() == suffixTree.CONTEXT_SET_ENGINE) ? nContextSet : n, sources());
+	suffixTree T = new suffixTree(K, getEngine());
+	contextSet CS = T.add(A, 0, A.length);
+
+	//the contexts queried, spread over the context set, but not the empty context unless it is the only one:
+	ArrayList<Context> C = new ArrayList<Context>();
+	for (int i=1; i<CS.size(); i+=Math.max(1, (CS.size() - 1) / NR_OF_CONTEXTS)) C.add(CS.get(i));
+	if (C.isEmpty()) C.add(CS.get(0));
+	contexts = C.toArray(new Context[0]);
+	next = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public contextSet add(symbolCounter S){
+	suffixTree T = new suffixTree(K, getEngine());
+	S.symbols += A.length;
+	return T.add(A, 0, A.length);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public contextSet addEach(symbolCounter S){
+	suffixTree T = new suffixTree(K, getEngine());
+	contextSet CS = null;
+	for (int a : A) CS = T.add(a);
+	S.symbols += A.length;
+	return CS;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ArrayList<Integer> getInstanceEndPoints(){
+	return nextContext().getInstanceEndPoints();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ArrayList<Integer> getSymbols(){
+	return nextContext().getSymbols();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int getSize(){
+	return nextContext().getSize();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public suffixTree footprint(footprintCounter F){
+	suffixTree T = new suffixTree(K, getEngine());
+	T.add(A, 0, A.length);
+	F.bytesPerSymbol = (double)retainedBytes(T) / A.length;
+	return T;
+    }
+
+    /*
+       Gets the contexts in turn.
+     */
+    private Context nextContext(){
+	Context C = contexts[next];
+	if (++next == contexts.length) next = 0;
+	return C;
+    }
+
+    /*
+       Maps the name of the engine to the engine.
+     */
+    private int getEngine(){
+	switch (engine){
+	case "CONTEXT_SET_ENGINE":
+	    return suffixTree.CONTEXT_SET_ENGINE;
+	case "SUFFIX_LINK_ENGINE":
+	    return suffixTree.SUFFIX_LINK_ENGINE;
+	default:
+	    return suffixTree.ARENA_ENGINE;
+	}
+    }
+
+    /*
+       Makes the given number of symbols of an input over an alphabet of K symbols.
+     */
+    static int[] input(String input, int K, int n, String text){
+	int A[] = new int[n];
+	Random R = new Random(1);
+	switch (input){
+	case "random":
+	    for (int i=0; i<n; i++) A[i] = R.nextInt(K);
+	    break;
+	case "periodic":
+	    for (int i=0; i<n; i++) A[i] = (i < 1000) ? R.nextInt(K) : A[i - 1000];
+	    break;
+	case "fibonacci":  //the limit of the words s(i) = s(i - 1) s(i - 2), beginning with s(1) = 0 and s(2) = 01
+	    int length = 1;
+	    A[0] = 0;
+	    if (n > 1) A[length++] = 1;
+	    for (int previous=1; length<n; ){
+		int copy = Math.min(previous, n - length);
+		System.arraycopy(A, 0, A, length, copy);
+		previous = length;
+		length += copy;
+	    }
+	    break;
+	default:
+	    byte bytes[] = text.getBytes(StandardCharsets.UTF_8);
+	    for (int i=0; i<n; i++) A[i] = ((K > 256) ? text.charAt(i % text.length()) : (bytes[i % bytes.length] & 0xFF)) % K;
+	}
+	return A;
+    }
+
+    /*
+       Reads the Java sources in the directory Java, or in the current directory if
+       there is none, which are the text.
+     */
+    static String sources() throws IOException{
+	File directory = new File("Java").isDirectory() ? new File("Java") : new File(".");
+	StringBuilder B = new StringBuilder();
+	File files[] = directory.listFiles((dir, name) -> name.endsWith(".java"));
+	if (files != null){
+	    Arrays.sort(files);
+	    for (File f : files) B.append(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+	}
+	if (B.length() == 0) B.append("no text was found");
+	return B.toString();
+    }
+
+    /*
+       Adds up the sizes of the objects reachable from an object. Objects of the Java
+       runtime whose fields cannot be read are counted, but not followed.
+     */
+    static long retainedBytes(Object root){
+	IdentityHashMap<Object, Boolean> visited = new IdentityHashMap<Object, Boolean>();
+	ArrayDeque<Object> stack = new ArrayDeque<Object>();
+	HashMap<Class<?>, Field[]> references = new HashMap<Class<?>, Field[]>();
+	HashMap<Class<?>, Long> sizes = new HashMap<Class<?>, Long>();
+	long bytes = 0;
+	visited.put(root, Boolean.TRUE);
+	stack.push(root);
+	while (!stack.isEmpty()){
+	    Object o = stack.pop();
+	    Class<?> c = o.getClass();
+	    if (c.isArray()){
+		int length = Array.getLength(o);
+		Class<?> component = c.getComponentType();
+		bytes += align(16 + (long)length * sizeOf(component));
+		if (!component.isPrimitive()){
+		    for (Object element : (Object[]) o) follow(element, visited, stack);
+		}
+		continue;
+	    }
+	    if (!sizes.containsKey(c)) layout(c, references, sizes);
+	    bytes += sizes.get(c);
+	    for (Field f : references.get(c)){
+		try{
+		    follow(f.get(o), visited, stack);
+		} catch (IllegalAccessException IAE){
+		}
+	    }
+	}
+	return bytes;
+    }
+
+    /*
+       Finds the size of the objects of a class and the reference fields which can be
+       followed.
+     */
+    static void layout(Class<?> c, HashMap<Class<?>, Field[]> references, HashMap<Class<?>, Long> sizes){
+	long size = 12;  //the object header
+	ArrayList<Field> fields = new ArrayList<Field>();
+	for (Class<?> k=c; k!=null; k=k.getSuperclass()){
+	    for (Field f : k.getDeclaredFields()){
+		if (Modifier.isStatic(f.getModifiers())) continue;
+		size += sizeOf(f.getType());
+		if (f.getType().isPrimitive()) continue;
+		try{
+		    f.setAccessible(true);
+		    fields.add(f);
+		} catch (RuntimeException RE){  //a class of the Java runtime, which is not opened
+		}
+	    }
+	}
+	sizes.put(c, align(size));
+	references.put(c, fields.toArray(new Field[0]));
+    }
+
+    static void follow(Object o, IdentityHashMap<Object, Boolean> visited, ArrayDeque<Object> stack){
+	if ((o != null) && !(o instanceof Class) && (visited.put(o, Boolean.TRUE) == null)) stack.push(o);
+    }
+
+    static long sizeOf(Class<?> type){
+	if ((type == long.class) || (type == double.class)) return 8;
+	if ((type == int.class) || (type == float.class)) return 4;
+	if ((type == short.class) || (type == char.class)) return 2;
+	if ((type == byte.class) || (type == boolean.class)) return 1;
+	return 4;  //a compressed reference
+    }
+
+    static long align(long size){
+	return (size + 7) & ~7L;
+    }
+}
@@ -22,6 +22,7 @@
 package SuffixTree.Java;
 
 import java.util.*;
+import java.util.function.*;
 
 /**
    This class represents a context by a base vertex, a direction and and an offset.
@@ -43,7 +44,7 @@ public class Context{
 
     private Vertex baseVertex;
     private int direction, offset;
-    private ArrayList L;
+    private symbolList L;
 
     /**
        Creates a new context.
@@ -55,13 +56,29 @@ public class Context{
                          parameter "direction"
        @param L          The symbol sequence
      */
-    protected Context(Vertex baseVertex, int direction, int offset, ArrayList L){
+    protected Context(Vertex baseVertex, int direction, int offset, symbolList L){
 	this.baseVertex = baseVertex;
 	this.direction  = direction;
 	this.offset     = offset;
 	this.L          = L;
     }
 
+    /**
+       Makes this context end somewhere else. It is used in order to reuse one
+       context for reading the contexts of a context set one at a time.
+
+       @param baseVertex The context's base vertex
+       @param direction  The direction from the base vertex toward the end of the
+                         context
+       @param offset     The offset from the base vertex in the direction given by
+                         parameter "direction"
+     */
+    protected void set(Vertex baseVertex, int direction, int offset){
+	this.baseVertex = baseVertex;
+	this.direction  = direction;
+	this.offset     = offset;
+    }
+
     /**
        Returns a new context which extends this one with one symbol.
 
@@ -70,16 +87,28 @@ public class Context{
        @throws  ContextException If there is an inconsistency in data
      */
     public Context newContext(int a) throws ContextException{
+	Context C = new Context(baseVertex, direction, offset, L);
+	C.extend(a);
+	return C;
+    }
+
+    /**
+       Extends this context with one symbol. It is used on a context which is
+       not seen by callers, so no new context has to be created.
+
+       @param a The symbol extending this context
+       @throws  ContextException If there is an inconsistency in data, in
+                                 which case this context is unchanged
+     */
+    protected void extend(int a) throws ContextException{
 	Vertex baseVertex = null;
 	int direction = -1;
 	int offset = -1;
-	Vertex child = null;
 	int indexTo = -1;
 	int indexFrom = -1;
 
 	if (this.direction == -1){  //context is given by this.baseVertex
-	    child = this.baseVertex.getChild(a);
-	    indexTo = child.getIndexTo();
+	    indexTo = this.baseVertex.getIndexTo(a);
 	    indexFrom = this.baseVertex.getIndexFrom(a);
 
 	    if (indexTo > indexFrom){
@@ -87,15 +116,14 @@ public class Context{
 		direction = a;
 		offset = 0;
 	    } else if (indexTo == indexFrom){
-		baseVertex = child;
+		baseVertex = this.baseVertex.getChild(a);
 		direction = -1;
 		offset = -1;
 	    } else{
 		throw new ContextException("indexTo < indexFrom");
 	    }
 	} else{  //context is given by edge from this.baseVertex
-	    child = this.baseVertex.getChild(this.direction);
-	    indexTo = child.getIndexTo();
+	    indexTo = this.baseVertex.getIndexTo(this.direction);
 	    indexFrom = this.baseVertex.getIndexFrom(this.direction);
 
 	    if (indexTo > indexFrom + this.offset + 1){
@@ -103,14 +131,16 @@ public class Context{
 		direction = this.direction;
 		offset = this.offset + 1;
 	    } else if (indexTo == indexFrom + this.offset + 1){
-		baseVertex = child;
+		baseVertex = this.baseVertex.getChild(this.direction);
 		direction = -1;
 		offset = -1;
 	    } else{
 		throw new ContextException("indexTo < indexFrom + this.offset + 1");
 	    }
 	}
-	return new Context(baseVertex, direction, offset, L);
+	this.baseVertex = baseVertex;
+	this.direction  = direction;
+	this.offset     = offset;
     }
 
     /**
@@ -123,9 +153,11 @@ public class Context{
      */
     protected boolean isContext(int a){
 	if (direction == -1){  //context is given by baseVertex
-	    return baseVertex.getChild(a) != null;
+	    return baseVertex.hasChild(a);
 	} else{  //context is given by edge from baseVertex
-	    return ((Integer)L.get(baseVertex.getIndexFrom(direction) + offset + 1)).intValue() == a;
+	    int i = baseVertex.getIndexFrom(direction) + offset + 1;
+	    if (i >= L.size()) return false;  //the edge is a leaf edge ending here
+	    return L.get(i) == a;
 	}
     }
 
@@ -139,27 +171,73 @@ public class Context{
     public boolean hasDecodedSuffix(){
 	if (direction < 0) return false;
 
-	return baseVertex.getChild(direction).isLeaf();
+	return baseVertex.isLeafChild(direction);
     }
 
     /**
        Returns a boolean value which is true if this context is an extension
-       of the argument context and which is false otherwise.
+       of the argument context and which is false otherwise. It takes constant
+       time when both contexts are in the same suffix tree, since this context
+       is then an extension of the argument context exactly when taking away
+       this context's last symbol ends it where the argument context ends.
+       <p>
+       A context made before an edge was split still refers to the edge, so the
+       places where the contexts end are first found again below the vertices
+       made by the splits. That takes time proportional to their number, and the
+       contexts may be taken from different versions of the suffix tree.
+       </p>
 
        @return A boolean value which is true if this context is an extension
                of the argument context and which is false otherwise.
      */
     public boolean isExtensionOf(Context C){
-	ArrayList<Integer> symbols1 = this.getSymbols();
-	ArrayList<Integer> symbols2 = C.getSymbols();
+	if (getSize() != C.getSize() + 1) return false;
 
-	if (symbols1.size() != symbols2.size() + 1) return false;
-	
-	for (int i=0; i<symbols2.size(); i++){
-	    if (((Integer)symbols1.get(i)).intValue() != ((Integer)symbols2.get(i)).intValue())
-		return false;
+	if (L != C.L){
+	    symbolView symbols1 = this.getSymbolView();
+	    symbolView symbols2 = C.getSymbolView();
+	    for (int i=0; i<symbols2.size(); i++){
+		if (symbols1.get(i) != symbols2.get(i)) return false;
+	    }
+	    return true;
+	}
+	Context D = this.current();
+	C = C.current();
+
+	//find where this context ends without its last symbol:
+	Vertex v = D.baseVertex;
+	int vDirection = D.direction;
+	int vOffset = D.offset - 1;
+	if (D.direction < 0){
+	    v = D.baseVertex.getParentVertex();
+	    vDirection = D.baseVertex.getParentDirection();
+	    vOffset = D.baseVertex.getDepth() - v.getDepth() - 2;
+	}
+	if (vOffset < 0) vDirection = -1;
+
+	if (!v.equals(C.baseVertex) || (vDirection != C.direction)) return false;
+	return (vDirection < 0) || (vOffset == C.offset);
+    }
+
+    /*
+       Returns this context if it ends on an edge which has not been split below
+       its base vertex, and otherwise a context ending at the same place in the
+       suffix tree as it is now. The last symbol of the context stays at the same
+       index in the symbol list, as splits keep the indices of the edges.
+     */
+    private Context current(){
+	Vertex v = baseVertex;
+	int k = direction;
+	int o = offset;
+	while ((k >= 0) && !v.isLeafChild(k)){
+	    int length = v.getIndexTo(k) - v.getIndexFrom(k) + 1;
+	    if (o < length - 1) break;
+	    int indexTo = v.getIndexFrom(k) + o;
+	    v = v.getInternalChild(k);
+	    o -= length;
+	    k = (o < 0) ? -1 : L.get(indexTo - o);
 	}
-	return true;
+	return (v.equals(baseVertex) && (k == direction)) ? this : new Context(v, k, o, L);
     }
 
     /**
@@ -191,83 +269,61 @@ public class Context{
 
     /**
        Returns the symbol list used to create the
-       entire suffix tree
+       entire suffix tree, as a read only list of
+       integers backed by the symbol list
 
        @return The symbol list used to create the
                entire suffix tree
      */
-    public ArrayList getL(){
-	return L;
+    public List<Integer> getL(){
+	return L.asList();
     }
 
     /**
-       Returns the symbol list representation of this context.
+       Returns the symbol list used to create the
+       entire suffix tree
 
-       @return The symbol list representation of this context
+       @return The symbol list used to create the
+               entire suffix tree
      */
-    public ArrayList<Integer> getSymbols(){
-	Vertex parent = baseVertex.getParentVertex();
-
-	if (direction < 0){
-	    if (parent == null){  //then baseVertex is the root
-		return new ArrayList<Integer>();
-	    } else{
-		return getSymbolsRecursively(parent, baseVertex.getParentDirection());
-	    }
-	} else{
-	    int indexFrom = baseVertex.getIndexFrom(direction);
-	    int indexTo = indexFrom + offset;
-
-	    ArrayList<Integer> B = new ArrayList<Integer>();
-
-	    for (int i=indexFrom; i<=indexTo; i++){
-		B.add((Integer)L.get(i));
-	    }
-
-	    if (parent == null){  //then baseVertex is the root
-		return B;
-	    } else{
-		ArrayList<Integer> A = getSymbolsRecursively(parent, baseVertex.getParentDirection());
-		A.addAll(B);
-		return A;
-	    }
-	}
+    public symbolList getSymbolList(){
+	return L;
     }
 
-    /*
-      This recursive method is called by the method "getSymbols" in order to get a part
-      of the symbol list representing this context.
+    /**
+       Returns a view of the symbols of this context in the symbol list. It takes
+       constant time and copies no symbols, since the symbols end where the context
+       ends and the base vertex knows its depth.
 
-      Parameter  Usage
-      ---------- ------------------------------------------------------------
-      v          A vertex from which this part of the symbol list begins
-      vDirection The direction to go from 'v' in order to get the symbol list
+       @return A view of the symbols of this context in the symbol list
      */
-    private ArrayList<Integer> getSymbolsRecursively(Vertex v, int vDirection){
-	int indexFrom = v.getIndexFrom(vDirection);
-	int indexTo = v.getChild(vDirection).getIndexTo();
-	ArrayList<Integer> B = new ArrayList<Integer>();
+    public symbolView getSymbolView(){
+	int indexTo = (direction < 0) ? baseVertex.getIndexTo() : baseVertex.getIndexFrom(direction) + offset;
+	return L.view(indexTo - getSize() + 1, indexTo);
+    }
 
-	for (int i=indexFrom; i<=indexTo; i++){
-	    B.add((Integer)L.get(i));
-	}
+    /**
+       Returns the symbol list representation of this context. The symbols are
+       copied into a new list, so getSymbolView is to be preferred when the symbols
+       are only read.
 
-	Vertex parent = v.getParentVertex();
+       @return The symbol list representation of this context
+     */
+    public ArrayList<Integer> getSymbols(){
+	symbolView V = getSymbolView();
+	ArrayList<Integer> A = new ArrayList<Integer>(V.size());
 
-	if (parent == null){  //then v is the root
-	    return B;
-	} else{
-	    ArrayList<Integer> A = getSymbolsRecursively(parent, v.getParentDirection());
-	    A.addAll(B);
-	    return A;
+	for (int i=0; i<V.size(); i++){
+	    A.add(Integer.valueOf(V.get(i)));
 	}
+	return A;
     }
 
     /* Finds the instance endpoint for the zeroth instance. */
     public int getZerothInstanceEndPoint() throws ContextException{
-	ArrayList<Integer> instanceEndPoints = getInstanceEndPoints();
-	if (instanceEndPoints.size() > 0) {
-	    return ((Integer) getInstanceEndPoints().get(0)).intValue();
+	int instanceEndPoints[] = getInstanceEndPointArray();
+	if (instanceEndPoints.length > 0) {
+	    return instanceEndPoints[0];
 	} else {
 	    throw new ContextException("There are no context instances");
 	}
@@ -275,70 +331,178 @@ public class Context{
 
     /* Finds the instance endpoints for zero, one or more instances. */
     public ArrayList<Integer> getInstanceEndPoints(){
-    	return getInstanceEndPointsRecur(0);
+	int instanceEndPoints[] = getInstanceEndPointArray();
+	ArrayList<Integer> A = new ArrayList<Integer>(instanceEndPoints.length);
+	for (int i=0; i<instanceEndPoints.length; i++) A.add(Integer.valueOf(instanceEndPoints[i]));
+	return A;
+    }
+
+    /**
+       Finds the instance endpoints of this context, that is the indices into the
+       symbol list of the last symbol of every instance ending above a leaf.
+
+       @return The instance endpoints in increasing order
+     */
+    public int[] getInstanceEndPointArray(){
+	endPointBuffer B = new endPointBuffer();
+	forEachInstanceEndPoint(0, Long.MAX_VALUE, B);
+	return B.toSortedArray();
+    }
+
+    /**
+       Passes every instance endpoint of this context to the action, in the order in
+       which the suffixes of the instances appear below the context, which is not the
+       order of the endpoints.
+
+       @param action The action to perform on every instance endpoint
+     */
+    public void forEachInstanceEndPoint(IntConsumer action){
+	forEachInstanceEndPoint(0, Long.MAX_VALUE, action);
+    }
+
+    /**
+       Passes a page of the instance endpoints of this context to the action. The
+       endpoints are counted in the same order as by forEachInstanceEndPoint(action),
+       so successive pages with the same limit cover every endpoint once, as long as
+       the suffix tree is not extended between them.
+
+       <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+       <tr><td><font size="-1">Skip</font></td><td>The number of endpoints passed over
+           before the first one given to the action</td></tr>
+       <tr><td><font size="-1">Limit</font></td><td>The largest number of endpoints given
+           to the action, after which the traversal stops</td></tr>
+       </table>
+
+       @param skip   The number of endpoints to pass over
+       @param limit  The largest number of endpoints to give to the action
+       @param action The action to perform on every instance endpoint of the page
+       @return       The number of endpoints given to the action
+     */
+    public long forEachInstanceEndPoint(long skip, long limit, IntConsumer action){
+	return visitInstanceEndPoints(skip, limit, e -> {
+		action.accept(e);
+		return true;
+	    });
+    }
+
+    /**
+       Finds an instance endpoint of this context which is at least min. The
+       traversal stops at the first one found.
+
+       @param min The smallest instance endpoint looked for
+       @return    An instance endpoint which is at least min, or -1 if there is none
+     */
+    int findInstanceEndPoint(int min){
+	int found[] = {-1};
+	visitInstanceEndPoints(0, Long.MAX_VALUE, e -> {
+		if (e < min) return true;
+		found[0] = e;
+		return false;
+	    });
+	return found[0];
     }
-    
+
     /*
-      To find the instance endpoints for the context, first find the
-      decoding points and then subtract the length of the decoding
-      sequence (accumulated in l).
-    */
-    private ArrayList<Integer> getInstanceEndPointsRecur(int l){
-	ArrayList<Integer> A = new ArrayList<Integer>();
-	if (direction < 0){
-	    Context C = null;
-	    int K = baseVertex.getK();
-	    for (int k=0; k<K; k++){
-		if (baseVertex.getChild(k) != null){
-		    try{
-			C = newContext( ((Integer) L.get(baseVertex.getIndexFrom(k))).intValue()  );
-			A.addAll(C.getInstanceEndPointsRecur(l + 1));
-		    } catch(ContextException CE){
-			System.out.println("ContextException : " + CE);
-			System.exit(1);
-		    }
-		}
-	    }
-	} else{
+       Passes a page of the instance endpoints to the action as forEachInstanceEndPoint
+       does, and stops early when the action returns false.
+     */
+    private long visitInstanceEndPoints(long skip, long limit, IntPredicate action){
+	if (limit <= 0) return 0;
+
+	Vertex start = baseVertex;
+	int depth = 0;
+	if (direction >= 0){
+	    int indexFrom = baseVertex.getIndexFrom(direction);
 	    if (hasDecodedSuffix()){
-		A.add(Integer.valueOf(baseVertex.getIndexFrom(direction) + offset - l));
+		if (skip > 0) return 0;
+		action.test(indexFrom + offset);
+		return 1;
+	    }
+	    start = baseVertex.getInternalChild(direction);
+	    depth = baseVertex.getIndexTo(direction) - indexFrom - offset;
+	}
+
+	/*
+	  Walk the subtree below the end of the context with an explicit stack. Every
+	  entry is a vertex, the number of symbols between the end of the context and
+	  the vertex, and the next direction to take from the vertex. A leaf edge in
+	  direction k from a vertex at depth d decodes the suffix starting at
+	  getIndexFrom(k) - d, so the instance ends just before that.
+	*/
+	Vertex vertices[] = new Vertex[16];
+	int depths[] = new int[16];
+	int directions[] = new int[16];
+	int top = 0;
+	long skipped = 0, given = 0;
+
+	vertices[0] = start;
+	depths[0] = depth;
+	directions[0] = start.getFirstDirection();
+	top = 1;
+
+	while (top > 0){
+	    Vertex V = vertices[top - 1];
+	    int k = directions[top - 1];
+	    if (k == -1){
+		vertices[--top] = null;
+		continue;
+	    }
+	    directions[top - 1] = V.getNextDirection(k);
+
+	    if (V.isLeafChild(k)){
+		if (skipped < skip){
+		    skipped++;
+		} else{
+		    given++;
+		    if (!action.test(V.getIndexFrom(k) - depths[top - 1] - 1) || (given == limit)) break;
+		}
 	    } else{
-		try{
-		    Context C = newContext( ((Integer) L.get(baseVertex.getIndexFrom(direction) + offset + 1)).intValue() );
-		    A = C.getInstanceEndPointsRecur(l + 1);
-		} catch(ContextException CE){
-		    System.out.println("ContextException : " + CE);
-		    System.exit(1);
+		if (top == vertices.length){
+		    vertices = Arrays.copyOf(vertices, 2*top);
+		    depths = Arrays.copyOf(depths, 2*top);
+		    directions = Arrays.copyOf(directions, 2*top);
 		}
+		Vertex child = V.getInternalChild(k);
+		vertices[top] = child;
+		depths[top] = depths[top - 1] + V.getIndexTo(k) - V.getIndexFrom(k) + 1;
+		directions[top] = child.getFirstDirection();
+		top++;
 	    }
 	}
-	return new ArrayList<Integer>(new TreeSet<Integer>(A)); //TreeSet sorts A
+	return given;
     }
 
-    public int getSize(){
-	int tailSize = 0;
+    /* Collects instance endpoints in a growing primitive array. */
+    static class endPointBuffer implements IntConsumer{
+	private int A[] = new int[16];
+	private int n = 0;
 
-	if (direction >= 0){
-	    tailSize = offset + 1;
+	public void accept(int e){
+	    if (n == A.length) A = Arrays.copyOf(A, 2*n);
+	    A[n++] = e;
 	}
 
-	Vertex parent = baseVertex.getParentVertex();
-	if (parent == null){  //then baseVertex is the root
-	    return tailSize;
-	} else{
-	    return getSizeRecursively(parent, baseVertex.getParentDirection()) + tailSize;
+	/* Returns the endpoints sorted once, as the traversal does not give them in order. */
+	int[] toSortedArray(){
+	    int B[] = Arrays.copyOf(A, n);
+	    Arrays.sort(B);
+	    return B;
 	}
     }
 
-    private int getSizeRecursively(Vertex v, int vDirection){
-	int tailSize = v.getChild(vDirection).getIndexTo() - v.getIndexFrom(vDirection) + 1;
+    /**
+       Gets the number of symbols in this context. It takes constant time, since the
+       base vertex knows its depth.
 
-	Vertex parent = v.getParentVertex();
-	if (parent == null){  //then v is the root
-	    return tailSize;
-	} else{
-	    return getSizeRecursively(parent, v.getParentDirection()) + tailSize;
+       @return The number of symbols in this context
+     */
+    public int getSize(){
+	int tailSize = 0;
+
+	if (direction >= 0){
+	    tailSize = offset + 1;
 	}
+	return baseVertex.getDepth() + tailSize;
     }
 
     /**
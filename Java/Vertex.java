@@ -21,6 +21,9 @@
 
 package SuffixTree.Java;
 
+import java.lang.invoke.*;
+import java.util.*;
+
 /**
    This class represents a vertex as used in the suffix tree. It contains the following
    information:
@@ -33,6 +36,9 @@ package SuffixTree.Java;
        gives the last symbol in the subsequence beginning at index indexFrom[direction]
        in the parent vertex
    </td></tr>
+   <tr><td><font size="-1">Depth</font></td><td>The number of symbols from the root to this
+       vertex, so the symbols of the context ending at this vertex are the depth symbols
+       ending at index indexTo. It never changes once the vertex is made</td></tr>
    <tr><td><font size="-1">K</font></td><td>The maximum number of children, which is also
        the number of symbols in the alphabet</td></tr>
    <tr><td><font size="-1">Children[]</font></td><td>An array of child vertices</td></tr>
@@ -40,22 +46,105 @@ package SuffixTree.Java;
        beginnings of subsequences. Each index in this array is used together with the
        corresponding child in the array containing this vertex's children.
 </td></tr>
+   <tr><td><font size="-1">directions[]</font></td><td>An array of the directions of the
+       children, when the children are not stored by direction</td></tr>
+   <tr><td><font size="-1">sortedDirections[]</font></td><td>The directions of the children
+       of a hashed table in order, sorted when they are first visited after a child has
+       been added</td></tr>
+   <tr><td><font size="-1">occupied[]</font></td><td>A bitmap of the directions having a
+       child, when the children are stored by direction</td></tr>
+   <tr><td><font size="-1">Suffix link</font></td><td>The vertex representing this vertex's
+       context without its first symbol. It is only maintained by the suffix link engine,
+       and it is null if that vertex is the root</td></tr>
+   </table>
+   <p>
+   The children are stored in a child table which adapts to the number of children, so a
+   vertex only uses store proportional to its number of children, however large the
+   alphabet is:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">EMPTY</font></td><td>No children, and no arrays</td></tr>
+   <tr><td><font size="-1">SINGLE</font></td><td>One child, stored in fields of the vertex
+       itself</td></tr>
+   <tr><td><font size="-1">SORTED</font></td><td>At most SORTED_LIMIT children, stored in
+       arrays sorted by direction and searched by binary search</td></tr>
+   <tr><td><font size="-1">HASHED</font></td><td>An open addressing table with linear
+       probing, keyed by direction and at most half full</td></tr>
+   <tr><td><font size="-1">DENSE</font></td><td>Arrays of length K indexed by direction,
+       used when more than a quarter of the K directions have a child</td></tr>
    </table>
+   <p>
+   Every table keeps its number of children, so isLeaf takes constant time, and adding a
+   child to a hashed or dense table takes constant time. getFirstDirection and
+   getNextDirection visit the children in order of direction: a sorted table is in order, a
+   hashed table sorts its directions once when they are first visited after a child has
+   been added, and a dense table finds the next direction in its bitmap 64 directions at a
+   time.
+   </p>
+   <p>
+   A leaf is not stored as a vertex of its own. It is an entry in its parent's child table
+   holding the index of the first symbol on the edge to the leaf, but no child vertex. The
+   leaf's suffix begins that index minus the length of the parent's context. The methods
+   hasChild, isLeafChild and getIndexTo(k) work directly on this encoding. getChild keeps
+   its meaning of giving the child for every edge, so for a leaf it returns a new leaf
+   vertex which is not part of the suffix tree, while getInternalChild returns null for a
+   leaf, so walks which only follow the edges to vertices create no objects.
+   </p>
+   <p>
+   One thread may add children while other threads read the child table by readIndexFrom,
+   readChild and readDirections. The vertex keeps a stamp which is odd while its child
+   table is being changed and which is increased again with release ordering when the
+   change is done. A reader reads the stamp with acquire ordering, reads the table and
+   checks that the stamp is unchanged, and otherwise it reads the table again, so it never
+   sees a table which is half rebuilt and it never makes the writer wait. An edge which is
+   split is replaced by a single store of the new intermediate vertex, whose own children
+   are set before it is stored, and the index of the first symbol on the edge is the same
+   before and after the split.
+   </p>
 
    @author Tommy Petersen
  */
 public class Vertex{
 
+    private static final byte EMPTY  = 0;
+    private static final byte SINGLE = 1;
+    private static final byte SORTED = 2;
+    private static final byte HASHED = 3;
+    private static final byte DENSE  = 4;
+
+    private static final int SORTED_LIMIT = 8;  //maximum number of children in a SORTED table
+
     private Vertex parentVertex;
     private int parentDirection;
     private int indexTo;
+    private int depth;  //the number of symbols from the root, -1 for a leaf
     private int K;  //maximum number of children
+    private byte table;  //the kind of child table
+    private int nrOfChildren;
+    private int singleDirection, singleIndexFrom;
+    private Vertex singleChild;
+    private int directions[];
+    private volatile int sortedDirections[];  //the directions of a HASHED table in order, stale unless there is one for every child
+    private long occupied[];  //the directions of a DENSE table having a child
     private Vertex children[];
     private int indexFrom[];
+    private Vertex suffixLink;
+    private int stamp;  //odd while the child table is being changed
+
+    private static final VarHandle STAMP;
+    static{
+	try{
+	    STAMP = MethodHandles.lookup().findVarHandle(Vertex.class, "stamp", int.class);
+	} catch (ReflectiveOperationException ROE){
+	    throw new ExceptionInInitializerError(ROE);
+	}
+    }
 
     /**
        Creates a new vertex containing an index into the symbol sequence, the number of
-       symbols in the alphabet and information about the parent vertex.
+       symbols in the alphabet and information about the parent vertex. The depth is
+       found from the parent vertex's edge in direction parentDirection, so that edge
+       must begin where the edge to the new vertex begins.
 
        @param indexTo          Index into the symbol sequence giving the last symbol
                                of a subsequence "ending" at this vertex
@@ -69,12 +158,41 @@ public class Vertex{
 	this.K               = K;
 	this.parentVertex    = parentVertex;
 	this.parentDirection = parentDirection;
-	children             = new Vertex[K];
-	indexFrom            = new int[K];
-	for (int k=0; k<K; k++){
-	    children[k] = null;
-	    indexFrom[k] = -1;
-	}
+	if (parentVertex == null) depth = 0;
+	else if (indexTo == Integer.MAX_VALUE) depth = -1;  //a leaf, whose depth grows with the symbol list
+	else depth = parentVertex.getDepth() + indexTo - parentVertex.getIndexFrom(parentDirection) + 1;
+	table                = EMPTY;
+	nrOfChildren         = 0;
+    }
+
+    /**
+       Creates a new vertex whose depth is given, instead of found from the parent
+       vertex. It is used when a subtree is built before the vertex it hangs from,
+       in which case the parent vertex is null until the subtree is put in place.
+
+       @param indexTo          Index into the symbol sequence giving the last symbol
+                               of a subsequence "ending" at this vertex
+       @param depth            The number of symbols from the root to this vertex
+       @param K                The number of symbols in the alphabet
+       @param parentVertex     The parentVertex
+       @param parentDirection  The branching direction from the parent vertex to this
+                               vertex
+     */
+    protected Vertex(int indexTo, int depth, int K, Vertex parentVertex, int parentDirection){
+	this.indexTo         = indexTo;
+	this.depth           = depth;
+	this.K               = K;
+	this.parentVertex    = parentVertex;
+	this.parentDirection = parentDirection;
+	table                = EMPTY;
+	nrOfChildren         = 0;
+    }
+
+    /**
+       Creates a vertex holding no data of its own. It is used by subclasses
+       which are views of vertices stored elsewhere.
+     */
+    protected Vertex(){
     }
 
     /**
@@ -86,8 +204,148 @@ public class Vertex{
        @param k         The direction from this vertex to the child
      */
     protected void setChild(Vertex v, int indexFrom, int k){
-	this.indexFrom[k] = indexFrom;
-	children[k]       = v;
+	int s = stamp;
+	STAMP.setOpaque(this, s + 1);
+	VarHandle.storeStoreFence();
+	putChild(v, indexFrom, k);
+	STAMP.setRelease(this, s + 2);
+    }
+
+    /*
+       Sets the child in direction k, while the stamp tells readers that the
+       child table is being changed.
+     */
+    private void putChild(Vertex v, int indexFrom, int k){
+	if ((table == SINGLE) && (singleDirection == k)){
+	    singleChild     = v;
+	    singleIndexFrom = indexFrom;
+	    return;
+	}
+	int i = slot(k);
+	if (i >= 0){
+	    children[i]       = v;
+	    this.indexFrom[i] = indexFrom;
+	    return;
+	}
+
+	//k is a new direction, so make room for one more child:
+	int n = nrOfChildren + 1;
+	if (table == EMPTY){
+	    table           = SINGLE;
+	    singleDirection = k;
+	    singleIndexFrom = indexFrom;
+	    singleChild     = v;
+	    nrOfChildren    = n;
+	    return;
+	}
+	if (table != DENSE){
+	    if (4 * n > K) rebuild(DENSE, K);
+	    else if (n <= SORTED_LIMIT){
+		if (table == SINGLE) rebuild(SORTED, 2);
+		else if (n > directions.length) rebuild(SORTED, Math.min(2 * directions.length, SORTED_LIMIT));
+	    } else if ((table != HASHED) || (2 * n > directions.length)){
+		rebuild(HASHED, Integer.highestOneBit(4 * n - 1) << 1);
+	    }
+	}
+	put(v, indexFrom, k);
+    }
+
+    /*
+       Returns the index into the arrays of the child table of the child in
+       direction k, or -1 if there is no child in direction k. It is not used
+       for EMPTY and SINGLE tables.
+     */
+    private int slot(int k){
+	switch (table){
+	case SORTED:
+	    int i = Arrays.binarySearch(directions, 0, nrOfChildren, k);
+	    return (i < 0) ? -1 : i;
+	case HASHED:
+	    int mask = directions.length - 1;
+	    //a reader may see a table which is being rebuilt, so it probes at most every slot once:
+	    for (int j=hash(k) & mask, probes=0; (probes <= mask) && (directions[j] != -1); j=(j + 1) & mask, probes++){
+		if (directions[j] == k) return j;
+	    }
+	    return -1;
+	case DENSE:
+	    return ((k >= 0) && (k < K) && (indexFrom[k] != -1)) ? k : -1;
+	default:
+	    return -1;
+	}
+    }
+
+    private static int hash(int k){
+	int h = k * 0x9E3779B9;
+	return h ^ (h >>> 16);
+    }
+
+    /*
+       Inserts a child in a new direction into a SORTED, HASHED or DENSE table
+       having room for it.
+     */
+    private void put(Vertex v, int indexFrom, int k){
+	int i = k;
+	if (table == SORTED){
+	    i = -Arrays.binarySearch(directions, 0, nrOfChildren, k) - 1;
+	    System.arraycopy(directions, i, directions, i + 1, nrOfChildren - i);
+	    System.arraycopy(children, i, children, i + 1, nrOfChildren - i);
+	    System.arraycopy(this.indexFrom, i, this.indexFrom, i + 1, nrOfChildren - i);
+	    directions[i] = k;
+	} else if (table == HASHED){
+	    int mask = directions.length - 1;
+	    for (i=hash(k) & mask; directions[i] != -1; i=(i + 1) & mask);
+	    directions[i] = k;
+	} else{
+	    occupied[k >>> 6] |= 1L << k;
+	}
+	children[i]       = v;
+	this.indexFrom[i] = indexFrom;
+	nrOfChildren++;
+    }
+
+    /*
+       Moves the children into a new table of the given kind and length.
+     */
+    private void rebuild(byte kind, int length){
+	byte oldTable = table;
+	int oldDirections[] = directions;
+	Vertex oldChildren[] = children;
+	int oldIndexFrom[] = indexFrom;
+	int n = nrOfChildren;
+
+	table            = kind;
+	nrOfChildren     = 0;
+	directions       = (kind == DENSE) ? null : new int[length];
+	children         = new Vertex[length];
+	indexFrom        = new int[length];
+	occupied         = (kind == DENSE) ? new long[(K + 63) >>> 6] : null;
+	sortedDirections = null;
+	if (kind != SORTED) Arrays.fill((kind == DENSE) ? indexFrom : directions, -1);
+
+	//a DENSE table is never rebuilt, so the old table is SINGLE, SORTED or HASHED:
+	if (oldTable == SINGLE){
+	    put(singleChild, singleIndexFrom, singleDirection);
+	    singleChild = null;
+	} else if (oldTable == SORTED){
+	    for (int i=0; i<n; i++) put(oldChildren[i], oldIndexFrom[i], oldDirections[i]);
+	} else{
+	    for (int i=0; i<oldDirections.length; i++){
+		if (oldDirections[i] != -1) put(oldChildren[i], oldIndexFrom[i], oldDirections[i]);
+	    }
+	}
+    }
+
+    /**
+       Sets this vertex's child in direction k to be a leaf. No vertex is
+       created for the leaf.
+
+       @param indexFrom Index into the symbol sequence giving the first symbol
+                        of the subsequence "beginning" at this vertex and
+                        continuing to the end of the symbol sequence
+       @param k         The direction from this vertex to the leaf
+     */
+    protected void setLeaf(int indexFrom, int k){
+	setChild(null, indexFrom, k);
     }
 
     /**
@@ -137,7 +395,78 @@ public class Vertex{
        @return This vertex's child in direction k
      */
     public Vertex getChild(int k){
-	return children[k];
+	Vertex child = null;
+	if (table == SINGLE){
+	    if (singleDirection != k) return null;
+	    child = singleChild;
+	} else{
+	    int i = slot(k);
+	    if (i < 0) return null;
+	    child = children[i];
+	}
+	return (child == null) ? new Vertex(Integer.MAX_VALUE, K, this, k) : child;
+    }
+
+    /**
+       Gets this vertex's child in direction k if it is a vertex of the suffix
+       tree, without making a vertex for a leaf.
+
+       @param k The child's direction
+       @return This vertex's child in direction k, or null if the child is a
+               leaf or there is no child in direction k
+     */
+    public Vertex getInternalChild(int k){
+	if (table == SINGLE) return (singleDirection == k) ? singleChild : null;
+	int i = slot(k);
+	return (i < 0) ? null : children[i];
+    }
+
+    /**
+       Returns a boolean informing if this vertex has a child in direction k.
+
+       @param k The child's direction
+       @return  True if this vertex has a child, which may be a leaf, in
+                direction k, false if not
+     */
+    public boolean hasChild(int k){
+	return (table == SINGLE) ? (singleDirection == k) : (slot(k) >= 0);
+    }
+
+    /**
+       Returns a boolean informing if this vertex's child in direction k
+       is a leaf.
+
+       @param k The child's direction
+       @return  True if the child in direction k is a leaf, false if it is
+                not or if there is no child in direction k
+     */
+    public boolean isLeafChild(int k){
+	if (table == SINGLE) return (singleDirection == k) && (singleChild == null);
+	int i = slot(k);
+	return (i >= 0) && (children[i] == null);
+    }
+
+    /**
+       Gets an index into the symbol sequence giving the last symbol
+       of the subsequence "beginning" at this vertex in direction k.
+       It is Integer.MAX_VALUE if the child in direction k is a leaf.
+
+       @param  k The direction of the returned index
+       @return   Index into the symbol sequence giving the last symbol
+                 of the subsequence in direction k, or -1 if there is
+                 no child in direction k
+     */
+    public int getIndexTo(int k){
+	Vertex child = null;
+	if (table == SINGLE){
+	    if (singleDirection != k) return -1;
+	    child = singleChild;
+	} else{
+	    int i = slot(k);
+	    if (i < 0) return -1;
+	    child = children[i];
+	}
+	return (child == null) ? Integer.MAX_VALUE : child.indexTo;
     }
 
     /**
@@ -151,6 +480,18 @@ public class Vertex{
 	return indexTo;
     }
 
+    /**
+       Gets the number of symbols from the root to this vertex, which is the size of
+       the context ending at this vertex. The context is the symbols from index
+       getIndexTo() - getDepth() + 1 to index getIndexTo() in the symbol list.
+
+       @return The number of symbols from the root to this vertex, which is 0
+               for the root and -1 for a leaf
+     */
+    public int getDepth(){
+	return depth;
+    }
+
     /**
        Gets an index into the symbol sequence giving the first symbol
        of a subsequence "begining" at this vertex
@@ -160,7 +501,9 @@ public class Vertex{
                  of a subsequence "begining" at this vertex
      */
     public int getIndexFrom(int k){
-	return indexFrom[k];
+	if (table == SINGLE) return (singleDirection == k) ? singleIndexFrom : -1;
+	int i = slot(k);
+	return (i < 0) ? -1 : indexFrom[i];
     }
 
     /**
@@ -178,10 +521,248 @@ public class Vertex{
        @return True if this vertex is a leaf, false if not
      */
     public boolean isLeaf(){
-	for (int k=0; k<K; k++){
-	    if (children[k] != null) return false;
+	return nrOfChildren == 0;
+    }
+
+    /**
+       Gets the number of children, including leaves.
+
+       @return The number of children
+     */
+    public int getNrOfChildren(){
+	return nrOfChildren;
+    }
+
+    /**
+       Gets the smallest direction in which this vertex has a child.
+
+       @return The smallest direction in which this vertex has a child,
+               or -1 if this vertex is a leaf
+     */
+    public int getFirstDirection(){
+	switch (table){
+	case SINGLE:
+	    return singleDirection;
+	case SORTED:
+	    return directions[0];
+	case HASHED:
+	    return getSortedDirections()[0];
+	case DENSE:
+	    return nextOccupied(0);
+	default:
+	    return -1;
+	}
+    }
+
+    /**
+       Gets the next larger direction in which this vertex has a child.
+
+       @param k A direction in which this vertex has a child
+       @return  The smallest direction larger than k in which this vertex
+                has a child, or -1 if there is none
+     */
+    public int getNextDirection(int k){
+	if ((table == EMPTY) || (table == SINGLE)) return -1;
+	int i = slot(k);
+	if (i < 0) return -1;
+	if (table == SORTED) return (i + 1 < nrOfChildren) ? directions[i + 1] : -1;
+	if (table == DENSE) return nextOccupied(k + 1);
+	int S[] = getSortedDirections();
+	int j = Arrays.binarySearch(S, k) + 1;
+	return (j < S.length) ? S[j] : -1;
+    }
+
+    /*
+       Gets the directions of a HASHED table in order. They are sorted when they
+       are first needed after a child has been added, and kept until the next
+       child is added, so adding a child takes constant time. Two threads reading
+       the vertex may both sort them, which gives the same array.
+     */
+    private int[] getSortedDirections(){
+	int S[] = sortedDirections;
+	if ((S != null) && (S.length == nrOfChildren)) return S;
+	S = new int[nrOfChildren];
+	int j = 0;
+	for (int k : directions){
+	    if (k != -1) S[j++] = k;
+	}
+	Arrays.sort(S);
+	sortedDirections = S;
+	return S;
+    }
+
+    /*
+       Finds the smallest direction from k on in which a DENSE table has a child,
+       or -1 if there is none.
+     */
+    private int nextOccupied(int k){
+	if (k >= K) return -1;
+	int w = k >>> 6;
+	long word = occupied[w] & (-1L << k);
+	while (word == 0){
+	    if (++w == occupied.length) return -1;
+	    word = occupied[w];
+	}
+	return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+       Gets the index of the first symbol on the edge in direction k while another
+       thread may be adding children to this vertex. The index never changes once
+       the edge is made, not even when the edge is split.
+
+       @param  k The direction of the edge
+       @return   The index of the first symbol on the edge, or -1 if there is no
+                 child in direction k
+     */
+    public int readIndexFrom(int k){
+	while (true){
+	    int s = (int)STAMP.getAcquire(this);
+	    if ((s & 1) == 0){
+		int indexFrom = -1;
+		try{
+		    indexFrom = getIndexFrom(k);
+		} catch (RuntimeException RE){  //a torn table, unless the stamp is unchanged
+		    if (isUnchanged(s)) throw RE;
+		    continue;
+		}
+		if (isUnchanged(s)) return indexFrom;
+	    }
+	    Thread.onSpinWait();
 	}
-	return true;
+    }
+
+    /**
+       Gets this vertex's child in direction k while another thread may be adding
+       children to this vertex. The child may be a vertex inserted by a split since
+       the edge was first read, in which case the edge ends at that vertex instead.
+
+       @param  k The direction of the child
+       @return   The child in direction k, or null if it is a leaf or if there is
+                 no child in direction k
+     */
+    public Vertex readChild(int k){
+	while (true){
+	    int s = (int)STAMP.getAcquire(this);
+	    if ((s & 1) == 0){
+		Vertex child = null;
+		try{
+		    if (table == SINGLE) child = (singleDirection == k) ? singleChild : null;
+		    else{
+			int i = slot(k);
+			child = (i < 0) ? null : children[i];
+		    }
+		} catch (RuntimeException RE){
+		    if (isUnchanged(s)) throw RE;
+		    continue;
+		}
+		if (isUnchanged(s)) return child;
+	    }
+	    Thread.onSpinWait();
+	}
+    }
+
+    /**
+       Gets the index of the last symbol on the edge to this vertex while another
+       thread may be adding children. It never changes once the vertex is made.
+
+       @return The index of the last symbol on the edge from the parent vertex
+     */
+    public int readIndexTo(){
+	return getIndexTo();
+    }
+
+    /**
+       Gets the number of symbols from the root to this vertex while another
+       thread may be adding children. It never changes once the vertex is made.
+
+       @return The number of symbols from the root to this vertex
+     */
+    public int readDepth(){
+	return getDepth();
+    }
+
+    /**
+       Gets the directions in which this vertex has a child while another thread
+       may be adding children to this vertex. They are copied from one consistent
+       state of the child table, in no particular order.
+
+       @param D An array into which the directions are copied
+       @return  The number of directions copied into D, or minus the number of
+                children if D is too short to hold them, in which case nothing
+                is copied
+     */
+    public int readDirections(int D[]){
+	while (true){
+	    int s = (int)STAMP.getAcquire(this);
+	    if ((s & 1) == 0){
+		int n = 0;
+		try{
+		    n = copyDirections(D);
+		} catch (RuntimeException RE){
+		    if (isUnchanged(s)) throw RE;
+		    continue;
+		}
+		if (isUnchanged(s)) return n;
+	    }
+	    Thread.onSpinWait();
+	}
+    }
+
+    /*
+       Copies the directions of the children into D in the order of the slots,
+       unless D is too short, and returns their number, or minus it if D is too
+       short.
+     */
+    private int copyDirections(int D[]){
+	int n = nrOfChildren;
+	if (n > D.length) return -n;
+	int j = 0;
+	switch (table){
+	case SINGLE:
+	    D[0] = singleDirection;
+	    break;
+	case SORTED:
+	    System.arraycopy(directions, 0, D, 0, n);
+	    break;
+	case HASHED:
+	    for (int i=0; (i<directions.length) && (j<n); i++){  //a torn table may hold more directions than counted
+		if (directions[i] != -1) D[j++] = directions[i];
+	    }
+	    break;
+	case DENSE:
+	    for (int k=nextOccupied(0); (k!=-1) && (j<n); k=nextOccupied(k + 1)) D[j++] = k;
+	}
+	return n;
+    }
+
+    /*
+       Tells whether the child table read since the stamp was s has been left
+       alone by the writer, so what was read is consistent.
+     */
+    private boolean isUnchanged(int s){
+	VarHandle.acquireFence();
+	return (int)STAMP.getOpaque(this) == s;
+    }
+
+    /**
+       Gets this vertex's suffix link.
+
+       @return The vertex representing this vertex's context without its
+               first symbol, or null if that vertex is the root
+     */
+    protected Vertex getSuffixLink(){
+	return suffixLink;
+    }
+
+    /**
+       Sets this vertex's suffix link.
+
+       @param suffixLink The vertex representing this vertex's context
+                         without its first symbol
+     */
+    protected void setSuffixLink(Vertex suffixLink){
+	this.suffixLink = suffixLink;
     }
 
     protected boolean isRoot(){
@@ -0,0 +1,210 @@
+/*
+  Program name: arenaEngine.java. Is a class building the suffix tree in a vertex arena by means of suffix links.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `arenaEngine.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.io.*;
+import java.util.*;
+
+/**
+   Builds the suffix tree in a vertex arena in linear time, exactly as the suffix link engine
+   does with vertex objects. The vertices are integer handles, so building the suffix tree
+   creates no objects apart from the arrays of the arena.
+
+   @author Tommy Petersen
+ */
+class arenaEngine extends constructionEngine{
+
+    private static final int ROOT = vertexArena.ROOT;
+    private static final int NONE = vertexArena.NONE;
+
+    private symbolList L;
+    private vertexArena arena;
+    private int activeVertex;
+    private int activeDirection, activeLength;
+    private int remainder;  //the length of the longest context
+
+    /**
+       Creates a new engine whose active point is the empty context at the root.
+
+       @param arena The vertex arena storing the suffix tree
+       @param L     The symbol list
+     */
+    arenaEngine(vertexArena arena, symbolList L){
+	this.arena      = arena;
+	this.L          = L;
+	activeVertex    = ROOT;
+	activeDirection = -1;
+	activeLength    = 0;
+	remainder       = 0;
+    }
+
+    void extend(int a){
+	int pos = L.size() - 1;
+	int lastInternal = NONE;  //internal vertex waiting for its suffix link
+
+	remainder++;
+	while (remainder > 0){
+	    if (activeLength == 0) activeDirection = a;
+	    int child = arena.getChild(activeVertex, activeDirection);
+
+	    if (child == NONE){  //context is given by activeVertex
+		arena.beginChange(activeVertex);
+		arena.setChild(activeVertex, arena.newLeaf(a, pos), pos, a);
+		arena.endChange(activeVertex);
+		if (metrics != null) metrics.codewordsInserted++;
+		if (lastInternal != NONE) arena.setSuffixLink(lastInternal, activeVertex);
+		lastInternal = NONE;
+	    } else{  //context is given by edge from activeVertex
+		int indexFrom = arena.getIndexFrom(child);
+		int edgeLength = arena.getIndexTo(child) - indexFrom + 1;
+		if (!arena.isLeaf(child) && activeLength >= edgeLength){
+		    //the active point is beyond the edge, so walk down to the child:
+		    activeLength -= edgeLength;
+		    activeVertex = child;
+		    activeDirection = L.get(pos - activeLength);
+		    continue;
+		}
+		if (L.get(indexFrom + activeLength) == a){  //still a context when extended
+		    if (lastInternal != NONE) arena.setSuffixLink(lastInternal, activeVertex);
+		    activeLength++;
+		    if (!arena.isLeaf(child) && activeLength == edgeLength){
+			activeVertex = child;
+			activeLength = 0;
+			activeDirection = -1;
+		    }
+		    return;
+		}
+		//make the intermediate vertex:
+		int offset = activeLength - 1;
+		int b = L.get(indexFrom + offset + 1);
+		arena.beginChange(activeVertex);  //readers in other threads see the split as one change
+		int intermediateVertex = arena.newVertex(indexFrom + offset, activeVertex, activeDirection, indexFrom);
+		arena.setChild(activeVertex, intermediateVertex, indexFrom, activeDirection);
+		arena.setChild(intermediateVertex, child, indexFrom + offset + 1, b);
+		arena.setChild(intermediateVertex, arena.newLeaf(a, pos), pos, a);
+		arena.endChange(activeVertex);
+		if (lastInternal != NONE) arena.setSuffixLink(lastInternal, intermediateVertex);
+		lastInternal = intermediateVertex;
+		if (metrics != null){
+		    metrics.edgesSplit++;
+		    metrics.codewordsInserted++;
+		}
+	    }
+
+	    //go to the next smaller context:
+	    remainder--;
+	    if (activeVertex == ROOT){
+		if (activeLength > 0){
+		    activeLength--;
+		    activeDirection = L.get(pos - remainder + 1);
+		}
+	    } else{
+		activeVertex = suffixLink(activeVertex);
+	    }
+	}
+	activeDirection = -1;
+    }
+
+    void getContexts(contextSet CS){
+	CS.setSize(remainder + 1);
+	int end = L.size() - 1;
+	int v = activeVertex;
+	int direction = activeDirection;
+	int length = activeLength;
+
+	for (int size=remainder; size>0; size--){
+	    if (length == 0) CS.set(size, arena.view(v), -1, -1);
+	    else CS.set(size, arena.view(v), direction, length - 1);
+
+	    //go to the context one symbol shorter:
+	    if (v == ROOT){
+		length--;
+		direction = (length > 0) ? L.get(end - length + 1) : -1;
+	    } else{
+		v = suffixLink(v);
+	    }
+	    //and make it canonical by walking down past whole edges:
+	    while (length > 0){
+		int child = arena.getChild(v, direction);
+		int edgeLength = arena.getIndexTo(child) - arena.getIndexFrom(child) + 1;
+		if (arena.isLeaf(child) || length < edgeLength) break;
+		length -= edgeLength;
+		v = child;
+		direction = (length > 0) ? L.get(end - length + 1) : -1;
+	    }
+	}
+	CS.set(0, arena.view(ROOT), -1, -1);
+    }
+
+    int getNrOfContexts(){
+	return remainder + 1;
+    }
+
+    int getLongestContextEnd(){
+	if (activeLength == 0) return arena.getIndexTo(activeVertex);
+	return arena.getIndexFrom(arena.getChild(activeVertex, activeDirection)) + activeLength - 1;
+    }
+
+    void setActivePoint(Vertex v, int direction, int length, int remainder){
+	activeVertex    = ((arenaVertex) v).getHandle();
+	activeDirection = direction;
+	activeLength    = length;
+	this.remainder  = remainder;
+    }
+
+    /**
+       Writes the active point and the length of the longest context. They are
+       the longest context of the context set, from which the shorter contexts
+       follow by suffix links.
+
+       @param  D The stream to which the state is written
+       @throws   java.io.IOException If the stream cannot be written
+     */
+    void writeState(DataOutput D) throws IOException{
+	D.writeInt(activeVertex);
+	D.writeInt(activeDirection);
+	D.writeInt(activeLength);
+	D.writeInt(remainder);
+    }
+
+    /**
+       Reads the state written by the method writeState.
+
+       @param  D The stream from which the state is read
+       @throws   java.io.IOException If the stream cannot be read
+     */
+    void readState(DataInput D) throws IOException{
+	activeVertex    = D.readInt();
+	activeDirection = D.readInt();
+	activeLength    = D.readInt();
+	remainder       = D.readInt();
+    }
+
+    /*
+       Returns the suffix link of an internal vertex, which is the root if it is
+       not set.
+     */
+    private int suffixLink(int v){
+	int link = arena.getSuffixLink(v);
+	return (link == NONE) ? ROOT : link;
+    }
+}
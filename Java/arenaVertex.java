@@ -0,0 +1,236 @@
+/*
+  Program name: arenaVertex.java. Is a class representing a vertex stored in a vertex arena.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `arenaVertex.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+/**
+   A lightweight view of a vertex stored in a vertex arena. The view holds nothing but the
+   arena and the handle, and two views of the same handle are equal. A new view is made
+   whenever a vertex is returned, such as by getChild or getParentVertex, so code which
+   walks the arena often should use the handles instead. Like the arena, the views may be
+   read by several threads while no symbols are added. While they are, other threads only
+   read them by the read methods, which follow the stamps of the arena. A child set through
+   a view may be moved from another vertex, so it is a change of the whole arena.
+
+   @author Tommy Petersen
+ */
+class arenaVertex extends Vertex{
+
+    private vertexArena arena;
+    private int v;
+
+    /**
+       Creates a view of a vertex stored in a vertex arena.
+
+       @param arena The arena storing the vertex
+       @param v     The handle of the vertex
+     */
+    arenaVertex(vertexArena arena, int v){
+	this.arena = arena;
+	this.v     = v;
+    }
+
+    /**
+       Gets the handle of the vertex in the arena.
+
+       @return The handle of the vertex in the arena
+     */
+    int getHandle(){
+	return v;
+    }
+
+    protected void setChild(Vertex child, int indexFrom, int k){
+	arena.beginChange();
+	arena.setChild(v, ((arenaVertex)child).v, indexFrom, k);
+	arena.endChange();
+    }
+
+    protected void setLeaf(int indexFrom, int k){
+	arena.beginChange(v);
+	arena.setChild(v, arena.newLeaf(k, indexFrom), indexFrom, k);
+	arena.endChange(v);
+    }
+
+    protected Vertex getParentVertex(){
+	return arena.view(arena.getParent(v));
+    }
+
+    protected void setParentVertex(Vertex parentVertex){
+	arena.setParent(v, (parentVertex == null) ? vertexArena.NONE : ((arenaVertex)parentVertex).v);
+    }
+
+    protected int getParentDirection(){
+	return arena.getParentDirection(v);
+    }
+
+    protected void setParentDirection(int parentDirection){
+	arena.setParentDirection(v, parentDirection);
+    }
+
+    public Vertex getChild(int k){
+	return arena.view(arena.getChild(v, k));
+    }
+
+    public Vertex getInternalChild(int k){
+	int c = arena.getChild(v, k);
+	return ((c == vertexArena.NONE) || arena.isLeaf(c)) ? null : arena.view(c);
+    }
+
+    public boolean hasChild(int k){
+	return arena.getChild(v, k) != vertexArena.NONE;
+    }
+
+    public boolean isLeafChild(int k){
+	int c = arena.getChild(v, k);
+	return (c != vertexArena.NONE) && arena.isLeaf(c);
+    }
+
+    public int getIndexTo(){
+	return arena.getIndexTo(v);
+    }
+
+    public int getDepth(){
+	return arena.getDepth(v);
+    }
+
+    public int getIndexTo(int k){
+	int c = arena.getChild(v, k);
+	return (c == vertexArena.NONE) ? -1 : arena.getIndexTo(c);
+    }
+
+    public int getIndexFrom(int k){
+	int c = arena.getChild(v, k);
+	return (c == vertexArena.NONE) ? -1 : arena.getIndexFrom(c);
+    }
+
+    protected int getK(){
+	return arena.getK();
+    }
+
+    public boolean isLeaf(){
+	return arena.isLeaf(v);
+    }
+
+    public int getNrOfChildren(){
+	int n = 0;
+	for (int c=arena.getFirstChild(v); c!=vertexArena.NONE; c=arena.getNextSibling(c)) n++;
+	return n;
+    }
+
+    public int getFirstDirection(){
+	int c = arena.getFirstChild(v);
+	return (c == vertexArena.NONE) ? -1 : arena.getParentDirection(c);
+    }
+
+    public int getNextDirection(int k){
+	int c = arena.getChild(v, k);
+	if (c != vertexArena.NONE) c = arena.getNextSibling(c);
+	return (c == vertexArena.NONE) ? -1 : arena.getParentDirection(c);
+    }
+
+    public int readIndexFrom(int k){
+	while (true){
+	    long s = arena.readStamp(v);
+	    int indexFrom = -1;
+	    try{
+		indexFrom = getIndexFrom(k);
+	    } catch (RuntimeException RE){  //a torn read, unless the stamp is unchanged
+		if (arena.isUnchanged(v, s)) throw RE;
+		continue;
+	    }
+	    if (arena.isUnchanged(v, s)) return indexFrom;
+	}
+    }
+
+    public Vertex readChild(int k){
+	while (true){
+	    long s = arena.readStamp(v);
+	    int c = vertexArena.NONE;
+	    boolean leaf = false;
+	    try{
+		c = arena.getChild(v, k);
+		leaf = (c != vertexArena.NONE) && arena.isLeaf(c);
+	    } catch (RuntimeException RE){
+		if (arena.isUnchanged(v, s)) throw RE;
+		continue;
+	    }
+	    if (arena.isUnchanged(v, s)) return ((c == vertexArena.NONE) || leaf) ? null : arena.view(c);
+	}
+    }
+
+    public int readIndexTo(){
+	while (true){
+	    long s = arena.readStamp(vertexArena.NONE);
+	    int indexTo = arena.getIndexTo(v);
+	    if (arena.isUnchanged(vertexArena.NONE, s)) return indexTo;
+	}
+    }
+
+    public int readDepth(){
+	while (true){
+	    long s = arena.readStamp(vertexArena.NONE);
+	    int depth = arena.getDepth(v);
+	    if (arena.isUnchanged(vertexArena.NONE, s)) return depth;
+	}
+    }
+
+    /*
+       The list of children is walked no further than K children, as a list
+       read while it is changed may run in a circle.
+     */
+    public int readDirections(int D[]){
+	int K = arena.getK();
+	while (true){
+	    long s = arena.readStamp(v);
+	    int n = 0;
+	    try{
+		for (int c=arena.getFirstChild(v); (c != vertexArena.NONE) && (n <= K); c=arena.getNextSibling(c)){
+		    if (n < D.length) D[n] = arena.getParentDirection(c);
+		    n++;
+		}
+	    } catch (RuntimeException RE){
+		if (arena.isUnchanged(v, s)) throw RE;
+		continue;
+	    }
+	    if (arena.isUnchanged(v, s)) return (n > D.length) ? -n : n;
+	}
+    }
+
+    protected Vertex getSuffixLink(){
+	return arena.view(arena.getSuffixLink(v));
+    }
+
+    protected void setSuffixLink(Vertex suffixLink){
+	arena.setSuffixLink(v, (suffixLink == null) ? vertexArena.NONE : ((arenaVertex)suffixLink).v);
+    }
+
+    protected boolean isRoot(){
+	return v == vertexArena.ROOT;
+    }
+
+    public boolean equals(Object o){
+	return (o instanceof arenaVertex) && (((arenaVertex)o).arena == arena) && (((arenaVertex)o).v == v);
+    }
+
+    public int hashCode(){
+	return v;
+    }
+}
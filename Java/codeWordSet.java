@@ -29,13 +29,21 @@ import java.util.*;
    extended with the 'a', and hence becomes a codeword.
    When the appropriate number of contexts have been added to the context set, the 'a'-extensions
    can be moved as codewords to the suffix tree by a method call.
+   <p>
+   The contexts are kept as a base vertex, a direction and an offset in parallel arrays, which
+   are reused when the codeword set is used again, so adding a context creates no objects.
+   </p>
 
    @author Tommy Petersen
  */
 public class codeWordSet{
 
-    private ArrayList<Context> set;
+    private Vertex baseVertex[];
+    private int direction[], offset[];
+    private int size;
     private int a;
+    private symbolList L;
+    private treeMetrics metrics;  //counts the edges split and the codewords, null unless the metrics are enabled
 
     /**
        Creates an empty codeword set.
@@ -43,12 +51,37 @@ public class codeWordSet{
        @param a The symbol that has been added to the symbol
                 list. This is used to extend given contexts to
 		codewords
+       @param L The symbol list
      */
-    codeWordSet(int a){
-	set = new ArrayList<Context>();
+    codeWordSet(int a, symbolList L){
+	baseVertex = new Vertex[16];
+	direction  = new int[16];
+	offset     = new int[16];
+	size       = 0;
+	this.a     = a;
+	this.L     = L;
+    }
+
+    /**
+       Sets the symbol used to extend given contexts to codewords, so the
+       codeword set can be used again once it has been moved to the tree.
+
+       @param a The symbol that has been added to the symbol list
+     */
+    protected void setSymbol(int a){
 	this.a = a;
     }
 
+    /**
+       Sets the metrics counting the edges split and the codewords inserted by
+       moveSetToTree.
+
+       @param metrics The metrics, or null if they are not kept
+     */
+    protected void setMetrics(treeMetrics metrics){
+	this.metrics = metrics;
+    }
+
     /**
        Adds the 'a'-extension of each of some previously given contexts
        to the suffix tree.
@@ -65,42 +98,45 @@ public class codeWordSet{
        </p>
      */
     protected void moveSetToTree(){
-	Context tmpContext = null;
 	Vertex baseVertex = null;
 	int direction = -1;
 	int offset = -1;
 	int indexFrom = -1;
 	int indexTo = -1;
 	//iterate from large contexts to small:
-	for (int i=set.size()-1; i>=0; i--){
-	    tmpContext = (Context)set.remove(i);
-	    ArrayList L = tmpContext.getL();
-	    baseVertex = tmpContext.getBaseVertex();
-	    direction = tmpContext.getDirection();
-	    offset = tmpContext.getOffset();
+	for (int i=size-1; i>=0; i--){
+	    baseVertex = this.baseVertex[i];
+	    direction = this.direction[i];
+	    offset = this.offset[i];
+	    this.baseVertex[i] = null;
 
 	    if (direction == -1){  //context is given by baseVertex
 		indexFrom = indexTo = L.size() - 1;
-		Vertex newChild = new Vertex(Integer.MAX_VALUE, baseVertex.getK(), baseVertex, a);
-		baseVertex.setChild(newChild, indexFrom, a);
+		baseVertex.setLeaf(indexFrom, a);
 	    } else{  //context is given by edge from baseVertex
 		//make the intermediate vertex:
 		indexFrom = baseVertex.getIndexFrom(direction);
-		int b = ((Integer)L.get(indexFrom + offset + 1)).intValue();
+		int b = L.get(indexFrom + offset + 1);
 		Vertex intermediateVertex = new Vertex(indexFrom + offset, baseVertex.getK(), baseVertex, direction);
-		Vertex oldChild = baseVertex.getChild(direction);
-		oldChild.setParentVertex(intermediateVertex);
-		oldChild.setParentDirection(b);
-		intermediateVertex.setChild(oldChild, indexFrom + offset + 1, b);
+		if (baseVertex.isLeafChild(direction)){
+		    intermediateVertex.setLeaf(indexFrom + offset + 1, b);
+		} else{
+		    Vertex oldChild = baseVertex.getInternalChild(direction);
+		    oldChild.setParentVertex(intermediateVertex);
+		    oldChild.setParentDirection(b);
+		    intermediateVertex.setChild(oldChild, indexFrom + offset + 1, b);
+		}
 		baseVertex.setChild(intermediateVertex, indexFrom, direction); 
 		//intermediateVertex is now between baseVertex and oldChild in direction "direction"
 		//as seen from baseVertex. A new child, in direction a, is now added to
 		//intermediateVertex:
 		indexFrom = indexTo = L.size() - 1;
-		Vertex newChild = new Vertex(Integer.MAX_VALUE, intermediateVertex.getK(), intermediateVertex, a);
-		intermediateVertex.setChild(newChild, indexFrom, a);
+		intermediateVertex.setLeaf(indexFrom, a);
+		if (metrics != null) metrics.edgesSplit++;
 	    }
+	    if (metrics != null) metrics.codewordsInserted++;
 	}
+	size = 0;
     }
 
     /**
@@ -109,7 +145,26 @@ public class codeWordSet{
        @param C A context whos extension with the symbol 'a' is a codeword
      */
     protected void add(Context C){
-	set.add(C);
+	add(C.getBaseVertex(), C.getDirection(), C.getOffset());
+    }
+
+    /**
+       Adds a context whos extension with the symbol 'a' is a codeword.
+
+       @param baseVertex The context's base vertex
+       @param direction  The context's direction
+       @param offset     The context's offset
+     */
+    protected void add(Vertex baseVertex, int direction, int offset){
+	if (size == this.baseVertex.length){
+	    this.baseVertex = Arrays.copyOf(this.baseVertex, 2 * size);
+	    this.direction  = Arrays.copyOf(this.direction, 2 * size);
+	    this.offset     = Arrays.copyOf(this.offset, 2 * size);
+	}
+	this.baseVertex[size] = baseVertex;
+	this.direction[size]  = direction;
+	this.offset[size]     = offset;
+	size++;
     }
 
     /**
@@ -118,6 +173,6 @@ public class codeWordSet{
        @return The number of added contexts
      */
     protected int getSize(){
-	return set.size();
+	return size;
     }
 }
@@ -0,0 +1,81 @@
+/*
+  Program name: constructionEngine.java. Is a class representing an engine building the suffix tree.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `constructionEngine.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   An engine building the suffix tree from the symbol list one symbol at a time, while
+   keeping the context set implicitly, so the context set is only materialized when it
+   is read.
+
+   @author Tommy Petersen
+ */
+abstract class constructionEngine{
+
+    treeMetrics metrics;  //counts the edges split and the codewords, null unless the metrics are enabled
+
+    /**
+       Updates the suffix tree after the symbol 'a' has been added to the end of
+       the symbol list.
+
+       @param a The symbol that has been added to the symbol list
+     */
+    abstract void extend(int a);
+
+    /**
+       Puts the contexts of the symbol list into a context set, ordered from the
+       empty context to the longest context.
+
+       @param CS The context set receiving the contexts
+     */
+    abstract void getContexts(contextSet CS);
+
+    /**
+       Moves the active point to the end of the longest context. It is used when the
+       suffix tree has been built by other means than this engine, so that adding
+       symbols continues from there.
+
+       @param v         The vertex the longest context ends at or below
+       @param direction The direction of the edge from v on which the longest context
+                        ends, or -1 if it ends at v
+       @param length    The number of symbols of the longest context on that edge
+       @param remainder The length of the longest context
+     */
+    abstract void setActivePoint(Vertex v, int direction, int length, int remainder);
+
+    /**
+       Gets the number of contexts, including the empty context.
+
+       @return The number of contexts, including the empty context
+     */
+    abstract int getNrOfContexts();
+
+    /**
+       Gets the index into the symbol list of the symbol which the edges refer to as
+       the last symbol of the longest context, which is read off the active point.
+
+       @return The index of the last symbol of the earlier instance of the longest
+               context, which must have at least one symbol
+     */
+    abstract int getLongestContextEnd();
+}
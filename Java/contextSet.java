@@ -25,12 +25,34 @@ import java.util.*;
 
 /**
    Contains the set of contexts.
+   <p>
+   The contexts are kept as a base vertex, a direction and an offset in three parallel
+   arrays, ordered from the empty context to the longest context. When a symbol is added,
+   the contexts which are still contexts are extended in place and the others are removed,
+   so the context set creates no objects for each symbol. A Context object is only created
+   when a context is read by the method get, and the method snapshot returns a copy of the
+   context set which is not changed when more symbols are added.
+   </p>
+   <p>
+   When the suffix tree is built by a suffix link engine, the context set is not
+   maintained symbol by symbol. Instead it is materialized from the engine's active
+   point the first time it is read after a symbol has been added, so it always
+   reflects the current symbol list.
+   </p>
 
    @author Tommy Petersen
  */
 public class contextSet{
 
-    private ArrayList<Context> set;
+    private Vertex baseVertex[];
+    private int direction[], offset[];
+    private int size;
+    private symbolList L;
+    private codeWordSet CWS;  //reused by process
+    private Context cursor;  //reused by process in order to extend the contexts
+    private constructionEngine SLE;
+    private int sizeL;  //the length of the symbol list when the set was materialized
+    private treeMetrics metrics;  //passed on to the codeword set, null unless the metrics are enabled
 
     /**
        Creates a new context set containing only the empty context lambda.
@@ -38,18 +60,56 @@ public class contextSet{
        @param lambda The empty context
      */
     protected contextSet(Context lambda){
-	set = new ArrayList<Context>();
-	set.add(lambda);
+	this(lambda.getSymbolList(), 16);
+	add(lambda);
     }
 
     /**
-       Gets the i'th context.
+       Creates a context set which is materialized from the active point of a
+       suffix link engine whenever the symbol list has grown.
+
+       @param SLE The engine building the suffix tree
+       @param L   The symbol list
+     */
+    protected contextSet(constructionEngine SLE, symbolList L){
+	this(L, 16);
+	this.SLE = SLE;
+	sizeL    = -1;
+    }
+
+    /*
+       Creates an empty context set with room for the given number of contexts.
+     */
+    private contextSet(symbolList L, int capacity){
+	this.L     = L;
+	baseVertex = new Vertex[capacity];
+	direction  = new int[capacity];
+	offset     = new int[capacity];
+	size       = 0;
+    }
+
+    /*
+       Rebuilds the set from the suffix link engine, if the symbol list has grown
+       since the set was last materialized.
+     */
+    private void materialize(){
+	if ((SLE != null) && (sizeL != L.size())){
+	    SLE.getContexts(this);
+	    sizeL = L.size();
+	}
+    }
+
+    /**
+       Gets the i'th context. A new context is created, which is not changed
+       when more symbols are added.
 
        @param i Index into the context set
        @return  The i'th context
      */
     public Context get(int i){
-	return (Context)set.get(i);
+	materialize();
+	if ((i < 0) || (i >= size)) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+	return new Context(baseVertex[i], direction[i], offset[i], L);
     }
 
     /**
@@ -58,12 +118,54 @@ public class contextSet{
        @param C The context to be added
      */
     protected void add(Context C){
-	set.add(C);
+	setSize(size + 1);
+	set(size - 1, C.getBaseVertex(), C.getDirection(), C.getOffset());
+    }
+
+    /**
+       Sets the metrics counting the edges split and the codewords inserted when
+       the codewords are moved to the suffix tree.
+
+       @param metrics The metrics, or null if they are not kept
+     */
+    protected void setMetrics(treeMetrics metrics){
+	this.metrics = metrics;
+	if (CWS != null) CWS.setMetrics(metrics);
+    }
+
+    /**
+       Sets the number of contexts, making room for more contexts if needed.
+
+       @param size The number of contexts
+     */
+    protected void setSize(int size){
+	if (size > baseVertex.length){
+	    int capacity = Math.max(size, 2 * baseVertex.length);
+	    baseVertex = Arrays.copyOf(baseVertex, capacity);
+	    direction  = Arrays.copyOf(direction, capacity);
+	    offset     = Arrays.copyOf(offset, capacity);
+	}
+	for (int i=size; i<this.size; i++) baseVertex[i] = null;
+	this.size = size;
+    }
+
+    /**
+       Sets the i'th context.
+
+       @param i          Index into the context set
+       @param baseVertex The context's base vertex
+       @param direction  The context's direction
+       @param offset     The context's offset
+     */
+    protected void set(int i, Vertex baseVertex, int direction, int offset){
+	this.baseVertex[i] = baseVertex;
+	this.direction[i]  = direction;
+	this.offset[i]     = offset;
     }
 
     /**
-       Adds the codewords to the suffix tree and returns the context set resulting
-       from adding the argument symbol to the contexts in this context set.
+       Adds the codewords to the suffix tree and changes this context set into the
+       context set resulting from adding the argument symbol to its contexts.
        <p>
        This is done by dividing this context set into two parts with respect to the
        argument symbol 'a'; an upper part (larger indexes) and a lower part (smaller
@@ -73,49 +175,63 @@ public class contextSet{
        </p>
        <p>
        The upper part and the symbol 'a' is used to create a codeword set which is
-       moved to the suffix tree, while the lower part and the symbol 'a' is used
-       to create a new context set, which is returned.
+       moved to the suffix tree, while the contexts in the lower part are extended
+       with the symbol 'a' in place. Every extended context moves one place up, above
+       the empty context, and the upper part is removed.
        </p>
 
        @param a The symbol that has been added to the symbol list
-       @return  The context set that is the result of adding the symbol 'a'
-                to this context set
-       @throws ContextException If an error occurs when creating a new context
-                                by extending an existing one with the symbol 'a'
+       @return  This context set, which is now the result of adding the symbol
+                'a' to the context set
+       @throws ContextException If an error occurs when extending an existing
+                                context with the symbol 'a'
      */
     protected contextSet process(int a) throws ContextException{
-	contextSet CS = new contextSet((Context)set.get(0));
-	int size = set.size();
-	Context tmpContext = null;
-	int j = size;
-	int i = 0;
+	if (cursor == null) cursor = new Context(null, -1, -1, L);
+	int j = 0;
 
 	//Find index j dividing the context set into the upper and lower parts:
-	while (i<size){
-	    tmpContext = (Context)set.get(i);
-	    if (!tmpContext.isContext(a)){
-		j = i;
-		break;
-	    }
-	    i++;
+	while (j < size){
+	    cursor.set(baseVertex[j], direction[j], offset[j]);
+	    if (!cursor.isContext(a)) break;
+	    j++;
 	}
 
 	//Use the upper part and the symbol 'a' to create a codeword set:
-	codeWordSet CWS = new codeWordSet(a);
-	while (i<size){
-	    CWS.add((Context)set.get(i));
-	    i++;
+	if (CWS == null){
+	    CWS = new codeWordSet(a, L);
+	    CWS.setMetrics(metrics);
+	} else{
+	    CWS.setSymbol(a);
 	}
+	for (int i=j; i<size; i++) CWS.add(baseVertex[i], direction[i], offset[i]);
 	//Move the codeword set to the suffix tree:
 	CWS.moveSetToTree();
-	
-	//Use the lower part and the symbol 'a' to create a new context set:
-	for (int n=0; n<j; n++){
-	    tmpContext = (Context)set.get(n);
-	    CS.add(tmpContext.newContext(a));
+
+	//Extend the lower part with the symbol 'a', from the largest context to the smallest:
+	setSize(j + 1);
+	for (int i=j-1; i>=0; i--){
+	    cursor.set(baseVertex[i], direction[i], offset[i]);
+	    cursor.extend(a);
+	    set(i + 1, cursor.getBaseVertex(), cursor.getDirection(), cursor.getOffset());
 	}
 
-	//Return the new context set resulting from the extension by 'a':
+	return this;
+    }
+
+    /**
+       Returns a copy of this context set, which is not changed when more symbols
+       are added.
+
+       @return A copy of this context set
+     */
+    public contextSet snapshot(){
+	materialize();
+	contextSet CS = new contextSet(L, size);
+	System.arraycopy(baseVertex, 0, CS.baseVertex, 0, size);
+	System.arraycopy(direction, 0, CS.direction, 0, size);
+	System.arraycopy(offset, 0, CS.offset, 0, size);
+	CS.size = size;
 	return CS;
     }
 
@@ -125,20 +241,30 @@ public class contextSet{
        @return The number of contexts in this context set including the empty context
      */
     public int size(){
-	return set.size();
+	if (SLE != null) return SLE.getNrOfContexts();
+	return size;
+    }
+
+    /**
+       Gets the index into the symbol list of the symbol which the edges refer to as
+       the last symbol of the longest context. A set kept by a suffix link engine
+       is not materialized for it.
+
+       @return The index of the last symbol of the earlier instance of the longest
+               context, which must have at least one symbol
+     */
+    int getLongestContextEnd(){
+	if (SLE != null) return SLE.getLongestContextEnd();
+	int i = size - 1;
+	if (direction[i] < 0) return baseVertex[i].getIndexTo();
+	return baseVertex[i].getIndexFrom(direction[i]) + offset[i];
     }
 
     /**
        Produces a simple ascii print of all the contexts in this context set.
      */
     public void print(String indent){
-	Context C = null;
-	if (set.size() == 1) ((Context)set.get(0)).print(indent);
-	else{
-	    for (int i=0; i<set.size()-1; i++){
-		((Context)set.get(i)).print(indent);
-	    }
-	    ((Context)set.get(set.size()-1)).print(indent);
-	}
+	materialize();
+	for (int i=0; i<size; i++) get(i).print(indent);
     }
 }
@@ -0,0 +1,266 @@
+/*
+  Program name: fmIndex.java. Is a class representing an FM-index of the symbol list.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `fmIndex.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   This class represents an FM-index of a symbol list, which is a compressed full text index
+   made from the Burrows-Wheeler transform of the symbol list. It is made by the method
+   getFMIndex in the class suffixTree, and it does not refer to the symbol list or the suffix
+   tree, so they may be discarded.
+   <p>
+   The Burrows-Wheeler transform is taken of the symbol list followed by an end marker,
+   which is smaller than every symbol. Its rows are the suffixes in the order of the
+   suffix array, preceded by the empty suffix, and row r holds the symbol before the r'th
+   suffix. The index is made up of the following:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">BWT</font></td><td>The Burrows-Wheeler transform stored as a
+       symbol list, with the end marker stored as symbol 0 at a row which is kept
+       aside</td></tr>
+   <tr><td><font size="-1">C</font></td><td>For every symbol the number of rows whose
+       suffix starts with a smaller symbol, counting the empty suffix</td></tr>
+   <tr><td><font size="-1">Occurrence counts</font></td><td>Either an occurrence table,
+       which holds for every symbol its number of occurrences in the rows before every
+       sampleRate'th row, so an occurrence count is found by reading at most
+       sampleRate - 1 symbols, or a wavelet matrix of the Burrows-Wheeler transform,
+       which finds an occurrence count in time proportional to log K</td></tr>
+   <tr><td><font size="-1">Samples</font></td><td>The index of the first symbol of the
+       suffix of every row whose index is a multiple of sampleRate, and a bit vector
+       marking those rows</td></tr>
+   </table>
+   <p>
+   The occurrence table takes 32K / sampleRate bits per symbol, which is 4096 bytes per
+   symbol for an alphabet of 65536 symbols and the sample rate 64, while the wavelet
+   matrix takes 1.5 bits for every bit of a symbol, which is 3 bytes per symbol for
+   the same alphabet. The one taking fewer bits is used, so the occurrence counts take
+   at most 1.5 bits for every bit of a symbol, and the occurrence table is only used
+   for small alphabets and large sample rates.
+   </p>
+   <p>
+   Counting the instances of a pattern of length m reads m pairs of occurrence counts,
+   so it takes time proportional to m. Locating an instance steps backwards through the
+   symbol list from its row until a sampled row is reached, which takes fewer than
+   sampleRate steps.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class fmIndex{
+
+    private int K, n, sampleRate;
+    private symbolList BWT;
+    private int endRow;  //the row holding the end marker
+    private int C[];
+    private int occurrences[];  //the occurrence counts before row j * sampleRate at j * K + a, or null
+    private waveletMatrix ranks;  //the wavelet matrix giving the occurrence counts when there is no table
+    private long sampled[];     //the bit vector marking the sampled rows
+    private int sampledBefore[];  //the number of sampled rows before every 64 rows
+    private int samples[];
+
+    /**
+       Creates an FM-index from a symbol list and its suffix array.
+
+       @param L          The symbol list
+       @param K          The number of symbols in the alphabet
+       @param SA         The suffix array of the symbol list
+       @param sampleRate The sample rate of the occurrence table, if one is used, and
+                         of the samples
+     */
+    protected fmIndex(symbolList L, int K, int SA[], int sampleRate){
+	this.K = K;
+	this.n = SA.length;
+	this.sampleRate = (sampleRate < 1) ? 1 : sampleRate;
+	int rows = n + 1;
+
+	BWT = symbolList.create(K);
+	C = new int[K + 1];
+	if (32L * K <= (long) waveletMatrix.getBitsPerSymbol(K) * this.sampleRate) occurrences = new int[(rows / this.sampleRate + 1) * K];
+	sampled = new long[(rows + 63) >>> 6];
+	sampledBefore = new int[sampled.length + 1];
+	samples = new int[n / this.sampleRate + 1];
+
+	int count[] = new int[K];
+	for (int r=0; r<rows; r++){
+	    if ((occurrences != null) && (r % this.sampleRate == 0)) System.arraycopy(count, 0, occurrences, (r / this.sampleRate) * K, K);
+	    int s = (r == 0) ? n : SA[r - 1];  //the suffix of row r
+	    if (s == 0){
+		endRow = r;
+		BWT.add(0);
+	    } else{
+		int a = L.get(s - 1);
+		BWT.add(a);
+		count[a]++;
+	    }
+	    if (s % this.sampleRate == 0) sampled[r >>> 6] |= 1L << (r & 63);
+	}
+	if ((occurrences != null) && (rows % this.sampleRate == 0)) System.arraycopy(count, 0, occurrences, (rows / this.sampleRate) * K, K);
+	if (occurrences == null) ranks = new waveletMatrix(BWT, rows, K);
+	C[0] = 1;  //the empty suffix comes first
+	for (int a=0; a<K; a++) C[a + 1] = C[a] + count[a];
+	for (int w=0; w<sampled.length; w++) sampledBefore[w + 1] = sampledBefore[w] + Long.bitCount(sampled[w]);
+	for (int r=0; r<rows; r++){
+	    int s = (r == 0) ? n : SA[r - 1];
+	    if (isSampled(r)) samples[sampledRank(r)] = s;
+	}
+    }
+
+    /**
+       Gets the number of symbols in the indexed symbol list.
+
+       @return The number of symbols in the indexed symbol list
+     */
+    public int size(){
+	return n;
+    }
+
+    /**
+       Gets the Burrows-Wheeler transform of the symbol list followed by the end
+       marker.
+
+       @return The Burrows-Wheeler transform, with the end marker given as -1
+     */
+    public int[] getBWT(){
+	int A[] = new int[n + 1];
+	for (int r=0; r<=n; r++) A[r] = (r == endRow) ? -1 : BWT.get(r);
+	return A;
+    }
+
+    /**
+       Counts the instances of a pattern in the symbol list.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The number of instances of the pattern
+     */
+    public int count(int P[]){
+	long range = backwardSearch(P);
+	return (int)(range & 0xFFFFFFFFL) - (int)(range >>> 32);
+    }
+
+    /**
+       Returns a boolean value which is true if the pattern occurs in the symbol
+       list and which is false otherwise.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  A boolean value which is true if the pattern occurs in the symbol
+                list and which is false otherwise
+     */
+    public boolean contains(int P[]){
+	return count(P) > 0;
+    }
+
+    /**
+       Locates the instances of a pattern in the symbol list.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The index of the first symbol of every instance of the pattern,
+                in increasing order
+     */
+    public int[] locate(int P[]){
+	long range = backwardSearch(P);
+	int from = (int)(range >>> 32);
+	int to = (int)(range & 0xFFFFFFFFL);
+	int A[] = new int[to - from];
+	for (int r=from; r<to; r++) A[r - from] = locate(r);
+	Arrays.sort(A);
+	return A;
+    }
+
+    /**
+       Finds the instance endpoints of a pattern, that is the index into the symbol
+       list of the last symbol of every instance of the pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The instance endpoints in increasing order
+     */
+    public ArrayList<Integer> getInstanceEndPoints(int P[]){
+	ArrayList<Integer> A = new ArrayList<Integer>();
+	for (int s : locate(P)) A.add(Integer.valueOf(s + P.length - 1));
+	return A;
+    }
+
+    /*
+       Finds the rows whose suffixes start with the pattern by reading the pattern
+       backwards. The first row is returned in the upper half of the result and the
+       row after the last one in the lower half.
+     */
+    private long backwardSearch(int P[]){
+	int from = 0, to = n + 1;
+	if (P.length == 0) return 0;
+	for (int i=P.length-1; (i>=0) && (from<to); i--){
+	    int a = normalize(P[i]);
+	    from = C[a] + rank(a, from);
+	    to   = C[a] + rank(a, to);
+	}
+	if (from >= to) return 0;
+	return ((long) from << 32) | to;
+    }
+
+    /*
+       Finds the index of the first symbol of the suffix of row r by stepping
+       backwards through the symbol list until a sampled row is reached.
+     */
+    private int locate(int r){
+	int steps = 0;
+	while (!isSampled(r)){
+	    int a = BWT.get(r);
+	    r = C[a] + rank(a, r);
+	    steps++;
+	}
+	return samples[sampledRank(r)] + steps;
+    }
+
+    /*
+       Counts the occurrences of symbol a in the rows before row r. The end marker is
+       stored as symbol 0, so it is not counted.
+     */
+    private int rank(int a, int r){
+	if (ranks != null) return ranks.rank(a, r) - (((a == 0) && (endRow < r)) ? 1 : 0);
+	int block = r / sampleRate;
+	int count = occurrences[block * K + a];
+	for (int j=block*sampleRate; j<r; j++){
+	    if ((BWT.get(j) == a) && (j != endRow)) count++;
+	}
+	return count;
+    }
+
+    private boolean isSampled(int r){
+	return (sampled[r >>> 6] & (1L << (r & 63))) != 0;
+    }
+
+    /*
+       Counts the sampled rows before row r.
+     */
+    private int sampledRank(int r){
+	return sampledBefore[r >>> 6] + Long.bitCount(sampled[r >>> 6] & ((1L << (r & 63)) - 1));
+    }
+
+    /*
+       Maps a symbol into the alphabet the same way as the suffix tree does.
+     */
+    private int normalize(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+	return a;
+    }
+}
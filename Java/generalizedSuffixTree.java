@@ -0,0 +1,332 @@
+/*
+  Program name: generalizedSuffixTree.java. Is a class representing the generalized suffix tree of many documents.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `generalizedSuffixTree.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   This class represents the generalized suffix tree of many documents, each of which is a
+   sequence of symbols. The documents are kept one after the other in a single suffix tree,
+   built by the arena engine, so there is one root and one symbol list however many
+   documents there are.
+
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Alphabet</font></td><td>The suffix tree's alphabet is the K
+       symbols of the documents followed by maxDocuments terminators</td></tr>
+   <tr><td><font size="-1">Terminator</font></td><td>Document d is followed by the symbol
+       K + maxDocuments - 1 - d, which occurs nowhere else. Every suffix of every document
+       therefore ends at a leaf of its own, and no instance of a pattern crosses the end
+       of a document</td></tr>
+   <tr><td><font size="-1">Document start</font></td><td>The index in the symbol list of the
+       first symbol of every document, from which an instance of a pattern is reported as
+       a document and an offset into it</td></tr>
+   </table>
+   <p>
+   The terminators are given from the largest down, as the children of an arena vertex are
+   kept in a list ordered by direction. The terminator of a new document is then put before
+   the terminators of the older documents, after at most K other children.
+   </p>
+   <p>
+   The number of documents containing a pattern is the number of different documents of
+   the leaves below the pattern. The method countDocuments counts it for every vertex in
+   one depth first pass, by counting the leaves and subtracting one at the lowest common
+   ancestor of every two leaves of the same document which follow each other in the pass.
+   The lowest common ancestors are found in the same pass with a union-find structure,
+   where every finished vertex points towards its parent.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class generalizedSuffixTree{
+
+    /**
+       Receives the instances of a pattern, each as a document and an offset into it.
+     */
+    public interface occurrenceConsumer{
+
+	/**
+	   Receives an instance of a pattern.
+
+	   @param document The number of the document, counting from 0 in the order in
+	                   which the documents were added
+	   @param offset   The index in the document of the first symbol of the instance
+	 */
+	void accept(int document, int offset);
+    }
+
+    private static final int ROOT = vertexArena.ROOT;
+    private static final int NONE = vertexArena.NONE;
+
+    private int K;
+    private int maxDocuments;
+    private suffixTree T;
+    private vertexArena arena;
+    private int documentStart[];
+    private int nrOfDocuments;
+    private int nrOfDocumentsBelow[];        //the number of documents below every vertex, as counted by countDocuments
+    private int nrOfDocumentsCounted = -1;  //the number of documents when they were last counted
+
+    /**
+       Creates a new generalized suffix tree without documents.
+
+       @param K            The number of symbols in the alphabet of the documents
+       @param maxDocuments The largest number of documents, which is the number of
+                           terminators added to the alphabet
+       @throws             java.lang.IllegalArgumentException If there is not room for
+                           both the symbols and the terminators in an int
+     */
+    public generalizedSuffixTree(int K, int maxDocuments){
+	this.K = (K < 1) ? 1 : K;
+	if ((maxDocuments < 1) || (maxDocuments > Integer.MAX_VALUE - this.K)){
+	    throw new IllegalArgumentException("There is no room for " + maxDocuments + " terminators");
+	}
+	this.maxDocuments = maxDocuments;
+	T = new suffixTree(this.K + maxDocuments, suffixTree.ARENA_ENGINE);
+	arena = T.getArena();
+	documentStart = new int[16];
+	nrOfDocuments = 0;
+    }
+
+    /**
+       Adds a document, followed by its terminator.
+
+       @param  A The symbols of the document
+       @return   The number of the document
+       @throws   java.lang.IllegalStateException If maxDocuments documents have already
+                 been added
+     */
+    public int addDocument(int A[]){
+	return addDocument(A, 0, (A == null) ? 0 : A.length);
+    }
+
+    /**
+       Adds a document, followed by its terminator. The symbols are mapped into the
+       alphabet the same way as by the method add in the class suffixTree, so they
+       never become terminators.
+
+       @param  A   An array containing the symbols of the document
+       @param  off Index in A of the first symbol of the document
+       @param  len The number of symbols in the document
+       @return     The number of the document
+       @throws     java.lang.IllegalStateException If maxDocuments documents have already
+                   been added
+     */
+    public int addDocument(int A[], int off, int len){
+	if (nrOfDocuments == maxDocuments){
+	    throw new IllegalStateException("There is no terminator left for another document");
+	}
+	int d = nrOfDocuments;
+	if (d == documentStart.length) documentStart = Arrays.copyOf(documentStart, 2 * d);
+	documentStart[d] = T.getSizeL();
+
+	for (int i=off; i<off+len; i++) T.add(normalize(A[i]));
+	T.add(K + maxDocuments - 1 - d);
+	nrOfDocuments++;
+	return d;
+    }
+
+    /**
+       Gets the number of documents.
+
+       @return The number of documents
+     */
+    public int getNrOfDocuments(){
+	return nrOfDocuments;
+    }
+
+    /**
+       Gets the number of symbols in a document, not counting its terminator.
+
+       @param d The number of the document
+       @return  The number of symbols in the document
+     */
+    public int getDocumentLength(int d){
+	if ((d < 0) || (d >= nrOfDocuments)) throw new IndexOutOfBoundsException("Document: " + d + ", Documents: " + nrOfDocuments);
+	int end = (d + 1 < nrOfDocuments) ? documentStart[d + 1] : T.getSizeL();
+	return end - documentStart[d] - 1;
+    }
+
+    /**
+       Gets the suffix tree holding the documents. Its symbol list contains the
+       terminators, and it is changed by adding documents.
+
+       @return The suffix tree holding the documents
+     */
+    public suffixTree getSuffixTree(){
+	return T;
+    }
+
+    /**
+       Returns a boolean value which is true if some document contains a pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  A boolean value which is true if some document contains the pattern
+     */
+    public boolean contains(int P[]){
+	return T.contains(normalize(P));
+    }
+
+    /**
+       Counts the instances of a pattern in all the documents.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The number of instances of the pattern
+     */
+    public int count(int P[]){
+	return T.count(normalize(P));
+    }
+
+    /**
+       Reports every instance of a pattern to an action, as the document containing it
+       and the offset of the instance in that document, in no particular order.
+
+       @param P      The pattern, which is a non empty sequence of symbols
+       @param action The action which is given every instance of the pattern
+     */
+    public void forEachOccurrence(int P[], occurrenceConsumer action){
+	T.forEachOccurrence(normalize(P), s -> {
+		int d = getDocument(s);
+		action.accept(d, s - documentStart[d]);
+	    });
+    }
+
+    /**
+       Counts the documents containing a pattern. If the documents have been counted
+       by countDocuments since the last document was added, it takes time proportional
+       to the length of the pattern, and otherwise the instances are visited.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The number of documents containing the pattern
+     */
+    public int countDocuments(int P[]){
+	int Q[] = normalize(P);
+	if (nrOfDocumentsCounted == nrOfDocuments){
+	    int v = T.locateHandle(Q);
+	    if (v == NONE) return 0;
+	    return arena.isLeaf(v) ? 1 : nrOfDocumentsBelow[v];
+	}
+	BitSet B = new BitSet(nrOfDocuments);
+	T.forEachOccurrence(Q, s -> B.set(getDocument(s)));
+	return B.cardinality();
+    }
+
+    /**
+       Counts the documents with a leaf below every vertex in one depth first pass over
+       the suffix tree, so the documents containing a pattern are counted without
+       visiting its instances. The counts are up to date until another document is added.
+     */
+    public void countDocuments(){
+	int n = arena.getNrOfVertices();
+	int count[] = new int[n];
+	int ancestor[] = new int[n];
+	int last[] = new int[nrOfDocuments];  //the parent of the last leaf of every document
+	Arrays.fill(last, NONE);
+	int path[] = new int[64];  //the vertices from the root to the vertex being visited
+	int next[] = new int[64];  //the next child to visit of every vertex on the path
+	int top = 0;
+
+	path[top] = ROOT;
+	next[top] = arena.getFirstChild(ROOT);
+	ancestor[ROOT] = ROOT;
+	top++;
+	while (top > 0){
+	    int v = path[top - 1];
+	    int c = next[top - 1];
+	    if (c == NONE){  //v is finished
+		top--;
+		if (top > 0){
+		    count[path[top - 1]] += count[v];
+		    ancestor[v] = path[top - 1];
+		}
+		continue;
+	    }
+	    next[top - 1] = arena.getNextSibling(c);
+
+	    if (arena.isLeaf(c)){
+		int d = getDocument(arena.getIndexFrom(c) - arena.getDepth(v));
+		count[v]++;
+		if (last[d] != NONE) count[find(ancestor, last[d])]--;  //at the lowest common ancestor
+		last[d] = v;
+		continue;
+	    }
+	    if (top == path.length){
+		path = Arrays.copyOf(path, 2 * top);
+		next = Arrays.copyOf(next, 2 * top);
+	    }
+	    ancestor[c] = c;
+	    path[top] = c;
+	    next[top] = arena.getFirstChild(c);
+	    top++;
+	}
+	nrOfDocumentsBelow = count;
+	nrOfDocumentsCounted = nrOfDocuments;
+    }
+
+    /*
+       Finds the vertex on the path from the root to the vertex being visited which is
+       the lowest ancestor of vertex v, and points the vertices on the way directly at it.
+     */
+    private static int find(int ancestor[], int v){
+	int a = v;
+	while (ancestor[a] != a) a = ancestor[a];
+	while (ancestor[v] != a){
+	    int u = ancestor[v];
+	    ancestor[v] = a;
+	    v = u;
+	}
+	return a;
+    }
+
+    /*
+       Finds the document containing the symbol at index s in the symbol list, where
+       the terminator of a document belongs to the document.
+     */
+    private int getDocument(int s){
+	int lo = 0, hi = nrOfDocuments - 1;
+	while (lo < hi){
+	    int mid = (lo + hi + 1) >>> 1;
+	    if (documentStart[mid] <= s) lo = mid;
+	    else hi = mid - 1;
+	}
+	return lo;
+    }
+
+    /*
+       Maps a symbol into the alphabet of the documents the same way as the method
+       add in the class suffixTree does.
+     */
+    private int normalize(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+	return a;
+    }
+
+    /*
+       Maps the symbols of a pattern into the alphabet of the documents, so a pattern
+       never contains a terminator.
+     */
+    private int[] normalize(int P[]){
+	int Q[] = new int[P.length];
+	for (int i=0; i<P.length; i++) Q[i] = normalize(P[i]);
+	return Q;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+  Program name: intSymbolList.java. Is a class representing a symbol list storing each symbol in an int.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `intSymbolList.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.lang.invoke.*;
+import java.util.*;
+
+/**
+   A symbol list storing each symbol in an int.
+
+   @author Tommy Petersen
+ */
+class intSymbolList extends symbolList{
+
+    private int chunks[][];  //stored with release ordering when it grows, for the readers in other threads
+
+    private static final VarHandle CHUNKS;
+    static{
+	try{
+	    CHUNKS = MethodHandles.lookup().findVarHandle(intSymbolList.class, "chunks", int[][].class);
+	} catch (ReflectiveOperationException ROE){
+	    throw new ExceptionInInitializerError(ROE);
+	}
+    }
+
+    /**
+       Creates a new empty symbol list.
+     */
+    intSymbolList(){
+	chunks = new int[0][];
+    }
+
+    public int get(int i){
+	return chunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+    }
+
+    int read(int i){
+	int C[][] = (int[][])CHUNKS.getAcquire(this);
+	return C[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+    }
+
+    protected void add(int a){
+	int chunk = size >>> CHUNK_SHIFT;
+	if (chunk == chunks.length) CHUNKS.setRelease(this, Arrays.copyOf(chunks, directoryLength(chunks.length, chunk)));
+	if (chunks[chunk] == null) chunks[chunk] = new int[CHUNK_SIZE];
+	chunks[chunk][size & CHUNK_MASK] = a;
+	size++;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+  Program name: mappedIntArray.java. Is a class representing an array of ints mapped from a file.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `mappedIntArray.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+   A read only array of ints, which is either memory mapped from a part of a file or copied
+   into direct buffers outside the heap. It is kept in regions of 1 GB, so the array may be
+   larger than a single buffer.
+
+   @author Tommy Petersen
+ */
+class mappedIntArray{
+
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    private ByteBuffer regions[];
+    private int length;
+
+    /**
+       Maps a part of a file holding a given number of ints.
+
+       @param  channel  The channel of the file, which must be open for reading
+       @param  position The position in the file of the first int
+       @param  length   The number of ints
+       @throws          java.io.IOException If the file cannot be mapped
+     */
+    mappedIntArray(FileChannel channel, long position, int length) throws IOException{
+	this.length = length;
+	long bytes = (long) length << 2;
+	regions = new ByteBuffer[(int)((bytes + REGION_MASK) >>> REGION_SHIFT)];
+	for (int r=0; r<regions.length; r++){
+	    long start = (long) r << REGION_SHIFT;
+	    regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, Math.min(REGION_MASK + 1, bytes - start));
+	}
+    }
+
+    /**
+       Copies the first ints of an array into direct buffers outside the heap, which
+       are in the native byte order.
+
+       @param A      The array
+       @param length The number of ints copied
+     */
+    mappedIntArray(int A[], int length){
+	this.length = length;
+	regions = allocateDirect((long) length << 2);
+	for (int r=0; r<regions.length; r++){
+	    int from = r << (REGION_SHIFT - 2);
+	    regions[r].asIntBuffer().put(A, from, Math.min(length - from, 1 << (REGION_SHIFT - 2)));
+	}
+    }
+
+    /**
+       Allocates direct buffers in the native byte order holding a given number of
+       bytes in regions of 1 GB.
+
+       @param bytes The number of bytes
+       @return      The direct buffers
+     */
+    static ByteBuffer[] allocateDirect(long bytes){
+	ByteBuffer regions[] = new ByteBuffer[(int)((bytes + REGION_MASK) >>> REGION_SHIFT)];
+	for (int r=0; r<regions.length; r++){
+	    long start = (long) r << REGION_SHIFT;
+	    regions[r] = ByteBuffer.allocateDirect((int) Math.min(REGION_MASK + 1, bytes - start)).order(ByteOrder.nativeOrder());
+	}
+	return regions;
+    }
+
+    /**
+       Gets the i'th int.
+
+       @param i Index into the array
+       @return  The i'th int
+     */
+    int get(int i){
+	long position = (long) i << 2;
+	return regions[(int)(position >>> REGION_SHIFT)].getInt((int)(position & REGION_MASK));
+    }
+
+    /**
+       Gets the number of ints in the array.
+
+       @return The number of ints in the array
+     */
+    int length(){
+	return length;
+    }
+}
@@ -0,0 +1,580 @@
+/*
+  Program name: mappedSuffixTree.java. Is a class representing a suffix tree loaded from a memory mapped file.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `mappedSuffixTree.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+   This class represents a suffix tree which cannot be extended, and which is kept outside
+   the heap as the columns of ints described in the class treeColumns. It is either loaded
+   by memory mapping a file written by the method write in the class suffixTree, or made by
+   the method freeze in the class suffixTree, which copies the suffix tree into direct
+   buffers. Queries are answered straight from the columns, so no vertices are created,
+   loading takes time independent of the size of the suffix tree, processes mapping the
+   same file share its pages, and the garbage collector does not trace the suffix tree.
+   <p>
+   The vertices which are not leaves are given by their numbers, where the root is vertex
+   0, and an edge is given by the vertex it leaves and its direction, as in the class
+   Vertex. The vertices are numbered in preorder, so every subtree is contiguous.
+   </p>
+   <p>
+   The file starts with a header of ten big endian ints, which is followed by the sections
+   listed below.
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Header</font></td><td>The magic number 0x53554658, the version,
+       the number of symbols in the alphabet, the flags, the number of symbols, the format
+       of the symbols as given in the class mappedSymbolList, the number of vertices, the
+       number of edges, the number of contexts and an unused int</td></tr>
+   <tr><td><font size="-1">Symbols</font></td><td>The symbol list in the format given in
+       the header, padded to a multiple of 4 bytes</td></tr>
+   <tr><td><font size="-1">Vertices</font></td><td>The column firstEdge</td></tr>
+   <tr><td><font size="-1">Edges</font></td><td>The columns edgeDirection, edgeIndexFrom,
+       edgeIndexTo and edgeChild</td></tr>
+   <tr><td><font size="-1">Leaves</font></td><td>The column nrOfLeaves, from version 2
+       on</td></tr>
+   <tr><td><font size="-1">Context counts</font></td><td>The columns contextsBelow and
+       contextEdge, from version 3 on</td></tr>
+   <tr><td><font size="-1">Contexts</font></td><td>If the flag WITH_CONTEXT_SET is set, the
+       base vertex, the direction and the offset of every context, ordered from the empty
+       context to the longest context</td></tr>
+   </table>
+   <p>
+   The instances of a pattern are counted in time proportional to its length, as the
+   leaves and contexts below the edge on which it ends are counted, less the contexts
+   ending on that edge before the pattern does. Files of version 1 and 2, which have
+   no context counts, are loaded as well, and counting the instances of a pattern then
+   visits its leaves. Files of later versions are not loaded.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class mappedSuffixTree{
+
+    /**
+       The magic number starting every file.
+     */
+    public static final int MAGIC = 0x53554658;
+
+    /**
+       The version of the file format.
+     */
+    public static final int VERSION = 3;
+
+    /**
+       The flag telling that the file holds the contexts of the context set.
+     */
+    public static final int WITH_CONTEXT_SET = 1;
+
+    private static final int HEADER_SIZE = 40;
+
+    private int K, flags, n, nrOfVertices, nrOfEdges, nrOfContexts;
+    private mappedSymbolList L;
+    private mappedIntArray firstEdge, edgeDirection, edgeIndexFrom, edgeIndexTo, edgeChild, nrOfLeaves, contexts;
+    private mappedIntArray contextsBelow, contextEdge;
+    private int x0 = -1;  //the index of the earlier instance of the longest context, found when first needed
+
+    /**
+       Loads a suffix tree by memory mapping a file written by the method write in
+       the class suffixTree.
+
+       @param  channel The channel of the file, which must be open for reading. It
+                       may be closed when the suffix tree has been loaded
+       @throws         java.io.IOException If the file cannot be mapped, or if it is
+                       not a suffix tree file of version 1 to VERSION
+     */
+    public mappedSuffixTree(FileChannel channel) throws IOException{
+	ByteBuffer H = ByteBuffer.allocate(HEADER_SIZE);
+	while (H.hasRemaining()){
+	    if (channel.read(H, H.position()) < 0) throw new IOException("The file is too short for a suffix tree");
+	}
+	H.flip();
+	if (H.getInt() != MAGIC) throw new IOException("The file is not a suffix tree");
+	int version = H.getInt();
+	if ((version < 1) || (version > VERSION)) throw new IOException("Version " + version + " of the suffix tree file is not supported");
+	K            = H.getInt();
+	flags        = H.getInt();
+	n            = H.getInt();
+	int format   = H.getInt();
+	nrOfVertices = H.getInt();
+	nrOfEdges    = H.getInt();
+	nrOfContexts = H.getInt();
+
+	long position = HEADER_SIZE;
+	L = new mappedSymbolList(channel, position, n, format, ByteOrder.BIG_ENDIAN, K);
+	L.addAll();
+	position += (((long) n << format) + 3) & ~3L;
+	firstEdge     = new mappedIntArray(channel, position, nrOfVertices + 1);
+	position += 4L * (nrOfVertices + 1);
+	edgeDirection = new mappedIntArray(channel, position, nrOfEdges);
+	position += 4L * nrOfEdges;
+	edgeIndexFrom = new mappedIntArray(channel, position, nrOfEdges);
+	position += 4L * nrOfEdges;
+	edgeIndexTo   = new mappedIntArray(channel, position, nrOfEdges);
+	position += 4L * nrOfEdges;
+	edgeChild     = new mappedIntArray(channel, position, nrOfEdges);
+	position += 4L * nrOfEdges;
+	if (version >= 2){
+	    nrOfLeaves = new mappedIntArray(channel, position, nrOfVertices);
+	    position += 4L * nrOfVertices;
+	}
+	if (version >= 3){
+	    contextsBelow = new mappedIntArray(channel, position, nrOfVertices);
+	    position += 4L * nrOfVertices;
+	    contextEdge = new mappedIntArray(channel, position, nrOfContexts);
+	    position += 4L * nrOfContexts;
+	}
+	if (hasContextSet()) contexts = new mappedIntArray(channel, position, 3 * nrOfContexts);
+    }
+
+    /**
+       Makes a suffix tree from columns which have been copied outside the heap.
+
+       @param K            The number of symbols in the alphabet
+       @param nrOfContexts The number of contexts, including the empty context
+       @param L            The symbol list
+       @param T            The columns of the suffix tree
+     */
+    mappedSuffixTree(int K, int nrOfContexts, mappedSymbolList L, treeColumns T){
+	this.K = K;
+	this.nrOfContexts = nrOfContexts;
+	this.L = L;
+	n = L.size();
+	nrOfVertices  = T.nrOfVertices;
+	nrOfEdges     = T.nrOfEdges;
+	firstEdge     = new mappedIntArray(T.firstEdge, nrOfVertices + 1);
+	edgeDirection = new mappedIntArray(T.edgeDirection, nrOfEdges);
+	edgeIndexFrom = new mappedIntArray(T.edgeIndexFrom, nrOfEdges);
+	edgeIndexTo   = new mappedIntArray(T.edgeIndexTo, nrOfEdges);
+	edgeChild     = new mappedIntArray(T.edgeChild, nrOfEdges);
+	nrOfLeaves    = new mappedIntArray(T.nrOfLeaves, nrOfVertices);
+	contextsBelow = new mappedIntArray(T.contextsBelow, nrOfVertices);
+	contextEdge   = new mappedIntArray(T.contextEdge, nrOfContexts);
+    }
+
+    /**
+       Gets the number of symbols in the alphabet.
+
+       @return The number of symbols in the alphabet
+     */
+    public int getK(){
+	return K;
+    }
+
+    /**
+       Returns the symbol list from which the suffix tree was created. Its symbols
+       are read from the mapped file.
+
+       @return The symbol list from which the suffix tree was created
+     */
+    public symbolList getSymbolList(){
+	return L;
+    }
+
+    public int getSizeL(){
+	return n;
+    }
+
+    /**
+       Gets the number of vertices which are not leaves, including the root.
+
+       @return The number of vertices which are not leaves
+     */
+    public int getNrOfVertices(){
+	return nrOfVertices;
+    }
+
+    /**
+       Gets the number of edges.
+
+       @return The number of edges
+     */
+    public int getNrOfEdges(){
+	return nrOfEdges;
+    }
+
+    /**
+       Gets the number of the root vertex.
+
+       @return The number of the root vertex, which is 0
+     */
+    public int getRoot(){
+	return 0;
+    }
+
+    /**
+       Returns a boolean informing if vertex v has a child in direction k.
+
+       @param v The number of the vertex
+       @param k The child's direction
+       @return  True if vertex v has a child, which may be a leaf, in
+                direction k, false if not
+     */
+    public boolean hasChild(int v, int k){
+	return findEdge(v, k) >= 0;
+    }
+
+    /**
+       Returns a boolean informing if the child of vertex v in direction k
+       is a leaf.
+
+       @param v The number of the vertex
+       @param k The child's direction
+       @return  True if the child in direction k is a leaf, false if it is
+                not or if there is no child in direction k
+     */
+    public boolean isLeafChild(int v, int k){
+	int e = findEdge(v, k);
+	return (e >= 0) && (edgeChild.get(e) < 0);
+    }
+
+    /**
+       Gets the child of vertex v in direction k.
+
+       @param v The number of the vertex
+       @param k The child's direction
+       @return  The number of the child in direction k, or -1 if the child
+                is a leaf or if there is no child in direction k
+     */
+    public int getChild(int v, int k){
+	int e = findEdge(v, k);
+	return (e < 0) ? -1 : edgeChild.get(e);
+    }
+
+    /**
+       Gets an index into the symbol sequence giving the first symbol
+       of the edge from vertex v in direction k.
+
+       @param v The number of the vertex
+       @param k The direction of the edge
+       @return  Index into the symbol sequence giving the first symbol of
+                the edge, or -1 if there is no child in direction k
+     */
+    public int getIndexFrom(int v, int k){
+	int e = findEdge(v, k);
+	return (e < 0) ? -1 : edgeIndexFrom.get(e);
+    }
+
+    /**
+       Gets an index into the symbol sequence giving the last symbol
+       of the edge from vertex v in direction k. It is Integer.MAX_VALUE
+       if the child in direction k is a leaf.
+
+       @param v The number of the vertex
+       @param k The direction of the edge
+       @return  Index into the symbol sequence giving the last symbol of
+                the edge, or -1 if there is no child in direction k
+     */
+    public int getIndexTo(int v, int k){
+	int e = findEdge(v, k);
+	return (e < 0) ? -1 : edgeIndexTo.get(e);
+    }
+
+    /**
+       Gets the number of children of vertex v, including leaves.
+
+       @param v The number of the vertex
+       @return  The number of children
+     */
+    public int getNrOfChildren(int v){
+	return firstEdge.get(v + 1) - firstEdge.get(v);
+    }
+
+    /**
+       Gets the smallest direction in which vertex v has a child.
+
+       @param v The number of the vertex
+       @return  The smallest direction in which vertex v has a child,
+                or -1 if it has no children
+     */
+    public int getFirstDirection(int v){
+	int e = firstEdge.get(v);
+	return (e < firstEdge.get(v + 1)) ? edgeDirection.get(e) : -1;
+    }
+
+    /**
+       Gets the next larger direction in which vertex v has a child.
+
+       @param v The number of the vertex
+       @param k A direction in which vertex v has a child
+       @return  The smallest direction larger than k in which vertex v
+                has a child, or -1 if there is none
+     */
+    public int getNextDirection(int v, int k){
+	int e = findEdge(v, k);
+	return ((e >= 0) && (e + 1 < firstEdge.get(v + 1))) ? edgeDirection.get(e + 1) : -1;
+    }
+
+    /**
+       Returns a boolean value which is true if the file holds the contexts of the
+       context set and which is false otherwise.
+
+       @return A boolean value which is true if the file holds the contexts of the
+               context set and which is false otherwise
+     */
+    public boolean hasContextSet(){
+	return (flags & WITH_CONTEXT_SET) != 0;
+    }
+
+    /**
+       Gets the number of contexts, including the empty context. It is known even
+       if the file does not hold the contexts.
+
+       @return The number of contexts, including the empty context
+     */
+    public int getNrOfContexts(){
+	return nrOfContexts;
+    }
+
+    /**
+       Gets the number of the base vertex of the i'th context.
+
+       @param i Index into the context set, where the 0'th context is the empty context
+       @return  The number of the base vertex of the i'th context
+     */
+    public int getContextBaseVertex(int i){
+	return contexts.get(3 * i);
+    }
+
+    /**
+       Gets the direction of the i'th context.
+
+       @param i Index into the context set
+       @return  The direction of the i'th context, or -1 if it ends at its base vertex
+     */
+    public int getContextDirection(int i){
+	return contexts.get(3 * i + 1);
+    }
+
+    /**
+       Gets the offset of the i'th context.
+
+       @param i Index into the context set
+       @return  The offset of the i'th context, or -1 if it ends at its base vertex
+     */
+    public int getContextOffset(int i){
+	return contexts.get(3 * i + 2);
+    }
+
+    /**
+       Returns a boolean value which is true if the pattern occurs in the symbol
+       list and which is false otherwise.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  A boolean value which is true if the pattern occurs in the symbol
+                list and which is false otherwise
+     */
+    public boolean contains(int P[]){
+	return (P.length > 0) && (locate(P, null) >= 0);
+    }
+
+    /**
+       Counts the instances of a pattern in the symbol list. It takes time
+       proportional to the length of the pattern, unless the file is of version 1
+       or 2.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The number of instances of the pattern
+     */
+    public int count(int P[]){
+	int m = P.length;
+	if (m == 0) return 0;
+	if (nrOfLeaves == null){
+	    int count[] = new int[1];
+	    forEachInstanceEndPoint(P, e -> count[0]++);
+	    return count[0];
+	}
+	int depth[] = new int[1];
+	int e = locate(P, depth);
+	if (e < 0) return 0;
+	int child = edgeChild.get(e);
+	if (child < 0) return 1 + suffixTree.visitContexts(edgeIndexFrom.get(e) - depth[0], m, n, Math.max(0, n - nrOfContexts + 1), longestContextCopy(), null);
+	if (contextEdge == null){
+	    if (nrOfContexts - 1 < m) return nrOfLeaves.get(child);  //no context is long enough to be an instance
+	    int count[] = new int[1];
+	    forEachInstanceEndPoint(P, f -> count[0]++);
+	    return count[0];
+	}
+	int count = nrOfLeaves.get(child) + contextsBelow.get(child);
+	for (int d=depth[0]+1; d<Math.min(m, nrOfContexts); d++){
+	    if (contextEdge.get(d) == e) count--;  //the contexts ending on the edge before the pattern does
+	}
+	return count;
+    }
+
+    /**
+       Finds the instance endpoints of a pattern, that is the index into the symbol
+       list of the last symbol of every instance of the pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The instance endpoints in increasing order
+     */
+    public ArrayList<Integer> getInstanceEndPoints(int P[]){
+	int instanceEndPoints[] = getInstanceEndPointArray(P);
+	ArrayList<Integer> A = new ArrayList<Integer>(instanceEndPoints.length);
+	for (int i=0; i<instanceEndPoints.length; i++) A.add(Integer.valueOf(instanceEndPoints[i]));
+	return A;
+    }
+
+    /**
+       Finds the instance endpoints of a pattern, that is the index into the symbol
+       list of the last symbol of every instance of the pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The instance endpoints in increasing order
+     */
+    public int[] getInstanceEndPointArray(int P[]){
+	Context.endPointBuffer B = new Context.endPointBuffer();
+	forEachInstanceEndPoint(P, B);
+	return B.toSortedArray();
+    }
+
+    /**
+       Passes every instance endpoint of a pattern to the action, in the order in
+       which the suffixes of the instances appear below the pattern, which is not
+       the order of the endpoints.
+
+       @param P      The pattern, which is a non empty sequence of symbols
+       @param action The action to perform on every instance endpoint
+     */
+    public void forEachInstanceEndPoint(int P[], IntConsumer action){
+	int m = P.length;
+	if (m == 0) return;
+	int depth[] = new int[1];
+	int e = locate(P, depth);
+	if (e < 0) return;
+	int nrOfLeaves = Math.max(0, n - nrOfContexts + 1);
+	int x0 = longestContextCopy();
+	IntConsumer endPoints = s -> action.accept(s + m - 1);
+
+	/*
+	  Every leaf below the end of the pattern is a suffix starting with the
+	  pattern. The suffix of a leaf starts at the leaf edge's indexFrom less
+	  the depth of the vertex the edge leaves, which is kept on the stack.
+	  The longest suffixes occur earlier in the symbol list, so they do not end
+	  at a leaf. They are the contexts, and their instances are found from the
+	  instances beginning at a leaf as done by the suffix tree.
+	*/
+	int stack[] = new int[64];
+	int top = 0;
+	stack[top++] = e;
+	stack[top++] = depth[0];
+	while (top > 0){
+	    int d = stack[--top];
+	    int edge = stack[--top];
+	    int child = edgeChild.get(edge);
+	    if (child < 0){
+		int s = edgeIndexFrom.get(edge) - d;
+		action.accept(s + m - 1);
+		suffixTree.visitContexts(s, m, n, nrOfLeaves, x0, endPoints);
+	    } else{
+		int childDepth = d + edgeIndexTo(edge) - edgeIndexFrom.get(edge) + 1;
+		for (int f=firstEdge.get(child); f<firstEdge.get(child + 1); f++){
+		    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+		    stack[top++] = f;
+		    stack[top++] = childDepth;
+		}
+	    }
+	}
+    }
+
+    /*
+       Finds the index of the first symbol of the earlier instance of the longest
+       context by following it from the root, the first time it is needed. It is
+       0 if there are no contexts.
+     */
+    private int longestContextCopy(){
+	if (x0 < 0){
+	    int X[] = new int[Math.max(0, nrOfContexts - 1)];
+	    for (int i=0; i<X.length; i++) X[i] = L.get(n - X.length + i);
+	    int depth[] = new int[1];
+	    x0 = (X.length == 0) ? 0 : edgeIndexFrom.get(locate(X, depth)) - depth[0];
+	}
+	return x0;
+    }
+
+    /*
+       Finds the edge on which the pattern ends when it is read from the root. The
+       depth of the vertex which the edge leaves is put into depth[0], unless depth
+       is null. It returns -1 if the pattern does not occur.
+     */
+    private int locate(int P[], int depth[]){
+	int m = P.length;
+	int v = 0;  //the root
+	int d = 0;  //the depth of v
+	int i = 0;  //the number of symbols of the pattern read
+	while (v >= 0){
+	    int e = findEdge(v, normalize(P[i]));
+	    if (e < 0) return -1;
+	    int indexFrom = edgeIndexFrom.get(e);
+	    int length = edgeIndexTo(e) - indexFrom + 1;
+	    for (int j=0; (j<length) && (i<m); j++, i++){
+		if (L.get(indexFrom + j) != normalize(P[i])) return -1;
+	    }
+	    if (i == m){
+		if (depth != null) depth[0] = d;
+		return e;
+	    }
+	    v = edgeChild.get(e);
+	    d += length;
+	}
+	return -1;  //the pattern runs past the end of a leaf
+    }
+
+    /*
+       Finds the edge in direction a from vertex v by binary search, or returns -1
+       if there is none.
+     */
+    private int findEdge(int v, int a){
+	int low = firstEdge.get(v);
+	int high = firstEdge.get(v + 1) - 1;
+	while (low <= high){
+	    int middle = (low + high) >>> 1;
+	    int k = edgeDirection.get(middle);
+	    if (k < a) low = middle + 1;
+	    else if (k > a) high = middle - 1;
+	    else return middle;
+	}
+	return -1;
+    }
+
+    /*
+       Gets the index of the last symbol on an edge, where an edge to a leaf ends
+       at the end of the symbol list.
+     */
+    private int edgeIndexTo(int e){
+	return Math.min(edgeIndexTo.get(e), n - 1);
+    }
+
+    /*
+       Maps a symbol into the alphabet the same way as the suffix tree does.
+     */
+    private int normalize(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+	return a;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+  Program name: mappedSymbolList.java. Is a class representing a symbol list mapped from a file.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `mappedSymbolList.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+   A symbol list whose symbols are read from a memory mapped binary file. The mapped file
+   is the store of the symbol list, so the symbols are neither parsed nor copied onto the
+   heap, and the operating system may share the pages of the file between processes. The
+   symbols of a frozen suffix tree are copied into direct buffers, which are read the
+   same way.
+   <p>
+   The file holds the symbols one after another in one of the following formats, in either
+   little endian or big endian byte order:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">U8</font></td><td>Every symbol is an unsigned byte</td></tr>
+   <tr><td><font size="-1">U16</font></td><td>Every symbol is an unsigned 16 bit
+       integer</td></tr>
+   <tr><td><font size="-1">I32</font></td><td>Every symbol is a signed 32 bit
+       integer</td></tr>
+   </table>
+   <p>
+   The symbol list starts out empty, and adding a symbol only makes the next symbol of
+   the file part of the list. Symbols outside the alphabet are read as the suffix tree
+   maps them into the alphabet when they are added. Symbols added after every symbol of
+   the file are stored on the heap, in a symbol list of their own.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class mappedSymbolList extends symbolList{
+
+    /**
+       Selects the format in which every symbol is an unsigned byte.
+     */
+    public static final int U8 = 0;
+
+    /**
+       Selects the format in which every symbol is an unsigned 16 bit integer.
+     */
+    public static final int U16 = 1;
+
+    /**
+       Selects the format in which every symbol is a signed 32 bit integer.
+     */
+    public static final int I32 = 2;
+
+    private static final int REGION_SHIFT = 30;  //a file is mapped in regions of 1 GB
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    private ByteBuffer regions[];
+    private int format, length, K;
+    private symbolList tail;  //the symbols added after every symbol of the file
+
+    /**
+       Maps a file of symbols into a new empty symbol list.
+
+       @param  channel The channel of the file, which must be open for reading
+       @param  format  The format of the symbols, either U8, U16 or I32
+       @param  order   The byte order of the symbols
+       @param  K       The number of symbols in the alphabet
+       @throws         java.io.IOException If the file cannot be mapped or holds
+                       more symbols than can be indexed by an int
+     */
+    mappedSymbolList(FileChannel channel, int format, ByteOrder order, int K) throws IOException{
+	this(channel, 0, symbolsIn(channel.size(), format), format, order, K);
+    }
+
+    /**
+       Maps a part of a file holding a given number of symbols into a new empty
+       symbol list.
+
+       @param  channel  The channel of the file, which must be open for reading
+       @param  position The position in the file of the first symbol
+       @param  length   The number of symbols
+       @param  format   The format of the symbols, either U8, U16 or I32
+       @param  order    The byte order of the symbols
+       @param  K        The number of symbols in the alphabet
+       @throws          java.io.IOException If the file cannot be mapped
+     */
+    mappedSymbolList(FileChannel channel, long position, int length, int format, ByteOrder order, int K) throws IOException{
+	if ((format < U8) || (format > I32)) throw new IllegalArgumentException("Unknown symbol format: " + format);
+	this.format = format;
+	this.length = length;
+	this.K = K;
+
+	long bytes = (long) length << format;  //format is the base 2 logarithm of the symbol width
+	regions = new ByteBuffer[(int)((bytes + REGION_MASK) >>> REGION_SHIFT)];
+	for (int r=0; r<regions.length; r++){
+	    long start = (long) r << REGION_SHIFT;
+	    regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, Math.min(REGION_MASK + 1, bytes - start)).order(order);
+	}
+    }
+
+    /**
+       Copies the symbols of a symbol list into direct buffers outside the heap. The
+       new symbol list holds every symbol copied.
+
+       @param L      The symbol list
+       @param format The format of the symbols, either U8, U16 or I32
+       @param K      The number of symbols in the alphabet
+     */
+    mappedSymbolList(symbolList L, int format, int K){
+	this.format = format;
+	this.length = L.size();
+	this.K = K;
+	regions = mappedIntArray.allocateDirect((long) length << format);
+	for (int i=0; i<length; i++){
+	    long position = (long) i << format;
+	    ByteBuffer B = regions[(int)(position >>> REGION_SHIFT)];
+	    int offset = (int)(position & REGION_MASK);
+	    if (format == U8) B.put(offset, (byte) L.get(i));
+	    else if (format == U16) B.putShort(offset, (short) L.get(i));
+	    else B.putInt(offset, L.get(i));
+	}
+	size = length;
+    }
+
+    /*
+       Gets the number of symbols in a file of the given size, which must be
+       possible to index by an int.
+     */
+    private static int symbolsIn(long bytes, int format) throws IOException{
+	if ((format < U8) || (format > I32)) throw new IllegalArgumentException("Unknown symbol format: " + format);
+	long symbols = bytes >>> format;
+	if (symbols >= Integer.MAX_VALUE) throw new IOException("The file holds " + symbols + " symbols, which is too many");
+	return (int) symbols;
+    }
+
+    public int get(int i){
+	if (i >= length) return tail.get(i - length);
+	long position = (long) i << format;
+	ByteBuffer B = regions[(int)(position >>> REGION_SHIFT)];
+	int offset = (int)(position & REGION_MASK);
+	int a;
+	switch (format){
+	case U8:
+	    a = B.get(offset) & 0xFF;
+	    break;
+	case U16:
+	    a = B.getShort(offset) & 0xFFFF;
+	    break;
+	default:
+	    a = B.getInt(offset);
+	}
+	if ((a < 0) || (a >= K)){  //map the symbol into the alphabet
+	    if (a < 0) a = -a;
+	    if (a >= K) a = a % K;
+	}
+	return a;
+    }
+
+    int read(int i){
+	return (i >= length) ? tail.read(i - length) : get(i);
+    }
+
+    /*
+       Makes the next symbol of the file part of the symbol list. The symbol
+       is already in the file, so it is not stored unless every symbol of the
+       file is part of the symbol list.
+     */
+    protected void add(int a){
+	if (size >= length){
+	    if (tail == null) tail = symbolList.create(K);
+	    tail.add(a);
+	}
+	size++;
+    }
+
+    /**
+       Makes every symbol of the file part of the symbol list.
+     */
+    void addAll(){
+	size = length;
+    }
+
+    /**
+       Gets the number of symbols in the file.
+
+       @return The number of symbols in the file
+     */
+    public int getLength(){
+	return length;
+    }
+}
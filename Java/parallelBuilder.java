@@ -0,0 +1,561 @@
+/*
+  Program name: parallelBuilder.java. Is a class building the suffix tree of a whole symbol list on several threads.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `parallelBuilder.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+   Builds the suffix tree of a whole symbol list at once on a fork/join pool, giving the
+   same tree as adding the symbols one at a time.
+   <p>
+   The suffix tree is the compacted trie of the suffixes ending at leaves, which are the
+   suffixes beginning before the longest context. It is built from the top down in three
+   steps:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Partition</font></td><td>The suffixes are sorted by their
+       first k symbols, where k is chosen so that there are several partitions for every
+       thread of the pool</td></tr>
+   <tr><td><font size="-1">Build</font></td><td>The subtree of every partition is built
+       as a task of the pool, by splitting the suffixes by the symbol following their
+       longest common prefix, over and over</td></tr>
+   <tr><td><font size="-1">Graft</font></td><td>The top of the tree, above the partitions,
+       is built from one suffix of every partition, and every partition's subtree is put in
+       place of that suffix's leaf</td></tr>
+   </table>
+   <p>
+   An edge begins at the leftmost of the suffixes below it, and a vertex ends where the
+   edge to it ends, exactly as when the symbols are added one at a time. The time taken is
+   proportional to the sum of the depths of the vertices the leaves hang from, which is
+   small unless the symbol list has long repeats, in which case one of the engines adding
+   one symbol at a time is faster.
+   </p>
+   <p>
+   A suffix tree kept in a vertex arena is built straight into the columns of the arena.
+   The subtree of every partition of p suffixes is made in ranges of handles of its own,
+   with room for the p - 1 vertices it may have and its p leaves, and the subtrees are
+   moved together once they are built, before the top is built by the calling thread.
+   </p>
+   <p>
+   The suffix link of a vertex is found by walking down from the suffix link of its
+   parent, whose context is a prefix of the context of the suffix link, so every vertex
+   takes a few steps instead of a walk from the root. The parents are linked before
+   their children, level by level at the top and depth first below.
+   </p>
+
+   @author Tommy Petersen
+ */
+class parallelBuilder{
+
+    private static final long MAX_PARTITIONS = 1 << 20;  //the largest number of k symbol prefixes
+
+    private symbolList L;
+    private int K;
+    private int n;  //the number of symbols
+    private ForkJoinPool pool;
+    private int tasks;  //the number of tasks to divide the work into
+
+    /* The partitions, found by the method partition */
+    private int m;             //the number of suffixes ending at leaves
+    private int prefixLength;  //the number of symbols the suffixes of a partition begin with
+    private int A[];           //the suffixes ending at leaves which are at least prefixLength long, by partition
+    private long B[];          //room for sorting A
+    private ArrayList<int[]> runs;  //the bounds of every partition in A
+    private int T[];           //the suffixes the top is built from
+
+    /**
+       Creates a builder for the suffix tree of a symbol list.
+
+       @param L    The symbol list, which is not changed while the suffix tree is built
+       @param K    The number of symbols in the alphabet
+       @param pool The pool whose threads build the suffix tree
+     */
+    parallelBuilder(symbolList L, int K, ForkJoinPool pool){
+	this.L    = L;
+	this.K    = K;
+	this.n    = L.size();
+	this.pool = pool;
+	tasks = 16 * pool.getParallelism();
+    }
+
+    /**
+       Builds the suffix tree below a root vertex without children.
+
+       @param root The root vertex, which must be a vertex object
+       @return     The length of the longest context
+     */
+    int build(Vertex root){
+	if (n == 0) return 0;
+	int r = partition();
+
+	//build the subtree of every partition with more than one suffix:
+	Vertex subtrees[] = new Vertex[runs.size()];
+	ArrayList<Callable<Object>> builds = new ArrayList<Callable<Object>>();
+	for (int i=0; i<runs.size(); i++){
+	    final int j = i;
+	    final int lo = runs.get(i)[0], hi = runs.get(i)[1];
+	    if (hi - lo > 1) builds.add(() -> subtrees[j] = buildSubtree(A, B, lo, hi, prefixLength));
+	}
+	invokeAll(builds);
+
+	//build the top and graft the subtrees onto it:
+	HashMap<Integer,Vertex> grafts = new HashMap<Integer,Vertex>();
+	for (int i=0; i<runs.size(); i++){
+	    if (subtrees[i] != null) grafts.put(Integer.valueOf(T[i]), subtrees[i]);
+	}
+	expand(root, 0, T, new long[T.length], 0, T.length, grafts);
+
+	return r;
+    }
+
+    /**
+       Builds the suffix tree in a vertex arena containing only the root.
+
+       @param arena The vertex arena
+       @return      The length of the longest context
+     */
+    int build(vertexArena arena){
+	if (n == 0) return 0;
+	int r = partition();
+
+	//a partition of p suffixes gets room for p - 1 vertices and p leaves:
+	int nrOfRuns = runs.size();
+	int vertexBase[] = new int[nrOfRuns + 1];
+	int leafBase[] = new int[nrOfRuns + 1];
+	vertexBase[0] = vertexArena.ROOT + 1;
+	for (int i=0; i<nrOfRuns; i++){
+	    int p = runs.get(i)[1] - runs.get(i)[0];
+	    vertexBase[i + 1] = vertexBase[i] + ((p > 1) ? p - 1 : 0);
+	    leafBase[i + 1] = leafBase[i] + ((p > 1) ? p : 0);
+	}
+	arena.reserve(vertexBase[nrOfRuns] + Math.max(0, T.length - 1), m);
+
+	//build the subtree of every partition with more than one suffix:
+	int used[] = new int[nrOfRuns];  //the number of vertices of every subtree
+	ArrayList<Callable<Object>> builds = new ArrayList<Callable<Object>>();
+	for (int i=0; i<nrOfRuns; i++){
+	    final int j = i;
+	    final int lo = runs.get(i)[0], hi = runs.get(i)[1];
+	    if (hi - lo > 1) builds.add(() -> used[j] = buildSubtree(arena, A, B, lo, hi, prefixLength, vertexBase[j], leafBase[j]));
+	}
+	invokeAll(builds);
+
+	//move the subtrees together, and build the top and graft them onto it:
+	HashMap<Integer,Integer> grafts = new HashMap<Integer,Integer>();
+	int next[] = {vertexBase[0], leafBase[nrOfRuns]};
+	for (int i=0; i<nrOfRuns; i++){
+	    if (used[i] == 0) continue;
+	    arena.move(vertexBase[i], next[0], used[i], leafBase[i], leafBase[i + 1] - leafBase[i]);
+	    grafts.put(Integer.valueOf(T[i]), Integer.valueOf(next[0]));
+	    next[0] += used[i];
+	}
+	expand(arena, vertexArena.ROOT, 0, T, new long[T.length], 0, T.length, next, grafts);
+	arena.built(next[0], next[1]);
+
+	return r;
+    }
+
+    /*
+       Finds the partitions of the suffixes ending at leaves by their first k
+       symbols and the suffixes the top is built from, and returns the length of
+       the longest context.
+     */
+    private int partition(){
+	int r = getLongestContext();
+	m = n - r;  //the suffixes beginning at 0, ..., m-1 end at leaves
+
+	//choose the prefix length k giving enough partitions:
+	int k = 1;
+	long partitions = K;
+	while ((K > 1) && (partitions < tasks) && (partitions * K <= MAX_PARTITIONS)){
+	    partitions *= K;
+	    k++;
+	}
+	prefixLength = k;
+
+	//sort the suffixes which are at least k symbols long by their first k symbols:
+	int mLong = Math.max(0, Math.min(m, n - k + 1));
+	B = new long[mLong];
+	pool.submit(() -> {
+		IntStream.range(0, mLong).parallel().forEach(s -> B[s] = ((long)prefix(s, prefixLength) << 32) | s);
+		Arrays.parallelSort(B);
+	    }).join();
+	A = new int[mLong];
+	for (int i=0; i<mLong; i++) A[i] = (int)B[i];
+	runs = new ArrayList<int[]>();
+	for (int lo=0, hi; lo<mLong; lo=hi){
+	    for (hi=lo+1; (hi < mLong) && ((B[hi] >>> 32) == (B[lo] >>> 32)); hi++);
+	    runs.add(new int[] {lo, hi});
+	}
+
+	//the top is built from the leftmost suffix of every partition and the suffixes shorter than k:
+	T = new int[runs.size() + m - mLong];
+	for (int i=0; i<runs.size(); i++) T[i] = A[runs.get(i)[0]];
+	for (int s=mLong; s<m; s++) T[runs.size() + s - mLong] = s;
+	return r;
+    }
+
+    /**
+       Sets the suffix link of every internal vertex of a suffix tree built by this
+       builder, so that symbols can be added to it by an engine keeping suffix links.
+       The suffix link of a vertex whose context has one symbol is the root, and it
+       is left unset.
+
+       @param root The root of the suffix tree, which must be a vertex object
+     */
+    void linkSuffixes(Vertex root){
+	//link the vertices level by level until there are enough levels below to divide:
+	ArrayList<Vertex> frontier = new ArrayList<Vertex>();
+	frontier.add(root);
+	while ((frontier.size() > 0) && (frontier.size() < tasks)){
+	    ArrayList<Vertex> next = new ArrayList<Vertex>();
+	    for (Vertex v : frontier){
+		for (int k=v.getFirstDirection(); k!=-1; k=v.getNextDirection(k)){
+		    if (v.isLeafChild(k)) continue;
+		    Vertex child = v.getInternalChild(k);
+		    link(root, child);
+		    next.add(child);
+		}
+	    }
+	    frontier = next;
+	}
+
+	ArrayList<Callable<Object>> links = new ArrayList<Callable<Object>>();
+	for (Vertex v : frontier) links.add(() -> linkBelow(root, v));
+	invokeAll(links);
+    }
+
+    /**
+       Sets the suffix link of every internal vertex of a suffix tree built by this
+       builder in a vertex arena, as the method above does for vertex objects.
+
+       @param arena The vertex arena
+     */
+    void linkSuffixes(vertexArena arena){
+	int frontier[] = {vertexArena.ROOT};
+	int size = 1;
+	while ((size > 0) && (size < tasks)){
+	    int next[] = new int[2 * size];
+	    int nextSize = 0;
+	    for (int i=0; i<size; i++){
+		for (int c=arena.getFirstChild(frontier[i]); c!=vertexArena.NONE; c=arena.getNextSibling(c)){
+		    if (arena.isLeaf(c)) continue;
+		    link(arena, c);
+		    if (nextSize == next.length) next = Arrays.copyOf(next, 2 * nextSize);
+		    next[nextSize++] = c;
+		}
+	    }
+	    frontier = next;
+	    size = nextSize;
+	}
+
+	ArrayList<Callable<Object>> links = new ArrayList<Callable<Object>>();
+	for (int i=0; i<size; i++){
+	    final int v = frontier[i];
+	    links.add(() -> linkBelow(arena, v));
+	}
+	invokeAll(links);
+    }
+
+    /*
+       Runs tasks on the pool and waits for all of them, passing on the first
+       exception thrown by a task.
+     */
+    private void invokeAll(ArrayList<Callable<Object>> T){
+	for (Future<Object> F : pool.invokeAll(T)){
+	    try{
+		F.get();
+	    } catch (InterruptedException IE){
+		Thread.currentThread().interrupt();
+		throw new CancellationException("The suffix tree was not built");
+	    } catch (ExecutionException EE){
+		Throwable cause = EE.getCause();
+		if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+		if (cause instanceof Error) throw (Error) cause;
+		throw new IllegalStateException(cause);
+	    }
+	}
+    }
+
+    /*
+       Finds the length of the longest suffix of the symbol list which also ends
+       earlier in the symbol list. This is the largest value of the Z-function of
+       the reversed symbol list, after its first position.
+     */
+    private int getLongestContext(){
+	int Z[] = new int[n];
+	int longest = 0;
+	for (int i=1, l=0, r=0; i<n; i++){  //[l, r) is the match reaching furthest to the right
+	    int z = (i < r) ? Math.min(r - i, Z[i - l]) : 0;
+	    while ((i + z < n) && (L.get(n - 1 - z) == L.get(n - 1 - i - z))) z++;
+	    Z[i] = z;
+	    if (i + z > r){
+		l = i;
+		r = i + z;
+	    }
+	    longest = Math.max(longest, z);
+	}
+	return longest;
+    }
+
+    /*
+       Gets the first k symbols of the suffix beginning at s as a number in base K.
+     */
+    private int prefix(int s, int k){
+	int p = 0;
+	for (int i=0; i<k; i++) p = p * K + L.get(s + i);
+	return p;
+    }
+
+    /*
+       Builds the subtree of a partition of at least two suffixes, A[lo], ...,
+       A[hi-1], all beginning with the same k symbols. The subtree's top vertex has
+       no parent vertex until it is grafted onto the top of the tree.
+     */
+    private Vertex buildSubtree(int A[], long B[], int lo, int hi, int k){
+	int depth = getLongestCommonPrefix(A, lo, hi, k);
+	Vertex V = new Vertex(A[lo] + depth - 1, depth, K, null, -1);
+	expand(V, depth, A, B, lo, hi, null);
+	return V;
+    }
+
+    /*
+       Builds the subtree of a partition in a vertex arena, as the method above
+       does with vertex objects. Its vertices are made from handle v on and its
+       leaves from leaf number l on, and the number of vertices is returned.
+     */
+    private int buildSubtree(vertexArena arena, int A[], long B[], int lo, int hi, int k, int v, int l){
+	int depth = getLongestCommonPrefix(A, lo, hi, k);
+	arena.putVertex(v, A[lo] + depth - 1, depth);
+	int next[] = {v + 1, l};
+	expand(arena, v, depth, A, B, lo, hi, next, null);
+	return next[0] - v;
+    }
+
+    /*
+      Builds the subtree below vertex V, whose depth is given, from the suffixes
+      A[lo], ..., A[hi-1] beginning with V's context. The part of B from lo to hi
+      is used when the suffixes are sorted. The subtree is built with an explicit
+      stack of groups of suffixes, where a group is the suffixes going through the
+      same edge from a vertex.
+
+      A group of one suffix ends at a leaf, unless the suffix is a key in grafts, in
+      which case the subtree it maps to is put in place of the leaf. A larger group
+      ends at a new vertex where its longest common prefix ends, and it is split into
+      smaller groups by the symbol following that prefix.
+     */
+    private void expand(Vertex V, int depth, int A[], long B[], int lo, int hi, HashMap<Integer,Vertex> grafts){
+	groupStack G = new groupStack();
+	group(A, B, lo, hi, depth);
+	G.push(V, vertexArena.NONE, depth, B, lo, hi);
+
+	while (G.top > 0){
+	    G.top--;
+	    Vertex P = G.parents[G.top];
+	    int d = G.depths[G.top];
+	    int from = G.from[G.top], to = G.to[G.top];
+	    G.parents[G.top] = null;
+	    int s = A[from];  //the leftmost suffix of the group
+	    int k = L.get(s + d);
+
+	    if (to - from == 1){
+		Vertex subtree = (grafts == null) ? null : grafts.get(Integer.valueOf(s));
+		if (subtree == null){
+		    P.setLeaf(s + d, k);
+		} else{
+		    subtree.setParentVertex(P);
+		    subtree.setParentDirection(k);
+		    P.setChild(subtree, s + d, k);
+		}
+		continue;
+	    }
+
+	    int childDepth = getLongestCommonPrefix(A, from, to, d + 1);
+	    Vertex child = new Vertex(s + childDepth - 1, childDepth, K, P, k);
+	    P.setChild(child, s + d, k);
+	    group(A, B, from, to, childDepth);
+	    G.push(child, vertexArena.NONE, childDepth, B, from, to);
+	}
+    }
+
+    /*
+       Builds the subtree below vertex v of a vertex arena, as the method above
+       does with vertex objects. The vertices and leaves are made at the handle
+       next[0] and the leaf number next[1], which are counted up. As the groups
+       are taken from the top of the stack, the children of every vertex are put
+       from the largest direction to the smallest.
+     */
+    private void expand(vertexArena arena, int v, int depth, int A[], long B[], int lo, int hi, int next[], HashMap<Integer,Integer> grafts){
+	groupStack G = new groupStack();
+	group(A, B, lo, hi, depth);
+	G.push(null, v, depth, B, lo, hi);
+
+	while (G.top > 0){
+	    G.top--;
+	    int P = G.handles[G.top];
+	    int d = G.depths[G.top];
+	    int from = G.from[G.top], to = G.to[G.top];
+	    int s = A[from];  //the leftmost suffix of the group
+	    int k = L.get(s + d);
+
+	    if (to - from == 1){
+		Integer subtree = (grafts == null) ? null : grafts.get(Integer.valueOf(s));
+		arena.putFirst(P, (subtree == null) ? vertexArena.leaf(next[1]++) : subtree.intValue(), s + d, k);
+		continue;
+	    }
+
+	    int childDepth = getLongestCommonPrefix(A, from, to, d + 1);
+	    int child = next[0]++;
+	    arena.putVertex(child, s + childDepth - 1, childDepth);
+	    arena.putFirst(P, child, s + d, k);
+	    group(A, B, from, to, childDepth);
+	    G.push(null, child, childDepth, B, from, to);
+	}
+    }
+
+    /*
+       Sorts the suffixes A[lo], ..., A[hi-1] by their symbol at the given depth
+       and then by where they begin, so the leftmost suffix comes first in every
+       group. B holds the symbol in its upper half and the suffix in its lower half.
+     */
+    private void group(int A[], long B[], int lo, int hi, int depth){
+	for (int i=lo; i<hi; i++) B[i] = ((long)L.get(A[i] + depth) << 32) | A[i];
+	Arrays.sort(B, lo, hi);
+	for (int i=lo; i<hi; i++) A[i] = (int)B[i];
+    }
+
+    /*
+      The stack of the groups of suffixes waiting to be built by the method expand.
+      Every group is the vertex it hangs from, which is a vertex object or the
+      handle of a vertex in an arena, the depth of that vertex and the bounds of
+      the group in the array of suffixes.
+     */
+    private static class groupStack{
+	Vertex parents[] = new Vertex[16];
+	int handles[] = new int[16];
+	int depths[] = new int[16];
+	int from[] = new int[16], to[] = new int[16];
+	int top = 0;
+
+	/* Pushes every group of the suffixes from lo to hi, as sorted by the method group. */
+	void push(Vertex V, int v, int depth, long B[], int lo, int hi){
+	    for (int i=lo, j; i<hi; i=j){
+		for (j=i+1; (j < hi) && ((B[j] >>> 32) == (B[i] >>> 32)); j++);
+		if (top == parents.length){
+		    parents = Arrays.copyOf(parents, 2*top);
+		    handles = Arrays.copyOf(handles, 2*top);
+		    depths = Arrays.copyOf(depths, 2*top);
+		    from = Arrays.copyOf(from, 2*top);
+		    to = Arrays.copyOf(to, 2*top);
+		}
+		parents[top] = V;
+		handles[top] = v;
+		depths[top] = depth;
+		from[top] = i;
+		to[top] = j;
+		top++;
+	    }
+	}
+    }
+
+    /*
+       Finds the length of the longest common prefix of at least two suffixes
+       A[lo], ..., A[hi-1], which is known to be at least the given length. None of
+       them is a prefix of another, since they all end at leaves.
+     */
+    private int getLongestCommonPrefix(int A[], int lo, int hi, int length){
+	while (A[lo] + length < n){
+	    int a = L.get(A[lo] + length);
+	    for (int i=lo+1; i<hi; i++){
+		if ((A[i] + length >= n) || (L.get(A[i] + length) != a)) return length;
+	    }
+	    length++;
+	}
+	return length;
+    }
+
+    /*
+       Sets the suffix link of an internal vertex whose context has at least two
+       symbols, once its parent is linked. The context without its first symbol
+       ends at a vertex, which is found by walking down one edge at a time from
+       the suffix link of the parent, or from the root if it has none.
+     */
+    private void link(Vertex root, Vertex v){
+	int depth = v.getDepth();
+	if (depth < 2) return;
+	int s = v.getIndexTo() - depth + 1;
+	Vertex u = v.getParentVertex().getSuffixLink();
+	if (u == null) u = root;
+	while (u.getDepth() < depth - 1) u = u.getInternalChild(L.get(s + 1 + u.getDepth()));
+	v.setSuffixLink(u);
+    }
+
+    private void link(vertexArena arena, int v){
+	int depth = arena.getDepth(v);
+	if (depth < 2) return;
+	int s = arena.getIndexTo(v) - depth + 1;
+	int u = arena.getSuffixLink(arena.getParent(v));
+	if (u == vertexArena.NONE) u = vertexArena.ROOT;
+	while (arena.getDepth(u) < depth - 1) u = arena.getChild(u, L.get(s + 1 + arena.getDepth(u)));
+	arena.setSuffixLink(v, u);
+    }
+
+    /*
+       Sets the suffix links of the internal vertices below vertex v, using an
+       explicit stack.
+     */
+    private Object linkBelow(Vertex root, Vertex v){
+	Vertex stack[] = new Vertex[64];
+	int top = 0;
+	stack[top++] = v;
+	while (top > 0){
+	    Vertex u = stack[--top];
+	    stack[top] = null;
+	    for (int k=u.getFirstDirection(); k!=-1; k=u.getNextDirection(k)){
+		if (u.isLeafChild(k)) continue;
+		Vertex child = u.getInternalChild(k);
+		link(root, child);
+		if (top == stack.length) stack = Arrays.copyOf(stack, 2*top);
+		stack[top++] = child;
+	    }
+	}
+	return null;
+    }
+
+    private Object linkBelow(vertexArena arena, int v){
+	int stack[] = new int[64];
+	int top = 0;
+	stack[top++] = v;
+	while (top > 0){
+	    int u = stack[--top];
+	    for (int c=arena.getFirstChild(u); c!=vertexArena.NONE; c=arena.getNextSibling(c)){
+		if (arena.isLeaf(c)) continue;
+		link(arena, c);
+		if (top == stack.length) stack = Arrays.copyOf(stack, 2*top);
+		stack[top++] = c;
+	    }
+	}
+	return null;
+    }
+}
@@ -30,6 +30,10 @@ public class partitionedIntList{
 	return L[i % capacity];
     }
 
+    protected void set(int i, int a){
+	L[i % capacity] = a;
+    }
+
     public int getP(){
 	return p;
     }
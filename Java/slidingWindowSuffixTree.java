@@ -0,0 +1,246 @@
+/*
+  Program name: slidingWindowSuffixTree.java. Is a class representing a suffix tree over the last symbols of an endless symbol list.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `slidingWindowSuffixTree.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+   This class represents a suffix tree over a sliding window, which holds the last W symbols
+   added. Older symbols are evicted as new symbols arrive, so the store used is proportional
+   to W however many symbols are added.
+   <p>
+   The symbols are kept in a ring buffer of capacity 2W, and two suffix trees are built
+   from it, which are started W symbols apart:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Older tree</font></td><td>Holds between W and 2W symbols once
+       W symbols have been added, so it always covers the whole window. Pattern queries
+       are answered from it, ignoring the instances which begin before the window</td></tr>
+   <tr><td><font size="-1">Newer tree</font></td><td>Is started when the older tree
+       holds W symbols. When the older tree holds 2W symbols, it is discarded, and the
+       newer tree, which then holds W symbols, takes its place</td></tr>
+   </table>
+   <p>
+   The suffix trees never hold more than 2W symbols, which keeps the indices into the
+   symbol lists small for an endless symbol list. The price is that once the first W
+   symbols have been added there is always a newer tree, so every symbol is inserted
+   into both suffix trees. Adding a symbol thus takes about twice the time it takes for
+   a single suffix tree, and the two suffix trees together hold up to 3W symbols.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class slidingWindowSuffixTree{
+
+    private int K, W, engine;
+    private partitionedIntList ring;
+    private suffixTree older, newer;
+
+    /**
+       Creates a new sliding window suffix tree with an empty window. The suffix
+       trees are built by the suffix link engine.
+
+       @param K The number of symbols in the alphabet
+       @param W The number of symbols in a full window
+     */
+    public slidingWindowSuffixTree(int K, int W){
+	this(K, W, suffixTree.SUFFIX_LINK_ENGINE);
+    }
+
+    /**
+       Creates a new sliding window suffix tree with an empty window. The suffix
+       trees are built by the given engine.
+
+       @param K      The number of symbols in the alphabet
+       @param W      The number of symbols in a full window, which is at least
+                     1 and at most 2^29
+       @param engine The engine building the suffix trees, either
+                     CONTEXT_SET_ENGINE, SUFFIX_LINK_ENGINE or ARENA_ENGINE
+     */
+    public slidingWindowSuffixTree(int K, int W, int engine){
+	this.K = (K < 1) ? 1 : K;
+	this.W = (W < 1) ? 1 : Math.min(W, 1 << 29);
+	this.engine = engine;
+	ring = new partitionedIntList(2 * this.W);
+	older = new suffixTree(this.K, engine, new windowSymbolList(ring, 0));
+    }
+
+    /**
+       Adds a new symbol to the window. If the window is full, the oldest symbol
+       is evicted.
+
+       @param  a The symbol to be added
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to add the new symbol
+     */
+    public void add(int a) throws java.lang.OutOfMemoryError{
+	older.add(a);
+	if (newer != null) newer.add(a);
+
+	if (older.getSizeL() == 2 * W){
+	    older = newer;
+	    newer = null;
+	}
+	if ((newer == null) && (older.getSizeL() == W)){
+	    int offset = ((windowSymbolList) older.getSymbolList()).getOffset();
+	    newer = new suffixTree(K, engine, new windowSymbolList(ring, (offset + W) % (2 * W)));
+	}
+    }
+
+    /**
+       Adds the symbols A[off], ..., A[off + len - 1] to the window in that order.
+
+       @param  A   The array holding the symbols to be added
+       @param  off The index of the first symbol to be added
+       @param  len The number of symbols to be added
+       @throws     java.lang.OutOfMemoryError If there is not enough
+                   store in order to add the new symbols
+     */
+    public void add(int A[], int off, int len) throws java.lang.OutOfMemoryError{
+	for (int i=off; i<off+len; i++) add(A[i]);
+    }
+
+    /**
+       Gets the number of symbols in a full window.
+
+       @return The number of symbols in a full window
+     */
+    public int getWindowSize(){
+	return W;
+    }
+
+    /**
+       Gets the number of symbols in the window, which is W once W symbols have
+       been added.
+
+       @return The number of symbols in the window
+     */
+    public int size(){
+	return Math.min(older.getSizeL(), W);
+    }
+
+    /**
+       Gets the i'th symbol of the window, where the 0'th symbol is the oldest.
+
+       @param i Index into the window
+       @return  The i'th symbol of the window
+     */
+    public int get(int i){
+	if ((i < 0) || (i >= size())) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+	return older.getSymbolList().get(getWindowStart() + i);
+    }
+
+    /**
+       Returns a boolean value which is true if the pattern occurs in the window
+       and which is false otherwise.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  A boolean value which is true if the pattern occurs in the window
+                and which is false otherwise
+     */
+    public boolean contains(int P[]){
+	Context C = locate(P);
+	if (C == null) return false;
+	if (C.findInstanceEndPoint(getWindowStart() + P.length - 1) >= 0) return true;  //stops at the first instance in the window
+	int found[] = {0};
+	forEachInstance(C, P.length, e -> found[0]++);
+	return found[0] > 0;
+    }
+
+    /**
+       Finds the instance endpoints of a pattern in the window, that is the index
+       into the window of the last symbol of every instance of the pattern which
+       lies entirely in the window.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The instance endpoints in increasing order
+     */
+    public ArrayList<Integer> getInstanceEndPoints(int P[]){
+	ArrayList<Integer> A = new ArrayList<Integer>();
+	int m = P.length;
+	Context C = locate(P);
+	if (C == null) return A;
+	Context.endPointBuffer B = new Context.endPointBuffer();
+	forEachInstance(C, m, B);
+	for (int e : B.toSortedArray()) A.add(Integer.valueOf(e));
+	return A;
+    }
+
+    /*
+       Finds the end of a pattern read from the root of the older suffix tree, or
+       returns null if the pattern does not occur in the window.
+     */
+    private Context locate(int P[]){
+	symbolList L = older.getSymbolList();
+	int m = P.length;
+	if ((m == 0) || (m > L.size() - getWindowStart())) return null;
+
+	Context C = new Context(older.getRoot(), -1, -1, L);
+	for (int i=0; i<m; i++){
+	    int a = normalize(P[i]);
+	    if (!C.isContext(a)) return null;
+	    try{
+		C.extend(a);
+	    } catch (ContextException CE){
+		System.out.println("! ERROR IN INTERNAL DATA !");
+		System.out.println(CE);
+		System.exit(1);
+	    }
+	}
+	return C;
+    }
+
+    /*
+       Gives the index into the window of the last symbol of every instance in the
+       window of the pattern of length m ending at C to the action. The instances
+       beginning at a leaf are found below C, and the instances which are contexts
+       are found from them by the older suffix tree, in constant time each.
+     */
+    private void forEachInstance(Context C, int m, IntConsumer action){
+	int windowStart = getWindowStart();
+	IntConsumer inWindow = s -> {
+	    if (s >= windowStart) action.accept(s + m - 1 - windowStart);
+	};
+	C.forEachInstanceEndPoint(e -> {
+		inWindow.accept(e - m + 1);
+		older.visitContexts(e - m + 1, m, inWindow);
+	    });
+    }
+
+    /*
+       Gets the index into the symbol list of the older suffix tree of the oldest
+       symbol in the window.
+     */
+    private int getWindowStart(){
+	return Math.max(older.getSizeL() - W, 0);
+    }
+
+    /*
+       Maps a symbol into the alphabet the same way as the suffix tree does.
+     */
+    private int normalize(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+	return a;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+  Program name: slowAddEvent.java. Is a class representing a slow call of add in the Java Flight Recorder.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `slowAddEvent.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import jdk.jfr.*;
+
+/**
+   This class is the event recorded by the Java Flight Recorder for a call of add in
+   the class suffixTree taking at least the slow add threshold of the metrics of the
+   suffix tree. It is only made when the metrics are enabled and the call was slow, so
+   it is committed after the call has returned, and the time taken by the call is a
+   field of its own instead of the duration of the event.
+
+   @author Tommy Petersen
+ */
+@Name("SuffixTree.SlowAdd")
+@Label("Slow Add")
+@Category("Suffix Tree")
+@Description("A call of add on a suffix tree which took at least the slow add threshold")
+@StackTrace(false)
+class slowAddEvent extends Event{
+
+    @Label("Add Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long addTime;
+
+    @Label("Symbols Added")
+    int symbols;
+
+    @Label("Symbol List Length")
+    int symbolListLength;
+
+    @Label("Context Set Size")
+    int contextSetSize;
+
+    @Label("Vertices")
+    long vertices;
+
+    @Label("Edges Split")
+    long edgesSplit;
+}
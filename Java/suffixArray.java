@@ -0,0 +1,212 @@
+/*
+  Program name: suffixArray.java. Is a class representing the suffix array of the symbol list.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `suffixArray.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   This class represents the suffix array and the longest common prefix array of a symbol
+   list, which are made from the suffix tree by the method getSuffixArray in the class
+   suffixTree. They take two ints per symbol, which is much less than the suffix tree, and
+   they are read sequentially by most queries.
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Suffix array</font></td><td>The index of the first symbol of every
+       suffix, with the suffixes in lexicographic order, where a suffix is ordered before the
+       suffixes it is a prefix of</td></tr>
+   <tr><td><font size="-1">LCP array</font></td><td>The length of the longest common prefix
+       of every suffix and the suffix before it in the suffix array, which is 0 for the first
+       suffix</td></tr>
+   </table>
+   <p>
+   The suffixes starting with a pattern are consecutive in the suffix array, and the
+   range of them is found by binary search. The binary search keeps the longest common
+   prefixes of the pattern and the suffixes at both ends of the range, and comparisons
+   start after the shorter of them, so most symbols of the pattern are compared once.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class suffixArray{
+
+    private symbolList L;
+    private int K;
+    private int SA[], LCP[];
+
+    /**
+       Creates a suffix array.
+
+       @param L   The symbol list
+       @param K   The number of symbols in the alphabet
+       @param SA  The suffix array
+       @param LCP The longest common prefix array
+     */
+    protected suffixArray(symbolList L, int K, int SA[], int LCP[]){
+	this.L   = L;
+	this.K   = K;
+	this.SA  = SA;
+	this.LCP = LCP;
+    }
+
+    /**
+       Gets the suffix array. It is not copied, so it must not be changed.
+
+       @return The suffix array
+     */
+    public int[] getSuffixArray(){
+	return SA;
+    }
+
+    /**
+       Gets the longest common prefix array. It is not copied, so it must not be
+       changed.
+
+       @return The longest common prefix array
+     */
+    public int[] getLCP(){
+	return LCP;
+    }
+
+    /**
+       Gets the number of suffixes, which is the number of symbols in the symbol list.
+
+       @return The number of suffixes
+     */
+    public int size(){
+	return SA.length;
+    }
+
+    /**
+       Finds the first suffix in the suffix array which starts with the pattern,
+       or which would follow the pattern if it does not occur.
+
+       @param P The pattern
+       @return  The index into the suffix array of the first suffix which is not
+                ordered before the pattern
+     */
+    public int getLowerBound(int P[]){
+	return search(P, false);
+    }
+
+    /**
+       Finds the first suffix in the suffix array which is ordered after every
+       suffix starting with the pattern.
+
+       @param P The pattern
+       @return  The index into the suffix array of the first suffix which is
+                ordered after the suffixes starting with the pattern
+     */
+    public int getUpperBound(int P[]){
+	return search(P, true);
+    }
+
+    /**
+       Counts the instances of a pattern in the symbol list.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The number of instances of the pattern
+     */
+    public int count(int P[]){
+	if (P.length == 0) return 0;
+	return getUpperBound(P) - getLowerBound(P);
+    }
+
+    /**
+       Returns a boolean value which is true if the pattern occurs in the symbol
+       list and which is false otherwise.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  A boolean value which is true if the pattern occurs in the symbol
+                list and which is false otherwise
+     */
+    public boolean contains(int P[]){
+	return count(P) > 0;
+    }
+
+    /**
+       Gets the index of the first symbol of the suffixes in a range of the suffix
+       array, as found by getLowerBound and getUpperBound.
+
+       @param from The index into the suffix array of the first suffix
+       @param to   The index into the suffix array after the last suffix
+       @return     The index of the first symbol of every suffix in the range,
+                   in the order of the suffix array
+     */
+    public int[] getRange(int from, int to){
+	return Arrays.copyOfRange(SA, from, to);
+    }
+
+    /**
+       Finds the instance endpoints of a pattern, that is the index into the symbol
+       list of the last symbol of every instance of the pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The instance endpoints in increasing order
+     */
+    public ArrayList<Integer> getInstanceEndPoints(int P[]){
+	ArrayList<Integer> A = new ArrayList<Integer>();
+	if (P.length == 0) return A;
+	int E[] = getRange(getLowerBound(P), getUpperBound(P));
+	Arrays.sort(E);
+	for (int i=0; i<E.length; i++) A.add(Integer.valueOf(E[i] + P.length - 1));
+	return A;
+    }
+
+    /*
+       Binary search for the lower bound or, if upper is true, the upper bound of
+       the range of suffixes starting with the pattern. The suffixes before lo and
+       from hi on are known to be outside the range, and l and r are the longest
+       common prefixes of the pattern and the suffixes at lo and hi.
+     */
+    private int search(int P[], boolean upper){
+	int n = SA.length;
+	int m = P.length;
+	int lo = -1, hi = n;
+	int l = 0, r = 0;
+	while (hi - lo > 1){
+	    int middle = (lo + hi) >>> 1;
+	    int s = SA[middle];
+	    int h = Math.min(l, r);
+	    while ((h < m) && (s + h < n) && (L.get(s + h) == normalize(P[h]))) h++;
+
+	    boolean after;  //true if the suffix is ordered after the bound
+	    if (h == m) after = !upper;  //the suffix starts with the pattern
+	    else after = (s + h < n) && (L.get(s + h) > normalize(P[h]));
+	    if (after){
+		hi = middle;
+		r = h;
+	    } else{
+		lo = middle;
+		l = h;
+	    }
+	}
+	return hi;
+    }
+
+    /*
+       Maps a symbol into the alphabet the same way as the suffix tree does.
+     */
+    private int normalize(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+	return a;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+  Program name: suffixLinkEngine.java. Is a class building the suffix tree by means of suffix links.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `suffixLinkEngine.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   Builds the suffix tree in linear time by keeping a suffix link in every internal vertex
+   and one active point instead of the entire context set.
+   <p>
+   The active point is the end of the longest context, i.e. the longest suffix of the symbol
+   list which also occurs earlier in the symbol list. It is represented like a context by a
+   vertex, a direction and a length (the number of symbols to go along the edge given by the
+   direction). Every other context is reached from the active point by following suffix links,
+   so the context set is only materialized when it is asked for.
+   </p>
+   <p>
+   The vertices are created and linked exactly as by the method moveSetToTree in the class
+   codeWordSet, so the resulting tree is identical to the one built from the context set.
+   </p>
+
+   @author Tommy Petersen
+ */
+class suffixLinkEngine extends constructionEngine{
+
+    private symbolList L;
+    private Vertex root;
+    private Vertex activeVertex;
+    private int activeDirection, activeLength;
+    private int remainder;  //the length of the longest context
+
+    /**
+       Creates a new engine whose active point is the empty context at the root.
+
+       @param root The root vertex of the suffix tree
+       @param L    The symbol list
+     */
+    suffixLinkEngine(Vertex root, symbolList L){
+	this.root       = root;
+	this.L          = L;
+	activeVertex    = root;
+	activeDirection = -1;
+	activeLength    = 0;
+	remainder       = 0;
+    }
+
+    /**
+       Updates the suffix tree after the symbol 'a' has been added to the end of
+       the symbol list.
+       <p>
+       Starting at the active point the codewords are inserted from large to small,
+       moving from one context to the next smaller one by a suffix link. The insertion
+       stops at the first context which is still a context when extended with 'a'.
+       </p>
+
+       @param a The symbol that has been added to the symbol list
+     */
+    void extend(int a){
+	int pos = L.size() - 1;
+	Vertex lastInternal = null;  //internal vertex waiting for its suffix link
+
+	remainder++;
+	while (remainder > 0){
+	    if (activeLength == 0) activeDirection = a;
+	    int indexFrom = activeVertex.getIndexFrom(activeDirection);
+
+	    if (indexFrom == -1){  //context is given by activeVertex
+		activeVertex.setLeaf(pos, a);
+		if (metrics != null) metrics.codewordsInserted++;
+		if (lastInternal != null) lastInternal.setSuffixLink(activeVertex);
+		lastInternal = null;
+	    } else{  //context is given by edge from activeVertex
+		int edgeLength = activeVertex.getIndexTo(activeDirection) - indexFrom + 1;  //overflows for a leaf
+		boolean isLeaf = activeVertex.isLeafChild(activeDirection);
+		if (!isLeaf && activeLength >= edgeLength){
+		    //the active point is beyond the edge, so walk down to the child:
+		    activeVertex = activeVertex.getInternalChild(activeDirection);
+		    activeLength -= edgeLength;
+		    activeDirection = L.get(pos - activeLength);
+		    continue;
+		}
+		if (L.get(indexFrom + activeLength) == a){  //still a context when extended
+		    if (lastInternal != null) lastInternal.setSuffixLink(activeVertex);
+		    activeLength++;
+		    if (!isLeaf && activeLength == edgeLength){
+			activeVertex = activeVertex.getInternalChild(activeDirection);
+			activeLength = 0;
+			activeDirection = -1;
+		    }
+		    return;
+		}
+		//make the intermediate vertex, as done in codeWordSet.moveSetToTree:
+		int offset = activeLength - 1;
+		int b = L.get(indexFrom + offset + 1);
+		Vertex intermediateVertex = new Vertex(indexFrom + offset, activeVertex.getK(), activeVertex, activeDirection);
+		if (isLeaf){
+		    intermediateVertex.setLeaf(indexFrom + offset + 1, b);
+		} else{
+		    Vertex child = activeVertex.getInternalChild(activeDirection);
+		    child.setParentVertex(intermediateVertex);
+		    child.setParentDirection(b);
+		    intermediateVertex.setChild(child, indexFrom + offset + 1, b);
+		}
+		activeVertex.setChild(intermediateVertex, indexFrom, activeDirection);
+		intermediateVertex.setLeaf(pos, a);
+		if (lastInternal != null) lastInternal.setSuffixLink(intermediateVertex);
+		lastInternal = intermediateVertex;
+		if (metrics != null){
+		    metrics.edgesSplit++;
+		    metrics.codewordsInserted++;
+		}
+	    }
+
+	    //go to the next smaller context:
+	    remainder--;
+	    if (activeVertex.isRoot()){
+		if (activeLength > 0){
+		    activeLength--;
+		    activeDirection = L.get(pos - remainder + 1);
+		}
+	    } else{
+		activeVertex = suffixLink(activeVertex);
+	    }
+	}
+	activeDirection = -1;
+    }
+
+    /**
+       Puts the contexts of the symbol list into a context set, ordered from the
+       empty context to the longest context, by following the suffix links from
+       the active point.
+
+       @param CS The context set receiving the contexts
+     */
+    void getContexts(contextSet CS){
+	CS.setSize(remainder + 1);
+	int end = L.size() - 1;
+	Vertex v = activeVertex;
+	int direction = activeDirection;
+	int length = activeLength;
+
+	for (int size=remainder; size>0; size--){
+	    if (length == 0) CS.set(size, v, -1, -1);
+	    else CS.set(size, v, direction, length - 1);
+
+	    //go to the context one symbol shorter:
+	    if (v.isRoot()){
+		length--;
+		direction = (length > 0) ? L.get(end - length + 1) : -1;
+	    } else{
+		v = suffixLink(v);
+	    }
+	    //and make it canonical by walking down past whole edges:
+	    while (length > 0){
+		if (v.isLeafChild(direction)) break;
+		int edgeLength = v.getIndexTo(direction) - v.getIndexFrom(direction) + 1;
+		if (length < edgeLength) break;
+		length -= edgeLength;
+		v = v.getInternalChild(direction);
+		direction = (length > 0) ? L.get(end - length + 1) : -1;
+	    }
+	}
+	CS.set(0, root, -1, -1);
+    }
+
+    /**
+       Moves the active point to the end of the longest context, after the suffix
+       tree and its suffix links have been built by other means than this engine.
+
+       @param v         The vertex the longest context ends at or below
+       @param direction The direction of the edge from v on which the longest context
+                        ends, or -1 if it ends at v
+       @param length    The number of symbols of the longest context on that edge
+       @param remainder The length of the longest context
+     */
+    void setActivePoint(Vertex v, int direction, int length, int remainder){
+	activeVertex    = v;
+	activeDirection = direction;
+	activeLength    = length;
+	this.remainder  = remainder;
+    }
+
+    /**
+       Gets the number of contexts, including the empty context.
+
+       @return The number of contexts, including the empty context
+     */
+    int getNrOfContexts(){
+	return remainder + 1;
+    }
+
+    /**
+       Gets the index into the symbol list of the symbol which the edges refer to as
+       the last symbol of the longest context, which is read off the active point.
+
+       @return The index of the last symbol of the earlier instance of the longest
+               context, which must have at least one symbol
+     */
+    int getLongestContextEnd(){
+	if (activeLength == 0) return activeVertex.getIndexTo();
+	return activeVertex.getIndexFrom(activeDirection) + activeLength - 1;
+    }
+
+    /*
+       Returns the suffix link of an internal vertex. The suffix link of a vertex
+       whose context has only one symbol is the root, and it is never set.
+     */
+    private Vertex suffixLink(Vertex v){
+	Vertex link = v.getSuffixLink();
+	return (link == null) ? root : link;
+    }
+}
@@ -21,38 +21,310 @@
 
 package SuffixTree.Java;
 
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 /**
    This class represents the suffix tree. It also contains the symbol list, from which the
    suffix tree is created.
+   <p>
+   The suffix tree can be built by one of three engines, which produce identical trees:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">CONTEXT_SET_ENGINE</font></td><td>Extends every context in the
+       context set with each new symbol. This takes time proportional to the number of
+       contexts for every symbol, which is quadratic in total on repetitive input</td></tr>
+   <tr><td><font size="-1">SUFFIX_LINK_ENGINE</font></td><td>Keeps suffix links and one
+       active point, and builds the suffix tree in linear time in total. The context set
+       is only materialized when it is read</td></tr>
+   <tr><td><font size="-1">ARENA_ENGINE</font></td><td>Works like SUFFIX_LINK_ENGINE, but
+       stores the vertices as integer handles into a few large arrays instead of as one
+       object per vertex. The vertices returned by the suffix tree are then lightweight
+       views of the handles</td></tr>
+   </table>
 
    @author Tommy Petersen
  */
 public class suffixTree{
 
-    private ArrayList<Integer> L;
+    /**
+       Selects the engine which extends every context in the context set with each new symbol.
+     */
+    public static final int CONTEXT_SET_ENGINE = 0;
+
+    /**
+       Selects the engine which keeps suffix links and one active point.
+     */
+    public static final int SUFFIX_LINK_ENGINE = 1;
+
+    /**
+       Selects the engine which keeps suffix links and one active point, and which
+       stores the vertices in a vertex arena.
+     */
+    public static final int ARENA_ENGINE = 2;
+
+    private symbolList L;
     private int K;
     private Vertex root;
     private contextSet CS;
+    private constructionEngine SLE;
+    private vertexArena arena;  //the vertex arena of the arena engine, null for the other engines
+
+    private static final int CHECKPOINT_MAGIC   = 0x53554643;
+    private static final int CHECKPOINT_VERSION = 3;
+    private static final int CHECKPOINT_BEGIN   = 0x43484B42;
+    private static final int CHECKPOINT_END     = 0x43484B45;
+    private long checkpointEnd = -1;  //the end of the last checkpoint in its file, -1 if there is none
+    private int nrOfSymbolsSaved;     //the number of symbols in the last checkpoint
+
+    /*
+      The number of symbols in the upper half and the number of suffixes ending at a
+      leaf in the lower half, published with release ordering after every symbol once
+      the snapshots are enabled, so readers in other threads get both from one read.
+      The number of symbols is published again with the index of the earlier instance
+      of the longest context before it, so a reader finds the two which belong together.
+    */
+    private long published, publishedContext;
+    private volatile boolean snapshots;  //true once the snapshots are enabled
+
+    private treeMetrics metrics;  //null unless the metrics are enabled
+    private int sizeBeforeAdd;    //the length of the symbol list when the call of add being timed began
+
+    private static final VarHandle PUBLISHED, PUBLISHED_CONTEXT;
+    static{
+	try{
+	    PUBLISHED = MethodHandles.lookup().findVarHandle(suffixTree.class, "published", long.class);
+	    PUBLISHED_CONTEXT = MethodHandles.lookup().findVarHandle(suffixTree.class, "publishedContext", long.class);
+	} catch (ReflectiveOperationException ROE){
+	    throw new ExceptionInInitializerError(ROE);
+	}
+    }
 
     /**
        Creates a new suffix tree containing only the root vertex and an empty list
-       of integers.
+       of integers. The suffix tree is built by the context set engine.
 
        @param K The number of symbols in the alphabet
      */
     public suffixTree(int K){  //K is the number of symbols in the alphabet
+	this(K, CONTEXT_SET_ENGINE);
+    }
+
+    /**
+       Creates a new suffix tree containing only the root vertex and an empty list
+       of integers. The suffix tree is built by the given engine.
+
+       @param K      The number of symbols in the alphabet
+       @param engine The engine building the suffix tree, either CONTEXT_SET_ENGINE,
+                     SUFFIX_LINK_ENGINE or ARENA_ENGINE
+     */
+    public suffixTree(int K, int engine){
+	this(K, engine, symbolList.create((K < 1) ? 1 : K));
+    }
+
+    /**
+       Creates a new suffix tree from a binary file of symbols. The file is memory
+       mapped and used as the symbol list, so its symbols are neither parsed nor
+       copied onto the heap. The formats of the file are described in the class
+       mappedSymbolList. Symbols added afterwards are stored on the heap.
+
+       @param  K       The number of symbols in the alphabet
+       @param  engine  The engine building the suffix tree, either CONTEXT_SET_ENGINE,
+                       SUFFIX_LINK_ENGINE or ARENA_ENGINE
+       @param  channel The channel of the file, which must be open for reading. It
+                       may be closed when the suffix tree has been created
+       @param  format  The format of the symbols, either mappedSymbolList.U8,
+                       mappedSymbolList.U16 or mappedSymbolList.I32
+       @param  order   The byte order of the symbols
+       @throws         java.io.IOException If the file cannot be mapped
+       @throws         java.lang.OutOfMemoryError If there is not enough
+                       store in order to build the suffix tree
+     */
+    public suffixTree(int K, int engine, FileChannel channel, int format, ByteOrder order) throws IOException, java.lang.OutOfMemoryError{
+	this(K, engine, new mappedSymbolList(channel, format, order, (K < 1) ? 1 : K));
+	mappedSymbolList M = (mappedSymbolList) L;
+	for (int i=0; i<M.getLength(); i++) append(M.get(i));
+    }
+
+    /**
+       Creates a new suffix tree from an array of symbols by building it on the threads
+       of a fork/join pool. The suffix tree is the same as when the symbols are added one
+       at a time by the method add, and more symbols may be added to it afterwards. How
+       it is built is described in the class parallelBuilder.
+       <p>
+       The suffixes are partitioned by their first symbols, and the subtree of every
+       partition is built by a task of its own, which pays off for symbol lists without
+       long repeats. A symbol list with long repeats is built faster by adding the
+       symbols one at a time.
+       </p>
+
+       @param  K      The number of symbols in the alphabet
+       @param  engine The engine adding the symbols added afterwards, either
+                      CONTEXT_SET_ENGINE, SUFFIX_LINK_ENGINE or ARENA_ENGINE
+       @param  A      An array containing the symbols
+       @param  off    Index in A of the first symbol
+       @param  len    The number of symbols
+       @param  pool   The pool whose threads build the suffix tree
+       @throws        java.lang.OutOfMemoryError If there is not enough
+                      store in order to build the suffix tree
+     */
+    public suffixTree(int K, int engine, int A[], int off, int len, ForkJoinPool pool) throws java.lang.OutOfMemoryError{
+	this(K, engine);
+	if (A != null){
+	    for (int i=off; i<off+len; i++) L.add(normalize(A[i]));
+	}
+
+	parallelBuilder B = new parallelBuilder(L, this.K, pool);
+	int longest;
+	if (arena == null){
+	    longest = B.build(root);
+	    if (SLE != null) B.linkSuffixes(root);
+	} else{
+	    longest = B.build(arena);
+	    B.linkSuffixes(arena);
+	}
+
+	//continue from the contexts, which are the last suffixes:
+	int n = L.size();
+	int rest[] = new int[1];
+	if (SLE != null){
+	    Vertex v = walk(n - longest, longest, rest);
+	    SLE.setActivePoint(v, (rest[0] > 0) ? L.get(n - rest[0]) : -1, rest[0], longest);
+	} else{
+	    CS.setSize(longest + 1);
+	    for (int size=1; size<=longest; size++){
+		Vertex v = walk(n - size, size, rest);
+		if (rest[0] > 0) CS.set(size, v, L.get(n - rest[0]), rest[0] - 1);
+		else CS.set(size, v, -1, -1);
+	    }
+	}
+    }
+
+    /*
+       Walks down from the root along the given number of symbols, beginning at index
+       from, which are in the suffix tree. The vertex at or below which the walk ends is
+       returned, and the number of symbols left on the edge from it is put in rest[0].
+     */
+    private Vertex walk(int from, int length, int rest[]){
+	Vertex v = root;
+	while (v.getDepth() < length){
+	    int k = L.get(from + v.getDepth());
+	    if (v.isLeafChild(k)) break;
+	    Vertex child = v.getInternalChild(k);
+	    if (child.getDepth() > length) break;
+	    v = child;
+	}
+	rest[0] = length - v.getDepth();
+	return v;
+    }
+
+    /**
+       Creates a suffix tree by restoring the latest checkpoint in a file written by
+       the method checkpoint. The suffix tree is built by the arena engine, and adding
+       symbols continues exactly where the checkpointed suffix tree stopped. The time
+       taken is proportional to the size of the file.
+       <p>
+       A checkpoint which was not completely written, because the writing process
+       stopped, is ignored, and it is overwritten by the next checkpoint.
+       </p>
+
+       @param  channel The channel of the file, which must be open for reading
+       @throws         java.io.IOException If the file cannot be read, or if it is
+                       not a checkpoint file of the supported version
+       @throws         java.lang.OutOfMemoryError If there is not enough
+                       store in order to restore the suffix tree
+     */
+    public suffixTree(FileChannel channel) throws IOException, java.lang.OutOfMemoryError{
+	this(readCheckpointK(channel), ARENA_ENGINE);
+	long size = channel.size();
+	long position = 12;  //the end of the file header
+	int format = (K <= 256) ? mappedSymbolList.U8 : ((K <= 65536) ? mappedSymbolList.U16 : mappedSymbolList.I32);
+	channel.position(position);
+	DataInputStream D = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+
+	while (position + 12 <= size){
+	    if (D.readInt() != CHECKPOINT_BEGIN) throw new IOException("The checkpoint at " + position + " is damaged");
+	    long length = D.readLong();
+	    if ((length < 0) || (position + 12 + length + 4 > size)) break;  //it was not completely written
+
+	    int from = D.readInt();
+	    int count = D.readInt();
+	    if (from != L.size()) throw new IOException("The checkpoint at " + position + " does not follow the previous one");
+	    for (int i=0; i<count; i++){
+		if (format == mappedSymbolList.U8) L.add(D.readUnsignedByte());
+		else if (format == mappedSymbolList.U16) L.add(D.readUnsignedShort());
+		else L.add(D.readInt());
+	    }
+	    arena.readChanges(D);
+	    ((arenaEngine) SLE).readState(D);
+	    if (D.readInt() != CHECKPOINT_END) throw new IOException("The checkpoint at " + position + " is damaged");
+	    position += 12 + length + 4;
+	}
+	arena.makeTables();  //once, as the tables of the vertices changed by later checkpoints would be made again
+	arena.saved();
+	nrOfSymbolsSaved = L.size();
+	checkpointEnd = position;
+    }
+
+    /*
+       Reads the header of a checkpoint file and returns the number of symbols in
+       the alphabet.
+     */
+    private static int readCheckpointK(FileChannel channel) throws IOException{
+	ByteBuffer H = ByteBuffer.allocate(12);
+	while (H.hasRemaining()){
+	    if (channel.read(H, H.position()) < 0) throw new IOException("The file is too short for a checkpoint file");
+	}
+	H.flip();
+	if (H.getInt() != CHECKPOINT_MAGIC) throw new IOException("The file is not a checkpoint file");
+	int version = H.getInt();
+	if (version != CHECKPOINT_VERSION) throw new IOException("Version " + version + " of the checkpoint file is not supported");
+	return H.getInt();
+    }
+
+    /**
+       Creates a new suffix tree containing only the root vertex, which is built
+       from a given empty symbol list. It is used by suffix trees keeping their
+       symbols somewhere else than in a list of their own.
+
+       @param K      The number of symbols in the alphabet
+       @param engine The engine building the suffix tree, either CONTEXT_SET_ENGINE,
+                     SUFFIX_LINK_ENGINE or ARENA_ENGINE
+       @param L      The empty symbol list
+     */
+    protected suffixTree(int K, int engine, symbolList L){
 	this.K = (K < 1) ? 1 : K;
-	L = new ArrayList<Integer>();
-	root = new Vertex(-1, this.K, null, -1);
-	Context lambda = new Context(root, -1, -1, L);
-	CS = new contextSet(lambda);
+	this.L = L;
+	if (engine == ARENA_ENGINE){
+	    arena = new vertexArena(this.K, 1024);
+	    root = arena.view(vertexArena.ROOT);
+	    SLE = new arenaEngine(arena, L);
+	} else{
+	    root = new Vertex(-1, this.K, null, -1);
+	    if (engine == SUFFIX_LINK_ENGINE) SLE = new suffixLinkEngine(root, L);
+	}
+	if (SLE != null){
+	    CS = new contextSet(SLE, L);
+	} else{
+	    Context lambda = new Context(root, -1, -1, L);
+	    CS = new contextSet(lambda);
+	}
     }
 
     /**
        Adds a new symbol to the symbol list and updates the suffix tree
        accordingly. The new context set is returned.
+       <p>
+       The context set is the same object after every symbol, and it is
+       changed in place when more symbols are added. A copy which is kept
+       unchanged is made by the method snapshot in the class contextSet.
+       </p>
 
        @param  a The symbol to be added to the symbol list
        @return   The new context set for the extended symbol list
@@ -60,17 +332,9 @@ public class suffixTree{
                  store in order to add the new symbol
      */
     public contextSet add(int a) throws java.lang.OutOfMemoryError{
-	if (a < 0) a = -a;
-	if (a >= K) a = a % K;
-
-	L.add(Integer.valueOf(a));
-	try{
-	    CS = CS.process(a);
-	} catch (ContextException CE){
-	    System.out.println("! ERROR IN INTERNAL DATA !");
-	    System.out.println(CE);
-	    System.exit(1);
-	}
+	long start = startAdd();
+	append(a);
+	endAdd(start);
 	return CS;
     }
 
@@ -90,11 +354,11 @@ public class suffixTree{
 
 	if ((s == null) || (s.trim().isEmpty())) return CS;
 
+	String[] numberStrings = s.split("\\s+");
+	int A[] = new int[numberStrings.length];
 	try{
-	    String[] numberStrings = s.split("\\s+");
-
-	    for (String ss : numberStrings){
-		CS = this.add(Integer.parseInt(ss));
+	    for (int i=0; i<A.length; i++){
+		A[i] = Integer.parseInt(numberStrings[i]);
 	    }
 	} catch (NumberFormatException NFE){
 	    System.out.println("! ERROR IN INPUT DATA !");
@@ -102,22 +366,262 @@ public class suffixTree{
 	    System.exit(1);
 	}
 
-	return CS;
+	return add(A, 0, A.length);
     }
 
+    /**
+       Adds the symbols in a given list to the symbol list
+       and updates the suffix tree accordingly.
+       The new context set is returned.
+
+       @param  a The symbols to be added to the symbol list
+       @return   The new context set for the extended symbol list
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to add the new symbols
+     */
     public contextSet add(ArrayList<Integer> a) throws java.lang.OutOfMemoryError{
 
 	if (a == null) return CS;
 
-	Iterator<Integer> I = a.iterator();
+	long start = startAdd();
+	for (int i=0; i<a.size(); i++){
+	    append(a.get(i).intValue());
+	}
+	endAdd(start);
+
+	return CS;
+    }
+
+    /**
+       Adds the symbols A[off], ..., A[off + len - 1] to the symbol list
+       and updates the suffix tree accordingly.
+       The new context set is returned.
+
+       @param  A   An array containing the symbols to be added
+       @param  off Index in A of the first symbol to be added
+       @param  len The number of symbols to be added
+       @return     The new context set for the extended symbol list
+       @throws     java.lang.OutOfMemoryError If there is not enough
+                   store in order to add the new symbols
+     */
+    public contextSet add(int A[], int off, int len) throws java.lang.OutOfMemoryError{
+
+	if (A == null) return CS;
+
+	long start = startAdd();
+	for (int i=off; i<off+len; i++){
+	    append(A[i]);
+	}
+	endAdd(start);
+
+	return CS;
+    }
 
-	while (I.hasNext()){
-	    CS = this.add(I.next().intValue());
+    /**
+       Adds the remaining symbols in a buffer to the symbol list
+       and updates the suffix tree accordingly. The position of
+       the buffer is advanced to its limit.
+       The new context set is returned.
+
+       @param  B The buffer containing the symbols to be added
+       @return   The new context set for the extended symbol list
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to add the new symbols
+     */
+    public contextSet add(IntBuffer B) throws java.lang.OutOfMemoryError{
+
+	if (B == null) return CS;
+
+	long start = startAdd();
+	while (B.hasRemaining()){
+	    append(B.get());
 	}
+	endAdd(start);
 
 	return CS;
     }
 
+    /**
+       Adds the symbols of a stream, in the order of the stream, to
+       the symbol list and updates the suffix tree accordingly.
+       The new context set is returned.
+
+       @param  S The stream of symbols to be added
+       @return   The new context set for the extended symbol list
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to add the new symbols
+     */
+    public contextSet add(IntStream S) throws java.lang.OutOfMemoryError{
+
+	if (S == null) return CS;
+
+	long start = startAdd();
+	S.forEachOrdered(a -> append(a));
+	endAdd(start);
+
+	return CS;
+    }
+
+    /*
+       Adds a symbol to the symbol list and updates the suffix tree and the
+       context set accordingly.
+     */
+    private void append(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+
+	L.add(a);
+	if (SLE != null){
+	    SLE.extend(a);
+	} else{
+	    try{
+		CS.process(a);
+	    } catch (ContextException CE){
+		System.out.println("! ERROR IN INTERNAL DATA !");
+		System.out.println(CE);
+		System.exit(1);
+	    }
+	}
+	if (snapshots) publish();
+	if (metrics != null) metrics.recordSymbol(CS.size());
+    }
+
+    /*
+       Times a call of add if the metrics are enabled, and returns the time it
+       began.
+     */
+    private long startAdd(){
+	if (metrics == null) return 0;
+	sizeBeforeAdd = L.size();
+	return System.nanoTime();
+    }
+
+    /*
+       Records a call of add which began at the given time in the metrics, and
+       records a slow one as a SuffixTree.SlowAdd event for the Java Flight
+       Recorder.
+     */
+    private void endAdd(long start){
+	if (metrics == null) return;
+	long time = System.nanoTime() - start;
+	if (!metrics.recordAdd(time)) return;
+	slowAddEvent E = new slowAddEvent();
+	if (!E.shouldCommit()) return;
+	E.addTime          = time;
+	E.symbols          = L.size() - sizeBeforeAdd;
+	E.symbolListLength = L.size();
+	E.contextSetSize   = metrics.getContextSetSize();
+	E.vertices         = metrics.getNrOfVertices();
+	E.edgesSplit       = metrics.getNrOfEdgesSplit();
+	E.commit();
+    }
+
+    /**
+       Enables the metrics of the suffix tree, which are then kept for every symbol
+       added. They are described in the class treeMetrics. Keeping them takes a few
+       increments for every symbol and two readings of the clock for every call of
+       add, while the suffix tree takes no time for them when they are not enabled.
+       <p>
+       The metrics begin with the vertices and leaves already in the suffix tree,
+       which are counted by visiting the vertices once. The method must be called by
+       the thread adding the symbols.
+       </p>
+
+       @param  slowAddThreshold The time in nanoseconds a call of add must take to be
+                                counted as slow and recorded as a SuffixTree.SlowAdd
+                                event by the Java Flight Recorder
+       @return                  The metrics
+     */
+    public treeMetrics enableMetrics(long slowAddThreshold){
+	int contexts = CS.size();
+	long leaves = Math.max(0, L.size() - contexts + 1);
+	long innerVertices = 0;
+	if (arena != null){
+	    innerVertices = arena.getNrOfVertices() - 1;
+	} else{
+	    ArrayDeque<Vertex> stack = new ArrayDeque<Vertex>();
+	    stack.push(root);
+	    while (!stack.isEmpty()){
+		Vertex V = stack.pop();
+		for (int k=V.getFirstDirection(); k!=-1; k=V.getNextDirection(k)){
+		    if (V.isLeafChild(k)) continue;
+		    innerVertices++;
+		    stack.push(V.getInternalChild(k));
+		}
+	    }
+	}
+	metrics = new treeMetrics(this, innerVertices, leaves, contexts, SLE == null, slowAddThreshold);
+	if (SLE != null) SLE.metrics = metrics;
+	CS.setMetrics(metrics);
+	return metrics;
+    }
+
+    /**
+       Disables the metrics of the suffix tree. The method must be called by the
+       thread adding the symbols.
+     */
+    public void disableMetrics(){
+	metrics = null;
+	if (SLE != null) SLE.metrics = null;
+	CS.setMetrics(null);
+    }
+
+    /**
+       Gets the metrics of the suffix tree, which may be read by any thread.
+
+       @return The metrics, or null if they are not enabled
+     */
+    public treeMetrics getMetrics(){
+	return metrics;
+    }
+
+    /*
+       Publishes the number of symbols, the number of suffixes ending at a leaf and
+       the earlier instance of the longest context to the readers of snapshots.
+     */
+    private void publish(){
+	int n = L.size();
+	int nrOfLeaves = Math.max(0, n - CS.size() + 1);
+	PUBLISHED_CONTEXT.setRelease(this, ((long)n << 32) | longestContextCopy());
+	PUBLISHED.setRelease(this, ((long)n << 32) | nrOfLeaves);
+    }
+
+    /**
+       Makes the suffix tree publish the number of symbols after every symbol added,
+       so snapshots of it may be taken by the method getSnapshot. A suffix tree which
+       is only searched by the thread adding the symbols does not need them, and does
+       not pay for publishing. It is called before the suffix tree is shared with the
+       threads taking the snapshots.
+     */
+    public void enableSnapshots(){
+	publish();
+	snapshots = true;
+    }
+
+    /**
+       Gets a snapshot of the suffix tree which can be searched by other threads
+       while this thread goes on adding symbols. The snapshot holds the symbols
+       published when it is taken, and the searches never make the thread adding
+       symbols wait. Nor does it make them wait, except that a search of the arena
+       engine waits for the change of a vertex it reads, which is a single leaf or
+       split. A thread takes a new snapshot to see the symbols added since.
+
+       @return A snapshot of the symbols added so far
+       @throws java.lang.IllegalStateException If the snapshots have not been
+               enabled by the method enableSnapshots
+     */
+    public suffixTreeSnapshot getSnapshot(){
+	if (!snapshots) throw new IllegalStateException("The snapshots of the suffix tree have not been enabled");
+	long p = (long)PUBLISHED.getAcquire(this);
+	long q = (long)PUBLISHED_CONTEXT.getAcquire(this);
+	while ((q >>> 32) != (p >>> 32)){  //more symbols were published in between
+	    Thread.onSpinWait();
+	    p = (long)PUBLISHED.getAcquire(this);
+	    q = (long)PUBLISHED_CONTEXT.getAcquire(this);
+	}
+	return new suffixTreeSnapshot(K, root, L, (int)(p >>> 32), (int)p, (int)q);
+    }
+
     /**
        Returns the root vertex of the suffix tree.
 
@@ -127,12 +631,22 @@ public class suffixTree{
 	return root;
     }
 
+    /**
+       Returns the symbol list from which the suffix tree is created, as a read only
+       list of integers backed by the symbol list.
+
+       @return   The symbol list from which the suffix tree is created
+     */
+    public List<Integer> getL(){
+	return L.asList();
+    }
+
     /**
        Returns the symbol list from which the suffix tree is created.
 
        @return   The symbol list from which the suffix tree is created
      */
-    public ArrayList getL(){
+    public symbolList getSymbolList(){
 	return L;
     }
 
@@ -140,27 +654,636 @@ public class suffixTree{
 	return L.size();
     }
 
+    /**
+       Appends a checkpoint of the suffix tree to a file, from which the suffix tree
+       can be restored by the constructor taking a file channel. Only the symbols and
+       the vertices added or changed since the last checkpoint are written, along with
+       the longest context of the context set, from which the other contexts follow.
+       The file is forced to the storage device before returning.
+       <p>
+       The first checkpoint of a suffix tree which has not been restored starts the
+       file anew. Every later checkpoint must be appended to the same file.
+       </p>
+
+       @param  channel The channel of the file, which must be open for reading and writing
+       @throws         java.io.IOException If the file cannot be written
+       @throws         java.lang.IllegalStateException If the suffix tree is not built
+                       by the arena engine, which is the only engine keeping track of
+                       the changed vertices
+     */
+    public void checkpoint(FileChannel channel) throws IOException{
+	if (arena == null) throw new IllegalStateException("Only suffix trees built by the arena engine can be checkpointed");
+	int format = (K <= 256) ? mappedSymbolList.U8 : ((K <= 65536) ? mappedSymbolList.U16 : mappedSymbolList.I32);
+	int n = L.size();
+	long length = 8 + ((long)(n - nrOfSymbolsSaved) << format) + arena.getChangesLength() + 16;
+
+	boolean first = checkpointEnd < 0;
+	if (first) channel.truncate(0);
+	else if (channel.size() > checkpointEnd) channel.truncate(checkpointEnd);  //remove a checkpoint which was not completely written
+	channel.position(first ? 0 : checkpointEnd);
+	DataOutputStream D = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+	if (first){
+	    D.writeInt(CHECKPOINT_MAGIC);
+	    D.writeInt(CHECKPOINT_VERSION);
+	    D.writeInt(K);
+	    checkpointEnd = 12;
+	}
+	D.writeInt(CHECKPOINT_BEGIN);
+	D.writeLong(length);
+	D.writeInt(nrOfSymbolsSaved);
+	D.writeInt(n - nrOfSymbolsSaved);
+	for (int i=nrOfSymbolsSaved; i<n; i++){
+	    if (format == mappedSymbolList.U8) D.writeByte(L.get(i));
+	    else if (format == mappedSymbolList.U16) D.writeShort(L.get(i));
+	    else D.writeInt(L.get(i));
+	}
+	arena.writeChanges(D);
+	((arenaEngine) SLE).writeState(D);
+	D.writeInt(CHECKPOINT_END);
+	D.flush();
+	channel.force(false);
+
+	arena.saved();
+	nrOfSymbolsSaved = n;
+	checkpointEnd += 12 + length + 4;
+    }
+
+    /**
+       Makes the suffix array and the longest common prefix array of the symbol list by
+       traversing the suffix tree depth first, visiting the children of every vertex in
+       the order of their directions. It takes time proportional to the number of symbols.
+       <p>
+       A suffix is ordered before the suffixes it is a prefix of. Such suffixes are the
+       contexts of the context set, which do not end at a leaf, so they are put into the
+       suffix array when the traversal reaches the place where they end.
+       </p>
+
+       @return   The suffix array of the symbol list
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to make the suffix array
+     */
+    public suffixArray getSuffixArray() throws java.lang.OutOfMemoryError{
+	int n = L.size();
+	int SA[] = new int[n];
+	int LCP[] = new int[n];
+	int rank = 0;
+	int lcp = 0;  //the longest common prefix of the last suffix put and the place reached
+
+	/*
+	  The contexts ending at a vertex are kept by vertex. The contexts ending on an
+	  edge are kept by the vertex the edge leaves, as their direction, offset and
+	  length, and they are sorted by offset.
+	*/
+	HashMap<Vertex,Integer> vertexContexts = new HashMap<Vertex,Integer>();
+	HashMap<Vertex,ArrayList<int[]>> edgeContexts = new HashMap<Vertex,ArrayList<int[]>>();
+	for (int i=1; i<CS.size(); i++){
+	    Context C = CS.get(i);
+	    if (C.getDirection() < 0){
+		vertexContexts.put(C.getBaseVertex(), Integer.valueOf(i));
+	    } else{
+		ArrayList<int[]> A = edgeContexts.get(C.getBaseVertex());
+		if (A == null) edgeContexts.put(C.getBaseVertex(), A = new ArrayList<int[]>());
+		A.add(new int[]{C.getDirection(), C.getOffset(), i});
+	    }
+	}
+	for (ArrayList<int[]> A : edgeContexts.values()) A.sort((x, y) -> (x[0] != y[0]) ? Integer.compare(x[0], y[0]) : Integer.compare(x[1], y[1]));
+
+	/*
+	  The stack holds the vertices being visited, their depths, their next directions
+	  and the first of their edge contexts which has not been put yet.
+	*/
+	Vertex stack[] = new Vertex[64];
+	int depth[] = new int[64];
+	int next[] = new int[64];
+	int pending[] = new int[64];
+	int top = 0;
+	stack[0] = root;
+	depth[0] = 0;
+	next[0] = root.getFirstDirection();
+	while (top >= 0){
+	    Vertex V = stack[top];
+	    int d = depth[top];
+	    int k = next[top];
+	    if (k == -1){
+		top--;
+		continue;
+	    }
+	    next[top] = V.getNextDirection(k);
+	    lcp = Math.min(lcp, d);
+
+	    ArrayList<int[]> A = edgeContexts.get(V);
+	    if (A != null){  //the directions are visited in increasing order, as A is sorted
+		while ((pending[top] < A.size()) && (A.get(pending[top])[0] < k)) pending[top]++;
+		while ((pending[top] < A.size()) && (A.get(pending[top])[0] == k)){
+		    int length = A.get(pending[top]++)[2];  //the i'th context has i symbols
+		    SA[rank] = n - length;
+		    LCP[rank] = (rank == 0) ? 0 : lcp;
+		    lcp = length;
+		    rank++;
+		}
+	    }
+	    if (V.isLeafChild(k)){
+		SA[rank] = V.getIndexFrom(k) - d;
+		LCP[rank] = (rank == 0) ? 0 : lcp;
+		lcp = n - SA[rank];
+		rank++;
+	    } else{
+		Vertex child = V.getInternalChild(k);
+		int childDepth = d + V.getIndexTo(k) - V.getIndexFrom(k) + 1;
+		Integer c = vertexContexts.get(child);
+		if (c != null){
+		    SA[rank] = n - c.intValue();
+		    LCP[rank] = (rank == 0) ? 0 : lcp;
+		    lcp = c.intValue();
+		    rank++;
+		}
+		if (++top == stack.length){
+		    stack = Arrays.copyOf(stack, 2 * top);
+		    depth = Arrays.copyOf(depth, 2 * top);
+		    next  = Arrays.copyOf(next, 2 * top);
+		    pending = Arrays.copyOf(pending, 2 * top);
+		}
+		stack[top]   = child;
+		depth[top]   = childDepth;
+		next[top]    = child.getFirstDirection();
+		pending[top] = 0;
+	    }
+	}
+	return new suffixArray(L, K, SA, LCP);
+    }
+
+    /**
+       Makes the Burrows-Wheeler transform of the symbol list followed by an end marker,
+       which is smaller than every symbol. Its rows are taken in the order in which the
+       leaves are reached by getSuffixArray.
+
+       @return   The Burrows-Wheeler transform, where row 0 is the empty suffix and
+                 the end marker is given as -1
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to make the transform
+     */
+    public int[] getBWT() throws java.lang.OutOfMemoryError{
+	int SA[] = getSuffixArray().getSuffixArray();
+	int n = SA.length;
+	int BWT[] = new int[n + 1];
+	BWT[0] = (n > 0) ? L.get(n - 1) : -1;
+	for (int r=1; r<=n; r++) BWT[r] = (SA[r - 1] == 0) ? -1 : L.get(SA[r - 1] - 1);
+	return BWT;
+    }
+
+    /**
+       Makes an FM-index of the symbol list with a sample rate of 64.
+
+       @return   The FM-index of the symbol list
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to make the FM-index
+     */
+    public fmIndex getFMIndex() throws java.lang.OutOfMemoryError{
+	return getFMIndex(64);
+    }
+
+    /**
+       Makes an FM-index of the symbol list from the Burrows-Wheeler transform. The
+       sample rate trades the size of the FM-index for the time taken by a query, as
+       described in the class fmIndex.
+
+       @param  sampleRate The sample rate of the occurrence table and of the samples
+       @return            The FM-index of the symbol list
+       @throws            java.lang.OutOfMemoryError If there is not enough
+                          store in order to make the FM-index
+     */
+    public fmIndex getFMIndex(int sampleRate) throws java.lang.OutOfMemoryError{
+	return new fmIndex(L, K, getSuffixArray().getSuffixArray(), sampleRate);
+    }
+
+    /**
+       Freezes the suffix tree by copying it and its symbol list into direct buffers
+       outside the heap, laid out as described in the class treeColumns. The frozen
+       suffix tree answers the same queries, but it cannot be extended, and once this
+       suffix tree is no longer referenced, the garbage collector has no vertices to
+       trace. The direct buffers are limited by the option -XX:MaxDirectMemorySize
+       of the virtual machine.
+
+       @return   The frozen suffix tree
+       @throws   java.lang.OutOfMemoryError If there is not enough
+                 store in order to freeze the suffix tree
+     */
+    public mappedSuffixTree freeze() throws java.lang.OutOfMemoryError{
+	int format = (K <= 256) ? mappedSymbolList.U8 : ((K <= 65536) ? mappedSymbolList.U16 : mappedSymbolList.I32);
+	return new mappedSuffixTree(K, CS.size(), new mappedSymbolList(L, format, K), new treeColumns(root, null, CS));
+    }
+
+    /**
+       Writes the suffix tree, its symbol list and optionally its context set to a
+       stream in the binary format described in the class mappedSuffixTree, from
+       which it can be loaded without being built again. The stream is flushed
+       but not closed.
+
+       @param  out            The stream to which the suffix tree is written
+       @param  withContextSet True if the contexts of the context set are written
+       @throws                java.io.IOException If the stream cannot be written
+     */
+    public void write(OutputStream out, boolean withContextSet) throws IOException{
+	int n = L.size();
+	int format = (K <= 256) ? mappedSymbolList.U8 : ((K <= 65536) ? mappedSymbolList.U16 : mappedSymbolList.I32);
+	int nrOfContexts = CS.size();
+
+	/* The base vertices of the contexts get their numbers as they are reached */
+	HashMap<Vertex,Integer> baseVertices = new HashMap<Vertex,Integer>();
+	if (withContextSet){
+	    for (int i=0; i<nrOfContexts; i++) baseVertices.put(CS.get(i).getBaseVertex(), Integer.valueOf(-1));
+	}
+
+	treeColumns T = new treeColumns(root, baseVertices, CS);
+	int nrOfVertices = T.nrOfVertices;
+	int nrOfEdges = T.nrOfEdges;
+
+	DataOutputStream D = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+	D.writeInt(mappedSuffixTree.MAGIC);
+	D.writeInt(mappedSuffixTree.VERSION);
+	D.writeInt(K);
+	D.writeInt(withContextSet ? mappedSuffixTree.WITH_CONTEXT_SET : 0);
+	D.writeInt(n);
+	D.writeInt(format);
+	D.writeInt(nrOfVertices);
+	D.writeInt(nrOfEdges);
+	D.writeInt(nrOfContexts);
+	D.writeInt(0);
+
+	for (int i=0; i<n; i++){
+	    if (format == mappedSymbolList.U8) D.writeByte(L.get(i));
+	    else if (format == mappedSymbolList.U16) D.writeShort(L.get(i));
+	    else D.writeInt(L.get(i));
+	}
+	for (long b=((long) n << format); (b & 3) != 0; b++) D.writeByte(0);  //the ints are aligned
+
+	for (int v=0; v<=nrOfVertices; v++) D.writeInt(T.firstEdge[v]);
+	for (int e=0; e<nrOfEdges; e++) D.writeInt(T.edgeDirection[e]);
+	for (int e=0; e<nrOfEdges; e++) D.writeInt(T.edgeIndexFrom[e]);
+	for (int e=0; e<nrOfEdges; e++) D.writeInt(T.edgeIndexTo[e]);
+	for (int e=0; e<nrOfEdges; e++) D.writeInt(T.edgeChild[e]);
+	for (int v=0; v<nrOfVertices; v++) D.writeInt(T.nrOfLeaves[v]);
+	for (int v=0; v<nrOfVertices; v++) D.writeInt(T.contextsBelow[v]);
+	for (int i=0; i<nrOfContexts; i++) D.writeInt(T.contextEdge[i]);
+
+	if (withContextSet){
+	    for (int i=0; i<nrOfContexts; i++){
+		Context C = CS.get(i);
+		D.writeInt(baseVertices.get(C.getBaseVertex()).intValue());
+		D.writeInt(C.getDirection());
+		D.writeInt(C.getOffset());
+	    }
+	}
+	D.flush();
+    }
+
+    /**
+       Returns a boolean value which is true if the pattern occurs in the symbol
+       list and which is false otherwise. It takes time proportional to the length
+       of the pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  A boolean value which is true if the pattern occurs in the symbol
+                list and which is false otherwise
+     */
+    public boolean contains(int P[]){
+	searchStacks S = takeStacks();
+	boolean found = locate(P, S) != NOT_FOUND;
+	S.vertex = null;
+	stacks.set(S);
+	return found;
+    }
+
+    /**
+       Counts the instances of a pattern in the symbol list. The instances are
+       visited as by forEachOccurrence, so it takes time proportional to the length
+       of the pattern plus the number of instances. The frozen suffix tree made by
+       freeze counts the leaves and the contexts below every vertex when it is made,
+       so it counts the instances in time proportional to the length of the pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The number of instances of the pattern
+     */
+    public int count(int P[]){
+	searchStacks S = takeStacks();
+	long l = locate(P, S);
+	int count = (l == NOT_FOUND) ? 0 : visitOccurrences(l, S, P.length, null);
+	stacks.set(S);
+	return count;
+    }
+
+    /**
+       Finds the first instance of a pattern in the symbol list. It takes time
+       proportional to the length of the pattern, as the edges of the suffix tree
+       refer to the first instance of the symbols on them.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The index of the first symbol of the first instance of the
+                pattern, or -1 if the pattern does not occur
+     */
+    public int first(int P[]){
+	searchStacks S = takeStacks();
+	long l = locate(P, S);
+	int first = -1;
+	if (l != NOT_FOUND){
+	    if (arena != null) first = arena.getIndexFrom(edge(l)) - depth(l);
+	    else first = S.vertex.getIndexFrom(edge(l)) - depth(l);
+	}
+	S.vertex = null;
+	stacks.set(S);
+	return first;
+    }
+
+    /**
+       Reports every instance of a pattern in the symbol list to an action, in no
+       particular order. Finding the pattern takes time proportional to its length,
+       and every instance takes constant time. The instances which are contexts of
+       the context set do not end at a leaf yet. The longest context has an earlier
+       instance, so every instance beginning at a context is repeated that much
+       earlier, and doing so again ends at an instance beginning at a leaf. They are
+       found from the instances beginning at a leaf by going the other way.
+
+       @param P      The pattern, which is a non empty sequence of symbols
+       @param action The action which is given the index of the first symbol of
+                     every instance of the pattern
+     */
+    public void forEachOccurrence(int P[], IntConsumer action){
+	searchStacks S = takeStacks();
+	long l = locate(P, S);
+	if (l != NOT_FOUND) visitOccurrences(l, S, P.length, action);
+	stacks.set(S);
+    }
+
+    /**
+       Gets the vertex arena of a suffix tree built by the arena engine, for classes
+       keeping data of their own for every vertex.
+
+       @return The vertex arena, or null if the suffix tree is not built by the
+               arena engine
+     */
+    vertexArena getArena(){
+	return arena;
+    }
+
+    /**
+       Finds the arena vertex which the edge on which a pattern ends leads to, for
+       classes keeping data of their own for every vertex.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The handle of the vertex, or vertexArena.NONE if the pattern does
+                not occur or the suffix tree is not built by the arena engine
+     */
+    int locateHandle(int P[]){
+	return (arena == null) ? vertexArena.NONE : edge(locate(P, null));
+    }
+
+    /*
+       The stacks of the depth first search below a pattern, and the vertex which
+       the edge found by locate leaves. Every thread keeps them for its next search,
+       so a search allocates nothing, and a search made from the action of another
+       search makes stacks of its own.
+     */
+    private static final class searchStacks{
+	Vertex vertex;
+	Vertex vertices[] = new Vertex[64];
+	int handles[] = new int[64];
+	int depths[] = new int[64];
+    }
+
+    private static final ThreadLocal<searchStacks> stacks = new ThreadLocal<searchStacks>();  //not in use by a search
+
+    /*
+       Takes the stacks of the thread, which are put back by stacks.set when the
+       search is done.
+     */
+    private static searchStacks takeStacks(){
+	searchStacks S = stacks.get();
+	if (S == null) return new searchStacks();  //the first search of the thread, or a search from an action
+	stacks.set(null);
+	return S;
+    }
+
+    /*
+       The edge on which a pattern ends is packed into a long, the locus. The high
+       half is the arena handle the edge leads to, or the direction of the edge
+       from the vertex it leaves, and the low half is the depth of that vertex.
+     */
+    private static final long NOT_FOUND = locus(vertexArena.NONE, 0);
+
+    private static long locus(int edge, int depth){
+	return ((long)edge << 32) | depth;
+    }
+
+    private static int edge(long l){
+	return (int)(l >> 32);
+    }
+
+    private static int depth(long l){
+	return (int)l;
+    }
+
+    /*
+       Finds the edge on which the pattern ends when it is read from the root, and
+       puts the vertex it leaves into the stacks, unless they are null. It returns
+       NOT_FOUND if the pattern does not occur.
+     */
+    private long locate(int P[], searchStacks S){
+	int n = L.size();
+	int m = P.length;
+	if (m == 0) return NOT_FOUND;
+	int d = 0;  //the depth of the vertex being left
+	int i = 0;  //the number of symbols of the pattern read
+
+	if (arena != null){
+	    int v = vertexArena.ROOT;
+	    while (true){
+		int c = arena.getChild(v, normalize(P[i]));
+		if (c == vertexArena.NONE) return NOT_FOUND;
+		int indexFrom = arena.getIndexFrom(c);
+		int indexTo = Math.min(arena.getIndexTo(c), n - 1);
+		for (int j=indexFrom; (j<=indexTo) && (i<m); j++, i++){
+		    if (L.get(j) != normalize(P[i])) return NOT_FOUND;
+		}
+		if (i == m) return locus(c, d);
+		if (arena.isLeaf(c)) return NOT_FOUND;
+		d += indexTo - indexFrom + 1;
+		v = c;
+	    }
+	}
+
+	Vertex V = root;
+	while (true){
+	    int a = normalize(P[i]);
+	    int indexFrom = V.getIndexFrom(a);
+	    if (indexFrom < 0) return NOT_FOUND;
+	    int indexTo = Math.min(V.getIndexTo(a), n - 1);
+	    for (int j=indexFrom; (j<=indexTo) && (i<m); j++, i++){
+		if (L.get(j) != normalize(P[i])) return NOT_FOUND;
+	    }
+	    if (i == m){
+		if (S != null) S.vertex = V;
+		return locus(a, d);
+	    }
+	    if (V.isLeafChild(a)) return NOT_FOUND;
+	    d += indexTo - indexFrom + 1;
+	    V = V.getInternalChild(a);
+	}
+    }
+
+    /*
+       Visits the instances of the pattern of length m ending on the locus, and
+       reports the index of their first symbols to the action, unless it is null.
+       It returns the number of instances. The stacks are the ones the locus was
+       found with, and they are not in use by another search, so an action may
+       search again.
+     */
+    private int visitOccurrences(long l, searchStacks S, int m, IntConsumer action){
+	int n = L.size();
+	int nrOfLeaves = Math.max(0, n - CS.size() + 1);
+	int x0 = longestContextCopy();
+	int count = 0;
+	int top = 0;
+	int depths[] = S.depths;
+
+	/* The leaves below the locus, found depth first */
+	if (arena != null){
+	    int handles[] = S.handles;
+	    handles[0] = edge(l);
+	    depths[0] = depth(l);
+	    top = 1;
+	    while (top > 0){
+		top--;
+		int c = handles[top];
+		int d = depths[top];
+		if (arena.isLeaf(c)){
+		    int s = arena.getIndexFrom(c) - d;
+		    if (action != null) action.accept(s);
+		    count += 1 + visitContexts(s, m, n, nrOfLeaves, x0, action);
+		    continue;
+		}
+		d += arena.getIndexTo(c) - arena.getIndexFrom(c) + 1;
+		for (int child=arena.getFirstChild(c); child!=vertexArena.NONE; child=arena.getNextSibling(child)){
+		    if (top == handles.length){
+			handles = S.handles = Arrays.copyOf(handles, 2 * top);
+			depths = S.depths = Arrays.copyOf(depths, 2 * top);
+		    }
+		    handles[top] = child;
+		    depths[top++] = d;
+		}
+	    }
+	    return count;
+	}
+
+	Vertex vertex = S.vertex;
+	int direction = edge(l);
+	S.vertex = null;
+	if (vertex.isLeafChild(direction)){
+	    int s = vertex.getIndexFrom(direction) - depth(l);
+	    if (action != null) action.accept(s);
+	    return 1 + visitContexts(s, m, n, nrOfLeaves, x0, action);
+	}
+	Vertex vertices[] = S.vertices;
+	vertices[0] = vertex.getInternalChild(direction);
+	depths[0] = depth(l) + vertex.getIndexTo(direction) - vertex.getIndexFrom(direction) + 1;
+	top = 1;
+	while (top > 0){
+	    top--;
+	    Vertex V = vertices[top];
+	    vertices[top] = null;
+	    int d = depths[top];
+	    for (int k=V.getFirstDirection(); k!=-1; k=V.getNextDirection(k)){
+		if (V.isLeafChild(k)){
+		    int s = V.getIndexFrom(k) - d;
+		    if (action != null) action.accept(s);
+		    count += 1 + visitContexts(s, m, n, nrOfLeaves, x0, action);
+		    continue;
+		}
+		if (top == vertices.length){
+		    vertices = S.vertices = Arrays.copyOf(vertices, 2 * top);
+		    depths = S.depths = Arrays.copyOf(depths, 2 * top);
+		}
+		vertices[top] = V.getInternalChild(k);
+		depths[top++] = d + V.getIndexTo(k) - V.getIndexFrom(k) + 1;
+	    }
+	}
+	return count;
+    }
+
+    /*
+       Finds the index of the first symbol of the earlier instance of the longest
+       context which its edge refers to. That instance begins at a leaf suffix, as
+       the edges refer to the symbols of the leaves. It returns 0 if there are no
+       contexts.
+     */
+    private int longestContextCopy(){
+	int size = CS.size() - 1;
+	if (size <= 0) return 0;
+	return CS.getLongestContextEnd() - size + 1;
+    }
+
+    /**
+       Visits the instances of a pattern of length m which are contexts and which
+       are found from its instance beginning at the leaf suffix s. The contexts are
+       the suffixes from nrOfLeaves on, and the longest of them has an earlier
+       instance beginning at x0. An instance beginning at a context t lies within
+       the longest context, so it is repeated at t - (nrOfLeaves - x0), and doing
+       so again ends at a leaf suffix. The instances which are contexts are thus
+       visited by repeating an instance beginning at a leaf suffix as long as it
+       lies within the earlier instance of the longest context. It takes constant
+       time when the action is null, and otherwise constant time per instance.
+
+       @param  s          The index of the first symbol of the instance beginning at
+                          a leaf suffix
+       @param  m          The length of the pattern
+       @param  n          The number of symbols
+       @param  nrOfLeaves The number of suffixes ending at a leaf
+       @param  x0         The index of the first symbol of the earlier instance of
+                          the longest context
+       @param  action     The action which is given the index of the first symbol
+                          of every instance found, unless it is null
+       @return            The number of instances found
+     */
+    static int visitContexts(int s, int m, int n, int nrOfLeaves, int x0, IntConsumer action){
+	int shift = nrOfLeaves - x0;
+	int last = x0 + n - nrOfLeaves - m;  //the last instance within the earlier instance of the longest context
+	if ((s < x0) || (s > last)) return 0;
+	if (action == null) return (last - s) / shift + 1;
+	int count = 0;
+	for (; s<=last; s+=shift){
+	    action.accept(s + shift);
+	    count++;
+	}
+	return count;
+    }
+
+    /*
+       Visits the instances of a pattern of length m which are contexts and which
+       are found from its instance beginning at the leaf suffix s, in the symbols
+       added so far, as the static method visitContexts does.
+     */
+    int visitContexts(int s, int m, IntConsumer action){
+	int n = L.size();
+	return visitContexts(s, m, n, Math.max(0, n - CS.size() + 1), longestContextCopy(), action);
+    }
+
+    /*
+       Maps a symbol into the alphabet the same way as the method add does.
+     */
+    private int normalize(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+	return a;
+    }
+
     /**
        Produces a simple ascii print of the code tree on sysout. This
        is done by traversing the suffix tree in preorder printing all
        the symbols at the indexes as given in the suffix tree.
      */
     public void printCodeTree(){
-	Vertex child = null;
-	int indexFrom = -1;
-	int indexTo = -1;
 	int t = 0;  //t is the tabulator giving the left indent
 
-	for (int k=0; k<K; k++){
-	    child = root.getChild(k);
-	    if (child != null){
-		indexFrom = root.getIndexFrom(k);
-		indexTo = child.isLeaf() ? indexFrom : child.getIndexTo();
-		printSequence(t, indexFrom, indexTo);
-
-		if (!child.isLeaf()) recursivePrintCodeTree(t + 1 + 2 * (indexTo - indexFrom), child);
-	    }
-	}
+	recursivePrintCodeTree(t, root);
     }
 
     /*
@@ -173,18 +1296,17 @@ public class suffixTree{
                  code fragments are to be printed from left to right
      */
     private void recursivePrintCodeTree(int t, Vertex v){
-	Vertex child = null;
 	int indexFrom = -1;
 	int indexTo = -1;
 
-	for (int k=0; k<K; k++){
-	    child = v.getChild(k);
-	    if (child != null){
-		indexFrom = v.getIndexFrom(k);
-		indexTo = child.isLeaf() ? indexFrom : child.getIndexTo();
+	for (int k=v.getFirstDirection(); k!=-1; k=v.getNextDirection(k)){
+	    indexFrom = v.getIndexFrom(k);
+	    if (v.isLeafChild(k)){
+		printSequence(t, indexFrom, indexFrom);
+	    } else{
+		indexTo = v.getIndexTo(k);
 		printSequence(t, indexFrom, indexTo);
-
-		if (!child.isLeaf()) recursivePrintCodeTree(t + 1 + 2 * (indexTo - indexFrom), child);
+		recursivePrintCodeTree(t + 1 + 2 * (indexTo - indexFrom), v.getInternalChild(k));
 	    }
 	}
     }
@@ -217,19 +1339,15 @@ public class suffixTree{
 	System.out.println("Printing suffixtree:");
 	System.out.println("[-1, -1]");
 	int t = 1;
-	Vertex child = null;
-	for (int k=0; k<K; k++){
-	    child = root.getChild(k);
-	    if (child != null){
-		for (int i=0; i<t; i++) System.out.print(" ");
-		System.out.println("k = " + k + ":");
-		for (int i=0; i<t; i++) System.out.print(" ");
-		System.out.print("[" + root.getIndexFrom(k) + ", ");
-		if (child.isLeaf()){
-		    System.out.println(child.getIndexTo() + "]");
-		} else{
-		    recursivePrintIndexTree(t + 1, child);
-		}
+	for (int k=root.getFirstDirection(); k!=-1; k=root.getNextDirection(k)){
+	    for (int i=0; i<t; i++) System.out.print(" ");
+	    System.out.println("k = " + k + ":");
+	    for (int i=0; i<t; i++) System.out.print(" ");
+	    System.out.print("[" + root.getIndexFrom(k) + ", ");
+	    if (root.isLeafChild(k)){
+		System.out.println(root.getIndexTo(k) + "]");
+	    } else{
+		recursivePrintIndexTree(t + 1, root.getInternalChild(k));
 	    }
 	}
     }
@@ -247,19 +1365,15 @@ public class suffixTree{
     private void recursivePrintIndexTree(int t, Vertex v){
 	System.out.println(v.getIndexTo() + "]");
 	if (v.isLeaf()) return;
-	Vertex child = null;
-	for (int k=0; k<K; k++){
-	    child = v.getChild(k);
-	    if (child != null){
-		for (int i=0; i<t; i++) System.out.print(" ");
-		System.out.println("k = " + k + ":");
-		for (int i=0; i<t; i++) System.out.print(" ");
-		System.out.print("[" + v.getIndexFrom(k) + ", ");
-		if (child.isLeaf()){
-		    System.out.println(child.getIndexTo() + "]");
-		} else{
-		    recursivePrintIndexTree(t + 1, child);
-		}
+	for (int k=v.getFirstDirection(); k!=-1; k=v.getNextDirection(k)){
+	    for (int i=0; i<t; i++) System.out.print(" ");
+	    System.out.println("k = " + k + ":");
+	    for (int i=0; i<t; i++) System.out.print(" ");
+	    System.out.print("[" + v.getIndexFrom(k) + ", ");
+	    if (v.isLeafChild(k)){
+		System.out.println(v.getIndexTo(k) + "]");
+	    } else{
+		recursivePrintIndexTree(t + 1, v.getInternalChild(k));
 	    }
 	}
     }
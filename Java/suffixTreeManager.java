@@ -0,0 +1,470 @@
+/*
+  Program name: suffixTreeManager.java. Is a class managing the suffix trees of many streams.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `suffixTreeManager.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+   This class manages the suffix trees of many independent streams of symbols, one
+   suffix tree for every stream. The streams are spread over a fixed number of shards
+   by their keys, and every shard has one writer thread, which is the only thread
+   adding symbols to the suffix trees of the shard:
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Mailbox</font></td><td>The symbols submitted for the streams
+       of a shard are queued in its mailbox, so submitting never waits for the suffix
+       trees</td></tr>
+   <tr><td><font size="-1">Writer</font></td><td>Takes every message waiting in the
+       mailbox, at most batchSize at a time, joins the symbols of each stream and adds
+       them to its suffix tree by one call of add</td></tr>
+   <tr><td><font size="-1">Queries</font></td><td>Run on a pool of one daemon thread
+       for every processor, and wait in the queue of the pool while every thread is
+       busy. They search a snapshot of the suffix tree, so they never make the writer
+       wait</td></tr>
+   </table>
+   <p>
+   The queries are not run on virtual threads, as the package is built for Java 17,
+   which has none. Nor do they need them: a query searches a snapshot in memory and
+   never blocks, so a thread for every processor keeps the processors busy, and many
+   concurrent queries become tasks waiting in the queue rather than threads of the
+   operating system, which is what virtual threads would give.
+   </p>
+   <p>
+   Every shard keeps its queue depth, which is the number of symbols submitted but not
+   yet added, and the latency from the submission of a message until its symbols are
+   in the suffix tree, and from the submission of a query until it is answered.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class suffixTreeManager<S> implements AutoCloseable{
+
+    private int K;
+    private int engine;
+    private int batchSize;
+    private shard shards[];
+    private ExecutorService queries;
+    private suffixTreeSnapshot empty;  //the snapshot of a stream which has no symbols yet
+    private volatile boolean closed;
+
+    /**
+       Creates a new manager with no streams, and starts the writer threads of
+       its shards.
+
+       @param  K          The number of symbols in the alphabet of every stream
+       @param  engine     The engine building the suffix trees, either
+                          suffixTree.CONTEXT_SET_ENGINE, suffixTree.SUFFIX_LINK_ENGINE
+                          or suffixTree.ARENA_ENGINE
+       @param  nrOfShards The number of shards, each having a writer thread
+       @param  batchSize  The largest number of messages a writer takes from its
+                          mailbox at a time
+       @throws            java.lang.IllegalArgumentException If there is not at
+                          least one shard
+     */
+    public suffixTreeManager(int K, int engine, int nrOfShards, int batchSize){
+	if (nrOfShards < 1) throw new IllegalArgumentException("There must be at least one shard");
+	this.K         = (K < 1) ? 1 : K;
+	this.engine    = engine;
+	this.batchSize = Math.max(1, batchSize);
+	suffixTree T = new suffixTree(this.K, engine);
+	T.enableSnapshots();
+	empty = T.getSnapshot();
+	queries = newQueryExecutor();
+	shards = new shard[nrOfShards];
+	for (int i=0; i<nrOfShards; i++){
+	    shards[i] = new shard(i, this.K, engine, this.batchSize);
+	    shards[i].writer.start();
+	}
+    }
+
+    /*
+       Makes the executor running the queries, which has a thread for every
+       processor and queues the queries while they are all busy. The threads are
+       daemon threads, which do not keep the Java runtime running, and they are
+       stopped when they have been idle for a minute.
+     */
+    private static ExecutorService newQueryExecutor(){
+	int n = Runtime.getRuntime().availableProcessors();
+	ThreadPoolExecutor E = new ThreadPoolExecutor(n, n, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), r -> {
+		Thread t = new Thread(r, "suffixTreeManager-query");
+		t.setDaemon(true);
+		return t;
+	    });
+	E.allowCoreThreadTimeOut(true);
+	return E;
+    }
+
+    /**
+       Gets the number of shards.
+
+       @return The number of shards
+     */
+    public int getNrOfShards(){
+	return shards.length;
+    }
+
+    /**
+       Gets the shard of a stream, which is given by the hash code of its key.
+
+       @param  stream The key of the stream
+       @return        The index of the shard of the stream
+     */
+    public int getShard(S stream){
+	int h = stream.hashCode();
+	return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    /**
+       Submits a symbol to be added to the suffix tree of a stream. The suffix
+       tree is made when the first symbol of the stream is added.
+
+       @param  stream The key of the stream
+       @param  a      The symbol
+       @throws        java.lang.IllegalStateException If the manager is closed, or
+                      if the writer of the shard has stopped because of an error
+     */
+    public void submit(S stream, int a){
+	submit(stream, new int[]{a}, 0, 1);
+    }
+
+    /**
+       Submits the symbols A[off], ..., A[off + len - 1] to be added to the suffix
+       tree of a stream, in that order. The symbols are copied, so A may be changed
+       once the method returns.
+
+       @param  stream The key of the stream
+       @param  A      An array containing the symbols
+       @param  off    Index in A of the first symbol
+       @param  len    The number of symbols
+       @throws        java.lang.IllegalStateException If the manager is closed, or
+                      if the writer of the shard has stopped because of an error
+     */
+    public void submit(S stream, int A[], int off, int len){
+	shard s = shards[getShard(stream)];
+	message M = (len <= 0) ? null : new message(stream, Arrays.copyOfRange(A, off, off + len), System.nanoTime());
+	synchronized (s){  //so no message is put into the mailbox after the STOP message of close
+	    if (s.stopping) throw new IllegalStateException("The manager is closed");
+	    if (s.failure != null) throw new IllegalStateException("The writer of shard " + s.index + " has stopped", s.failure);
+	    if (M == null) return;
+	    s.submitted.addAndGet(len);
+	    s.queued.addAndGet(len);
+	    s.mailbox.add(M);
+	}
+    }
+
+    /**
+       Gets a snapshot of the suffix tree of a stream, holding the symbols of the
+       stream which have been added so far.
+
+       @param  stream The key of the stream
+       @return        The snapshot, which has no symbols if none have been added
+     */
+    public suffixTreeSnapshot getSnapshot(S stream){
+	suffixTree T = shards[getShard(stream)].trees.get(stream);
+	return (T == null) ? empty : T.getSnapshot();
+    }
+
+    /**
+       Runs a query on a snapshot of the suffix tree of a stream, on a thread of the
+       query pool. The snapshot is taken when the query starts running, so a query
+       should not wait for another query or for the writers.
+
+       @param  stream The key of the stream
+       @param  query  The query, which is given the snapshot
+       @return        The future answer of the query, which has failed with an
+                      IllegalStateException if the manager is closed
+     */
+    public <R> CompletableFuture<R> query(S stream, Function<suffixTreeSnapshot, R> query){
+	shard s = shards[getShard(stream)];
+	long start = System.nanoTime();
+	if (closed) return CompletableFuture.failedFuture(new IllegalStateException("The manager is closed"));
+	try{
+	    return CompletableFuture.supplyAsync(() -> {
+		    try{
+			return query.apply(getSnapshot(stream));
+		    } finally{
+			long latency = System.nanoTime() - start;
+			s.nrOfQueries.increment();
+			s.queryLatency.add(latency);
+		    }
+		}, queries);
+	} catch (RejectedExecutionException REE){  //closed since it was checked
+	    return CompletableFuture.failedFuture(new IllegalStateException("The manager is closed", REE));
+	}
+    }
+
+    /**
+       Counts the instances of a pattern in a stream, on a thread of its own.
+
+       @param  stream The key of the stream
+       @param  P      The pattern, which is a non empty sequence of symbols
+       @return        The future number of instances of the pattern
+     */
+    public CompletableFuture<Integer> count(S stream, int P[]){
+	return query(stream, T -> T.count(P));
+    }
+
+    /**
+       Finds out if a pattern occurs in a stream, on a thread of its own.
+
+       @param  stream The key of the stream
+       @param  P      The pattern, which is a non empty sequence of symbols
+       @return        The future boolean value which is true if the pattern occurs
+                      in the stream and which is false otherwise
+     */
+    public CompletableFuture<Boolean> contains(S stream, int P[]){
+	return query(stream, T -> T.contains(P));
+    }
+
+    /**
+       Gets the queue depth of a shard.
+
+       @param  shard The index of the shard
+       @return       The number of symbols submitted to the streams of the shard
+                     which have not been added to their suffix trees yet
+     */
+    public long getQueueDepth(int shard){
+	return shards[shard].queued.get();
+    }
+
+    /**
+       Gets the number of streams of a shard which have a suffix tree.
+
+       @param  shard The index of the shard
+       @return       The number of streams of the shard
+     */
+    public int getNrOfStreams(int shard){
+	return shards[shard].trees.size();
+    }
+
+    /**
+       Gets the mean time from the submission of a message to a shard until its
+       symbols have been added.
+
+       @param  shard The index of the shard
+       @return       The mean latency in nanoseconds, or 0 if no message has been
+                     added
+     */
+    public long getMeanAddLatency(int shard){
+	shard s = shards[shard];
+	long n = s.nrOfMessages;
+	return (n == 0) ? 0 : s.addLatency / n;
+    }
+
+    /**
+       Gets the longest time from the submission of a message to a shard until its
+       symbols have been added.
+
+       @param  shard The index of the shard
+       @return       The longest latency in nanoseconds
+     */
+    public long getMaxAddLatency(int shard){
+	return shards[shard].maxAddLatency;
+    }
+
+    /**
+       Gets the mean time from the submission of a query on a stream of a shard
+       until it is answered.
+
+       @param  shard The index of the shard
+       @return       The mean latency in nanoseconds, or 0 if no query has been
+                     answered
+     */
+    public long getMeanQueryLatency(int shard){
+	shard s = shards[shard];
+	long n = s.nrOfQueries.sum();
+	return (n == 0) ? 0 : s.queryLatency.sum() / n;
+    }
+
+    /**
+       Waits until every symbol submitted before the method was called has been
+       added to its suffix tree. It returns at once if the manager is closed, as
+       the symbols submitted before have been added then.
+
+       @throws java.lang.InterruptedException If the thread is interrupted while
+               waiting
+       @throws java.lang.IllegalStateException If the writer of a shard has stopped
+               because of an error
+     */
+    public void flush() throws InterruptedException{
+	for (shard s : shards){
+	    long target = s.submitted.get();
+	    synchronized (s){
+		while ((s.added < target) && (s.failure == null) && !s.stopped) s.wait();
+	    }
+	    if (s.failure != null) throw new IllegalStateException("The writer of shard " + s.index + " has stopped", s.failure);
+	    if (s.added < target) throw new IllegalStateException("The writer of shard " + s.index + " has stopped");
+	}
+    }
+
+    /**
+       Closes the manager. The symbols submitted before are added and the writer
+       threads stop. The queries submitted before are still answered, as every query
+       is given a thread when it is submitted, and the threads stop once they are
+       done. Symbols submitted once the manager is being closed are rejected, and
+       the queries fail with an IllegalStateException.
+     */
+    public void close(){
+	if (closed) return;
+	closed = true;
+	for (shard s : shards){
+	    synchronized (s){
+		s.stopping = true;
+		s.mailbox.add(message.STOP);
+	    }
+	}
+	for (shard s : shards){
+	    boolean interrupted = false;
+	    while (true){
+		try{
+		    s.writer.join();
+		    break;
+		} catch (InterruptedException IE){
+		    interrupted = true;
+		}
+	    }
+	    if (interrupted) Thread.currentThread().interrupt();
+	}
+	queries.shutdown();
+    }
+
+    /*
+       Symbols submitted to a stream, and the time they were submitted.
+     */
+    private static final class message{
+	static final message STOP = new message(null, null, 0);  //stops the writer
+
+	Object stream;
+	int symbols[];
+	long submitted;
+
+	message(Object stream, int symbols[], long submitted){
+	    this.stream    = stream;
+	    this.symbols   = symbols;
+	    this.submitted = submitted;
+	}
+    }
+
+    /*
+       A shard, holding the suffix trees of its streams, its mailbox and its writer
+       thread. The statistics of the writer are only written by the writer, so they
+       are volatile fields, while those of the queries are written by many threads.
+     */
+    private static final class shard implements Runnable{
+	int index;
+	int K, engine, batchSize;
+	LinkedBlockingQueue<message> mailbox = new LinkedBlockingQueue<message>();
+	ConcurrentHashMap<Object, suffixTree> trees = new ConcurrentHashMap<Object, suffixTree>();
+	Thread writer;
+	volatile Throwable failure;
+	boolean stopping;         //the STOP message is in the mailbox, which is guarded by the shard's lock
+	volatile boolean stopped; //the writer has stopped
+
+	AtomicLong submitted = new AtomicLong();  //the number of symbols submitted
+	AtomicLong queued = new AtomicLong();     //the number of symbols submitted but not added
+	volatile long added;                      //the number of symbols added
+	volatile long nrOfMessages, addLatency, maxAddLatency;
+	LongAdder nrOfQueries = new LongAdder();
+	LongAdder queryLatency = new LongAdder();
+
+	shard(int index, int K, int engine, int batchSize){
+	    this.index     = index;
+	    this.K         = K;
+	    this.engine    = engine;
+	    this.batchSize = batchSize;
+	    writer = new Thread(this, "suffixTreeManager-shard-" + index);
+	    writer.setDaemon(true);
+	}
+
+	public void run(){
+	    ArrayList<message> batch = new ArrayList<message>();
+	    LinkedHashMap<Object, int[]> symbols = new LinkedHashMap<Object, int[]>();
+	    HashMap<Object, Integer> lengths = new HashMap<Object, Integer>();
+	    boolean stop = false;
+	    try{
+		while (!stop){
+		    batch.add(mailbox.take());
+		    mailbox.drainTo(batch, batchSize - 1);
+
+		    //join the symbols of each stream, in the order they were submitted:
+		    for (message M : batch){
+			if (M == message.STOP){
+			    stop = true;
+			    continue;
+			}
+			int A[] = symbols.get(M.stream);
+			int n = (A == null) ? 0 : lengths.get(M.stream);
+			if (A == null) A = M.symbols;
+			else{
+			    if (n + M.symbols.length > A.length) A = Arrays.copyOf(A, Math.max(2 * A.length, n + M.symbols.length));
+			    System.arraycopy(M.symbols, 0, A, n, M.symbols.length);
+			}
+			symbols.put(M.stream, A);
+			lengths.put(M.stream, n + M.symbols.length);
+		    }
+		    int total = 0;
+		    for (Map.Entry<Object, int[]> E : symbols.entrySet()){
+			suffixTree T = trees.get(E.getKey());
+			if (T == null){
+			    T = new suffixTree(K, engine);
+			    T.enableSnapshots();
+			    trees.put(E.getKey(), T);
+			}
+			int n = lengths.get(E.getKey());
+			T.add(E.getValue(), 0, n);
+			total += n;
+		    }
+
+		    long now = System.nanoTime();
+		    long latency = addLatency, longest = maxAddLatency, n = nrOfMessages;
+		    for (message M : batch){
+			if (M == message.STOP) continue;
+			latency += now - M.submitted;
+			longest = Math.max(longest, now - M.submitted);
+			n++;
+		    }
+		    addLatency = latency;
+		    maxAddLatency = longest;
+		    nrOfMessages = n;
+		    queued.addAndGet(-total);
+		    batch.clear();
+		    symbols.clear();
+		    lengths.clear();
+		    synchronized (this){
+			added += total;
+			notifyAll();
+		    }
+		}
+	    } catch (InterruptedException IE){
+		failure = IE;
+	    } catch (RuntimeException | Error E){  //such as running out of store
+		failure = E;
+	    }
+	    synchronized (this){
+		stopped = true;
+		notifyAll();
+	    }
+	}
+    }
+}
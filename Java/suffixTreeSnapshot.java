@@ -0,0 +1,309 @@
+/*
+  Program name: suffixTreeSnapshot.java. Is a class representing a snapshot of a suffix tree being built.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `suffixTreeSnapshot.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+   This class represents a snapshot of a suffix tree which another thread goes on
+   building. It is made by the method getSnapshot in the class suffixTree once the
+   snapshots are enabled by the method enableSnapshots, and it holds the symbols
+   which had been published when it was made. Searching it gives the same results
+   as searching the suffix tree at that time, however many symbols have been added
+   since.
+   <p>
+   The snapshot does not copy the suffix tree. It reads the vertices in place while
+   they are being changed, by the methods of the class Vertex made for that, which the
+   views of a vertex arena follow by the stamps of the arena, so a search only reads
+   again when the vertex it reads is being changed, and it only reads symbols before
+   the published number of symbols:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Edges</font></td><td>A pattern is followed along the first
+       instances of its symbols, so a pattern which needs a symbol after the published
+       ones has no instance in the snapshot. An edge split since the snapshot was made
+       holds the same symbols as before</td></tr>
+   <tr><td><font size="-1">Leaves</font></td><td>Only the leaves of the suffixes which
+       ended at a leaf when the snapshot was made are reported, and only when the
+       instance ends before the published number of symbols</td></tr>
+   <tr><td><font size="-1">Contexts</font></td><td>The other suffixes were contexts,
+       and their instances are found from the instances beginning at a leaf and
+       the earlier instance of the longest context, as done by the suffix
+       tree</td></tr>
+   </table>
+   <p>
+   A snapshot keeps no state of its own while it is searched, so it may be searched
+   by several threads at once. The stacks of the depth first search below a pattern
+   are kept by every thread for its next search, so a search of a snapshot of the
+   vertex engines allocates nothing.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class suffixTreeSnapshot{
+
+    private int K;
+    private Vertex root;
+    private symbolList L;
+    private int n;           //the number of symbols published
+    private int nrOfLeaves;  //the number of suffixes ending at a leaf, which are the first ones
+    private int x0;          //the index of the earlier instance of the longest context
+
+    private static final ThreadLocal<searchStacks> stacks = new ThreadLocal<searchStacks>();  //not in use by a search
+
+    /**
+       Creates a snapshot of a suffix tree.
+
+       @param K          The number of symbols in the alphabet
+       @param root       The root vertex of the suffix tree
+       @param L          The symbol list of the suffix tree
+       @param n          The number of symbols published
+       @param nrOfLeaves The number of suffixes which ended at a leaf when the
+                         symbols were published
+       @param x0         The index of the first symbol of the earlier instance of
+                         the longest context when the symbols were published
+     */
+    suffixTreeSnapshot(int K, Vertex root, symbolList L, int n, int nrOfLeaves, int x0){
+	this.K          = K;
+	this.root       = root;
+	this.L          = L;
+	this.n          = n;
+	this.nrOfLeaves = nrOfLeaves;
+	this.x0         = x0;
+    }
+
+    /**
+       Gets the number of symbols in the snapshot.
+
+       @return The number of symbols published when the snapshot was made
+     */
+    public int getNrOfSymbols(){
+	return n;
+    }
+
+    /**
+       Gets a symbol of the snapshot.
+
+       @param  i The index of the symbol, which must be smaller than the number
+                 of symbols in the snapshot
+       @return   The symbol at index i
+     */
+    public int getSymbol(int i){
+	if ((i < 0) || (i >= n)) throw new IndexOutOfBoundsException("Index " + i + " is outside the snapshot of " + n + " symbols");
+	return L.read(i);
+    }
+
+    /**
+       Returns a boolean value which is true if the pattern occurs in the snapshot
+       and which is false otherwise. It takes time proportional to the length of
+       the pattern.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  A boolean value which is true if the pattern occurs in the snapshot
+                and which is false otherwise
+     */
+    public boolean contains(int P[]){
+	searchStacks S = takeStacks();
+	boolean found = locate(P, S) != NOT_FOUND;
+	S.vertex = null;
+	stacks.set(S);
+	return found;
+    }
+
+    /**
+       Finds the first instance of a pattern in the snapshot.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The index of the first symbol of the first instance of the
+                pattern, or -1 if the pattern does not occur
+     */
+    public int first(int P[]){
+	searchStacks S = takeStacks();
+	long l = locate(P, S);
+	S.vertex = null;
+	stacks.set(S);
+	return (l == NOT_FOUND) ? -1 : first(l);
+    }
+
+    /**
+       Counts the instances of a pattern in the snapshot. The instances are visited,
+       as the leaf counts of the vertices are not kept up to date while symbols are
+       added.
+
+       @param P The pattern, which is a non empty sequence of symbols
+       @return  The number of instances of the pattern
+     */
+    public int count(int P[]){
+	searchStacks S = takeStacks();
+	long l = locate(P, S);
+	int count = (l == NOT_FOUND) ? 0 : visitOccurrences(l, S, P.length, null);
+	stacks.set(S);
+	return count;
+    }
+
+    /**
+       Reports every instance of a pattern in the snapshot to an action, in no
+       particular order.
+
+       @param P      The pattern, which is a non empty sequence of symbols
+       @param action The action which is given the index of the first symbol of
+                     every instance of the pattern
+     */
+    public void forEachOccurrence(int P[], IntConsumer action){
+	searchStacks S = takeStacks();
+	long l = locate(P, S);
+	if (l != NOT_FOUND) visitOccurrences(l, S, P.length, action);
+	stacks.set(S);
+    }
+
+    /*
+       The stacks of the depth first search below a pattern, the directions of the
+       vertex being visited, and the vertex which the edge found by locate leaves.
+       A search made from the action of another search makes stacks of its own.
+     */
+    private static final class searchStacks{
+	Vertex vertex;
+	Vertex vertices[] = new Vertex[64];
+	int directions[] = new int[16];
+    }
+
+    /*
+       Takes the stacks of the thread, which are put back by stacks.set when the
+       search is done.
+     */
+    private static searchStacks takeStacks(){
+	searchStacks S = stacks.get();
+	if (S == null) return new searchStacks();  //the first search of the thread, or a search from an action
+	stacks.set(null);
+	return S;
+    }
+
+    /*
+       The edge on which a pattern ends is packed into a long, the locus. The high
+       half is the direction of the edge from the vertex it leaves, and the low half
+       is the index of the first symbol of the first instance of the pattern.
+     */
+    private static final long NOT_FOUND = locus(-1, 0);
+
+    private static long locus(int direction, int first){
+	return ((long)direction << 32) | first;
+    }
+
+    private static int direction(long l){
+	return (int)(l >> 32);
+    }
+
+    private static int first(long l){
+	return (int)l;
+    }
+
+    /*
+       Finds the edge on which the pattern ends when it is read from the root, and
+       puts the vertex it leaves into the stacks. It returns NOT_FOUND if the pattern
+       does not occur in the snapshot.
+     */
+    private long locate(int P[], searchStacks S){
+	int m = P.length;
+	if ((m == 0) || (m > n)) return NOT_FOUND;
+	int i = 0;  //the number of symbols of the pattern read
+
+	Vertex V = root;
+	while (true){
+	    int a = normalize(P[i]);
+	    int indexFrom = V.readIndexFrom(a);
+	    if (indexFrom < 0) return NOT_FOUND;
+	    Vertex child = V.readChild(a);
+	    int indexTo = (child == null) ? Integer.MAX_VALUE : child.readIndexTo();
+	    for (int j=indexFrom; (j<=indexTo) && (i<m); j++, i++){
+		if (j >= n) return NOT_FOUND;  //the first instance ends after the snapshot
+		if (L.read(j) != normalize(P[i])) return NOT_FOUND;
+	    }
+	    if (i == m){
+		S.vertex = V;
+		return locus(a, indexFrom - V.readDepth());
+	    }
+	    if (child == null) return NOT_FOUND;
+	    V = child;
+	}
+    }
+
+    /*
+       Visits the instances of the pattern of length m ending on the locus, and
+       reports the index of their first symbols to the action, unless it is null.
+       It returns the number of instances. The stacks are the ones the locus was
+       found with, and they are not in use by another search, so an action may
+       search again.
+     */
+    private int visitOccurrences(long l, searchStacks S, int m, IntConsumer action){
+	int count = 0;
+	Vertex vertex = S.vertex;
+	S.vertex = null;
+	Vertex child = vertex.readChild(direction(l));
+	if (child == null) return visitLeaf(vertex.readIndexFrom(direction(l)) - vertex.readDepth(), m, action);
+
+	/* The leaves below the locus, found depth first */
+	Vertex stack[] = S.vertices;
+	stack[0] = child;
+	int top = 1;
+	while (top > 0){
+	    Vertex V = stack[--top];
+	    stack[top] = null;
+	    int nrOfChildren;
+	    while ((nrOfChildren = V.readDirections(S.directions)) < 0) S.directions = new int[-nrOfChildren];
+	    int directions[] = S.directions;
+	    for (int i=0; i<nrOfChildren; i++){
+		int k = directions[i];
+		child = V.readChild(k);
+		if (child == null){
+		    count += visitLeaf(V.readIndexFrom(k) - V.readDepth(), m, action);
+		    continue;
+		}
+		if (top == stack.length) stack = S.vertices = Arrays.copyOf(stack, 2 * top);
+		stack[top++] = child;
+	    }
+	}
+	return count;
+    }
+
+    /*
+       Reports the instance beginning at the suffix of a leaf, unless the suffix
+       was a context when the snapshot was made or the instance ends after the
+       snapshot, and the instances which are contexts found from it. It returns
+       the number of instances reported.
+     */
+    private int visitLeaf(int s, int m, IntConsumer action){
+	if ((s >= nrOfLeaves) || (s + m > n)) return 0;
+	if (action != null) action.accept(s);
+	return 1 + suffixTree.visitContexts(s, m, n, nrOfLeaves, x0, action);
+    }
+
+    /*
+       Maps a symbol into the alphabet the same way as the method add in the class
+       suffixTree does.
+     */
+    private int normalize(int a){
+	if (a < 0) a = -a;
+	if (a >= K) a = a % K;
+	return a;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+  Program name: symbolList.java. Is a class representing the symbol list.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `symbolList.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   This class represents the symbol list from which the suffix tree is created. The symbols
+   are stored unboxed in primitive arrays, which are allocated in chunks of a fixed size as
+   the list grows, so symbols are never copied when more store is needed.
+   <p>
+   There are three variants, storing each symbol in a byte, a short or an int. The method
+   create chooses the smallest variant able to hold every symbol of an alphabet.
+   </p>
+
+   @author Tommy Petersen
+ */
+public abstract class symbolList{
+
+    protected static final int CHUNK_SHIFT = 16;
+    protected static final int CHUNK_SIZE  = 1 << CHUNK_SHIFT;  //number of symbols in a chunk
+    protected static final int CHUNK_MASK  = CHUNK_SIZE - 1;
+
+    protected int size;
+    private List<Integer> list;
+
+    /**
+       Creates a new empty symbol list able to hold the symbols of an alphabet
+       containing K symbols.
+
+       @param K The number of symbols in the alphabet
+       @return  A new empty symbol list storing each symbol in a byte if K is at
+                most 256, in a short if K is at most 65536, and in an int otherwise
+     */
+    public static symbolList create(int K){
+	if (K <= 256) return new byteSymbolList();
+	if (K <= 65536) return new shortSymbolList();
+	return new intSymbolList();
+    }
+
+    /**
+       Gets the i'th symbol.
+
+       @param i Index into the symbol list
+       @return  The i'th symbol
+     */
+    public abstract int get(int i);
+
+    /**
+       Gets the i'th symbol in a thread other than the one adding the symbols. The
+       symbol must have been published to the thread, as done by the snapshots of
+       the suffix tree, and the chunks holding it are then found even if the chunk
+       directory is being grown.
+
+       @param i Index into the symbol list
+       @return  The i'th symbol
+     */
+    int read(int i){
+	return get(i);
+    }
+
+    /**
+       Adds a symbol to the end of the symbol list.
+
+       @param a The symbol to be added
+     */
+    protected abstract void add(int a);
+
+    /**
+       Gets the number of symbols in the symbol list.
+
+       @return The number of symbols in the symbol list
+     */
+    public int size(){
+	return size;
+    }
+
+    /**
+       Returns a read only view of the symbols from index indexFrom to index indexTo,
+       both included. No symbols are copied.
+
+       @param indexFrom Index of the first symbol in the view
+       @param indexTo   Index of the last symbol in the view
+       @return          A read only view of the symbols from indexFrom to indexTo
+     */
+    public symbolView view(int indexFrom, int indexTo){
+	return new symbolView(this, indexFrom, indexTo - indexFrom + 1);
+    }
+
+    /**
+       Returns a read only list of boxed integers backed by this symbol list. It is
+       provided for callers of the methods returning the symbol list as a list of
+       integers, and it follows this symbol list as it grows.
+
+       @return A read only list of integers backed by this symbol list
+     */
+    public List<Integer> asList(){
+	if (list == null){
+	    list = new AbstractList<Integer>(){
+		    public Integer get(int i){
+			if ((i < 0) || (i >= size)) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+			return Integer.valueOf(symbolList.this.get(i));
+		    }
+
+		    public int size(){
+			return size;
+		    }
+		};
+	}
+	return list;
+    }
+
+    /*
+       Returns the length of a chunk directory able to hold the chunk with
+       the given number, growing the given length by doubling.
+     */
+    protected static int directoryLength(int length, int chunk){
+	while (length <= chunk) length = (length == 0) ? 1 : length * 2;
+	return length;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+  Program name: symbolView.java. Is a class representing a read only view of a part of the symbol list.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `symbolView.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   A read only view of consecutive symbols in the symbol list. The view refers
+   to the symbol list itself, so creating it copies no symbols.
+
+   @author Tommy Petersen
+ */
+public class symbolView{
+
+    private symbolList L;
+    private int indexFrom, length;
+
+    /**
+       Creates a view of consecutive symbols in a symbol list.
+
+       @param L         The symbol list
+       @param indexFrom Index of the first symbol in the view
+       @param length    The number of symbols in the view
+     */
+    protected symbolView(symbolList L, int indexFrom, int length){
+	this.L         = L;
+	this.indexFrom = indexFrom;
+	this.length    = (length < 0) ? 0 : length;
+    }
+
+    /**
+       Gets the i'th symbol of this view.
+
+       @param i Index into this view
+       @return  The i'th symbol of this view
+     */
+    public int get(int i){
+	if ((i < 0) || (i >= length)) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + length);
+	return L.get(indexFrom + i);
+    }
+
+    /**
+       Gets the number of symbols in this view.
+
+       @return The number of symbols in this view
+     */
+    public int size(){
+	return length;
+    }
+
+    /**
+       Gets the index in the symbol list of the first symbol in this view.
+
+       @return The index in the symbol list of the first symbol in this view
+     */
+    public int getIndexFrom(){
+	return indexFrom;
+    }
+
+    /**
+       Copies the symbols of this view into a new array.
+
+       @return A new array containing the symbols of this view
+     */
+    public int[] toArray(){
+	int A[] = new int[length];
+	for (int i=0; i<length; i++) A[i] = L.get(indexFrom + i);
+	return A;
+    }
+
+    public String toString(){
+	StringBuilder B = new StringBuilder("[");
+	for (int i=0; i<length; i++){
+	    if (i > 0) B.append(", ");
+	    B.append(L.get(indexFrom + i));
+	}
+	return B.append("]").toString();
+    }
+}
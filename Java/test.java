@@ -1,6 +1,14 @@
 package SuffixTree.Java;
 
+import java.io.*;
+import java.lang.management.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
 class test{
 
@@ -42,6 +50,869 @@ class test{
 	CS3 = T3.add(a);
 	traverseCS(T3, CS3);
 	System.out.println("Done!");
+
+	if (runChecks() > 0) System.exit(1);
+    }
+
+    /*
+      Runs every check and prints the number of failures, which it returns. It is
+      also run by the build, in the test phase.
+    */
+    static int runChecks() throws Exception{
+	int failures = 0;
+	failures += checkContexts();
+	failures += checkEngines();
+	failures += checkSearch();
+	failures += checkQueryAllocation();
+	failures += checkSuffixArray();
+	failures += checkBulkAdd();
+	failures += checkParallelBuild();
+	failures += checkCheckpoint();
+	failures += checkLargeAlphabet();
+	failures += checkMappedFile();
+	failures += checkManager();
+	failures += checkFrozen();
+	failures += checkWindow();
+	failures += checkExtensions();
+	failures += checkLongContexts();
+	failures += checkConcurrentSnapshots();
+	failures += checkCountedInstances();
+	failures += checkFMIndex();
+	failures += checkMetrics();
+	System.out.println("\nNumber of failed checks: " + failures);
+	return failures;
+    }
+
+    private static int[] randomSymbols(Random R, int K, int n){
+	int A[] = new int[n];
+	int period = 1 + R.nextInt(4);
+	boolean periodic = R.nextInt(3) == 0;
+	for (int i=0; i<n; i++) A[i] = periodic ? (i % period) % K : R.nextInt(K);
+	return A;
+    }
+
+    private static int[] randomPattern(Random R, int A[], int n, int K){
+	int P[] = new int[1 + R.nextInt(4)];
+	if ((n >= P.length) && R.nextBoolean()){  //a pattern which occurs
+	    int o = R.nextInt(n - P.length + 1);
+	    for (int i=0; i<P.length; i++) P[i] = A[o + i];
+	} else{
+	    for (int i=0; i<P.length; i++) P[i] = R.nextInt(K);
+	}
+	return P;
+    }
+
+    private static ArrayList<Integer> startPoints(int A[], int n, int P[]){
+	ArrayList<Integer> S = new ArrayList<Integer>();
+	for (int o=0; o+P.length<=n; o++){
+	    int i = 0;
+	    while ((i < P.length) && (A[o + i] == P[i])) i++;
+	    if (i == P.length) S.add(o);
+	}
+	return S;
+    }
+
+    private static ArrayList<Integer> endPoints(int A[], int n, int P[]){
+	ArrayList<Integer> E = new ArrayList<Integer>();
+	for (int o : startPoints(A, n, P)) E.add(o + P.length - 1);
+	return E;
+    }
+
+    private static ArrayList<Integer> sorted(List<Integer> A){
+	ArrayList<Integer> B = new ArrayList<Integer>(A);
+	Collections.sort(B);
+	return B;
+    }
+
+    private static int[] suffix(int A[], int n, int length){
+	return Arrays.copyOfRange(A, n - length, n);
+    }
+
+    /*
+      The contexts are the suffixes which also occur earlier, and their instances are
+      the ones starting at the suffixes which end at a leaf, so every engine must
+      find the same as a brute force search of those suffixes.
+    */
+    private static int checkContexts(){
+	Random R = new Random(1);
+	int failures = 0;
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<30; t++){
+		int K = 2 + R.nextInt(4);
+		int A[] = randomSymbols(R, K, 1 + R.nextInt(40));
+		suffixTree T = new suffixTree(K, engine);
+		for (int n=1; n<=A.length; n++){
+		    contextSet CS = T.add(A[n - 1]);
+		    int size = 1;
+		    while ((size < n) && (startPoints(A, n, suffix(A, n, size)).size() > 1)) size++;
+		    if (CS.size() != size) failures++;
+		    for (int i=1; i<Math.min(size, CS.size()); i++){
+			Context C = CS.get(i);
+			ArrayList<Integer> symbols = new ArrayList<Integer>();
+			for (int a : suffix(A, n, i)) symbols.add(a);
+			if ((C.getSize() != i) || !C.getSymbols().equals(symbols)) failures++;
+			if (!sorted(C.getInstanceEndPoints()).equals(endPoints(A, n - size + i, suffix(A, n, i)))) failures++;
+		    }
+		}
+	    }
+	}
+	System.out.println("Checking the contexts of every engine: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      Prints the trees of a suffix tree into a string instead of onto sysout.
+    */
+    private static String printed(suffixTree T){
+	PrintStream out = System.out;
+	ByteArrayOutputStream B = new ByteArrayOutputStream();
+	System.setOut(new PrintStream(B, true));
+	try{
+	    T.printIndexTree();
+	    T.printCodeTree();
+	} finally{
+	    System.setOut(out);
+	}
+	return B.toString();
+    }
+
+    /*
+      Every engine builds the same suffix tree, so the trees printed from the root
+      are identical after every symbol.
+    */
+    private static int checkEngines(){
+	Random R = new Random(15);
+	int failures = 0;
+	for (int t=0; t<30; t++){
+	    int K = 2 + R.nextInt(4);
+	    int A[] = randomSymbols(R, K, 1 + R.nextInt(40));
+	    suffixTree T[] = new suffixTree[3];
+	    for (int engine=0; engine<3; engine++) T[engine] = new suffixTree(K, engine);
+	    for (int n=1; n<=A.length; n++){
+		String trees[] = new String[3];
+		for (int engine=0; engine<3; engine++){
+		    T[engine].add(A[n - 1]);
+		    trees[engine] = printed(T[engine]);
+		}
+		if (!trees[1].equals(trees[0]) || !trees[2].equals(trees[0])) failures++;
+	    }
+	    for (int engine=0; engine<3; engine++) failures += checkChildren(T[engine].getRoot(), K);
+	}
+	System.out.println("Checking the trees printed for every engine: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      getChild gives a vertex for every edge, a leaf vertex for the edge to a leaf,
+      while getInternalChild gives null for it.
+    */
+    private static int checkChildren(Vertex V, int K){
+	int failures = 0;
+	for (int k=0; k<K; k++){
+	    Vertex child = V.getChild(k);
+	    Vertex internal = V.getInternalChild(k);
+	    if (!V.hasChild(k)){
+		if ((child != null) || (internal != null)) failures++;
+	    } else if (V.isLeafChild(k)){
+		if ((child == null) || !child.isLeaf() || (internal != null)) failures++;
+	    } else{
+		if ((child == null) || child.isLeaf() || !child.equals(internal)) failures++;
+		else failures += checkChildren(internal, K);
+	    }
+	}
+	return failures;
+    }
+
+    private static int compareSuffixes(int A[], int i, int j){
+	for (; (i < A.length) && (j < A.length); i++, j++){
+	    if (A[i] != A[j]) return Integer.compare(A[i], A[j]);
+	}
+	return Integer.compare(A.length - i, A.length - j);  //a prefix is ordered first
+    }
+
+    private static int check(suffixArray SA, int A[]){
+	Integer order[] = new Integer[A.length];
+	for (int i=0; i<A.length; i++) order[i] = i;
+	Arrays.sort(order, (x, y) -> compareSuffixes(A, x, y));
+	int failures = 0;
+	for (int r=0; r<A.length; r++){
+	    if (SA.getSuffixArray()[r] != order[r]) failures++;
+	    int lcp = 0;
+	    if (r > 0){
+		while ((order[r] + lcp < A.length) && (order[r - 1] + lcp < A.length) && (A[order[r] + lcp] == A[order[r - 1] + lcp])) lcp++;
+	    }
+	    if (SA.getLCP()[r] != lcp) failures++;
+	}
+	return failures;
+    }
+
+    /*
+      Adding an array or a stream of symbols must give the same suffix tree as adding
+      them one at a time.
+    */
+    private static int checkBulkAdd(){
+	Random R = new Random(4);
+	int failures = 0;
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<30; t++){
+		int K = 2 + R.nextInt(4);
+		int A[] = randomSymbols(R, K, 1 + R.nextInt(60));
+		suffixTree T1 = new suffixTree(K, engine);
+		suffixTree T2 = new suffixTree(K, engine);
+		contextSet CS1 = null;
+		for (int a : A) CS1 = T1.add(a);
+		int middle = R.nextInt(A.length + 1);
+		T2.add(A, 0, middle);
+		contextSet CS2 = T2.add(Arrays.stream(A, middle, A.length));
+		if ((CS1.size() != CS2.size()) || !T1.getL().equals(T2.getL())) failures++;
+		if (!Arrays.equals(T1.getSuffixArray().getSuffixArray(), T2.getSuffixArray().getSuffixArray())) failures++;
+	    }
+	}
+	System.out.println("Checking bulk adds against adding one symbol at a time: " + failures + " failures");
+	return failures;
+    }
+
+
+    /*
+      A suffix tree resumed from a checkpoint must go on as the one checkpointed.
+    */
+    private static int checkCheckpoint() throws IOException{
+	Random R = new Random(5);
+	int failures = 0;
+	Path file = Files.createTempFile("checkpoint", ".bin");
+	try{
+	    for (int t=0; t<30; t++){
+		int K = 2 + R.nextInt(4);
+		int A[] = randomSymbols(R, K, 2 + R.nextInt(60));
+		int middle = 1 + R.nextInt(A.length - 1);
+		suffixTree T1 = new suffixTree(K, suffixTree.ARENA_ENGINE);
+		T1.add(A, 0, middle);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+		    T1.checkpoint(channel);
+		}
+		suffixTree T2;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+		    T2 = new suffixTree(channel);
+		}
+		contextSet CS1 = T1.add(A, middle, A.length - middle);
+		contextSet CS2 = T2.add(A, middle, A.length - middle);
+		if ((CS1.size() != CS2.size()) || !T1.getL().equals(T2.getL())) failures++;
+		failures += check(T2.getSuffixArray(), A);
+	    }
+	} finally{
+	    Files.delete(file);
+	}
+	System.out.println("Checking suffix trees resumed from checkpoints: " + failures + " failures");
+	return failures;
+    }
+
+
+    /*
+      The suffix array and the LCP array must be those of the sorted suffixes.
+    */
+    private static int checkSuffixArray(){
+	Random R = new Random(3);
+	int failures = 0;
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<30; t++){
+		int K = 2 + R.nextInt(4);
+		int A[] = randomSymbols(R, K, 1 + R.nextInt(60));
+		suffixTree T = new suffixTree(K, engine);
+		T.add(A, 0, A.length);
+		failures += check(T.getSuffixArray(), A);
+	    }
+	}
+	System.out.println("Checking the suffix arrays against sorted suffixes: " + failures + " failures");
+	return failures;
+    }
+
+
+    /*
+      The queries are checked against a brute force search, and again from the action
+      of forEachOccurrence, which must not disturb the search it is called from.
+    */
+    private static int checkSearch(){
+	Random R = new Random(2);
+	int failures = 0;
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<30; t++){
+		int K = 2 + R.nextInt(4);
+		int A[] = randomSymbols(R, K, 1 + R.nextInt(60));
+		suffixTree T = new suffixTree(K, engine);
+		T.add(A, 0, A.length);
+		for (int q=0; q<20; q++){
+		    int P[] = randomPattern(R, A, A.length, K);
+		    int Q[] = randomPattern(R, A, A.length, K);
+		    ArrayList<Integer> S = startPoints(A, A.length, P);
+		    int nested = startPoints(A, A.length, Q).size();
+		    ArrayList<Integer> found = new ArrayList<Integer>();
+		    int wrong[] = new int[1];
+		    T.forEachOccurrence(P, s -> {
+			    found.add(s);
+			    if (T.count(Q) != nested) wrong[0]++;
+			});
+		    if ((T.contains(P) != !S.isEmpty()) || (T.count(P) != S.size())) failures++;
+		    if (!sorted(found).equals(S) || (wrong[0] > 0)) failures++;
+		    int first = T.first(P);
+		    if (S.isEmpty() ? (first != -1) : !S.contains(first)) failures++;
+		}
+	    }
+	}
+	System.out.println("Checking contains, count, first and forEachOccurrence: " + failures + " failures");
+	return failures;
+    }
+
+
+    /*
+      A thread takes snapshots and searches them while the main thread adds the
+      symbols, so every engine is read while its vertices, child tables and chunk
+      directory change. Every snapshot must hold the instances in its symbols, and a
+      search of the arena engine must not wait for a change of a vertex it does not
+      read.
+    */
+    private static int checkConcurrentSnapshots() throws InterruptedException{
+	Random R = new Random(22);
+	int failures = 0;
+	int errors[] = new int[1];
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<4; t++){
+		int K = (t == 3) ? 300 : 2 + R.nextInt(3);
+		int period[] = randomSymbols(R, K, 1 + R.nextInt(20));
+		int A[] = new int[(engine == suffixTree.CONTEXT_SET_ENGINE) ? 20000 : 150000];
+		for (int i=0; i<A.length; i++) A[i] = (R.nextInt(t + 2) == 0) ? R.nextInt(K) : period[i % period.length];
+		suffixTree T = new suffixTree(K, engine);
+		try{
+		    T.getSnapshot();
+		    failures++;
+		} catch (IllegalStateException ISE){
+		}
+		T.enableSnapshots();
+		AtomicBoolean done = new AtomicBoolean();
+		long seed = R.nextLong();
+		Thread reader = new Thread(() -> {
+			Random Q = new Random(seed);
+			try{
+			    while (!done.get()){
+				suffixTreeSnapshot S = T.getSnapshot();
+				int n = S.getNrOfSymbols();
+				if (n == 0) continue;
+				int P[] = new int[1 + Q.nextInt(Math.min(n, 12))];
+				int o = Q.nextInt(n - P.length + 1);
+				for (int i=0; i<P.length; i++) P[i] = (Q.nextInt(8) == 0) ? Q.nextInt(K) : A[o + i];
+				ArrayList<Integer> O = startPoints(A, n, P);
+				ArrayList<Integer> found = new ArrayList<Integer>();
+				S.forEachOccurrence(P, found::add);
+				if ((S.count(P) != O.size()) || !sorted(found).equals(O)) errors[0]++;
+			    }
+			} catch (RuntimeException RE){
+			    errors[0]++;
+			}
+		    });
+		reader.start();
+		for (int i=0; i<A.length; i+=16) T.add(A, i, Math.min(16, A.length - i));
+		done.set(true);
+		reader.join();
+		failures += errors[0];
+		errors[0] = 0;
+	    }
+	}
+
+	//a search which only reads the root must not wait for a change of a vertex of another stripe:
+	int A[] = randomSymbols(R, 4, 1000);
+	suffixTree T = new suffixTree(4, suffixTree.ARENA_ENGINE);
+	T.enableSnapshots();
+	T.add(A, 0, A.length);
+	suffixTreeSnapshot S = T.getSnapshot();
+	boolean found[] = new boolean[1];
+	Thread reader = new Thread(() -> found[0] = S.contains(new int[]{A[0]}));
+	reader.setDaemon(true);
+	T.getArena().beginChange(1);
+	reader.start();
+	reader.join(10000);
+	if (reader.isAlive() || !found[0]) failures++;
+	T.getArena().endChange(1);
+	System.out.println("Checking snapshots searched while symbols are added: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      With a slow add threshold of 0 every call of add is slow and is recorded as a
+      SuffixTree.SlowAdd event. The codewords of every symbol are its new leaves,
+      which are the suffixes that stop being contexts, and every engine counts the
+      same codewords, vertices and edges split.
+    */
+    private static int checkMetrics() throws IOException{
+	Random R = new Random(25);
+	int failures = 0;
+	Path file = Files.createTempFile("metrics", ".jfr");
+	try{
+	    for (int t=0; t<10; t++){
+		int K = 2 + R.nextInt(3);
+		int A[] = randomSymbols(R, K, 1 + R.nextInt(300));
+		int calls = 0;
+		long expected[] = new long[33];  //the histogram of the leaves made by every symbol
+		suffixTree U = new suffixTree(K);
+		for (int i=0, before=0; i<A.length; i++){
+		    int after = i + 2 - U.add(A[i]).size();
+		    expected[64 - Long.numberOfLeadingZeros(after - before)]++;
+		    before = after;
+		}
+		long results[][] = new long[3][];
+		int split = (t % 2 == 0) ? 0 : R.nextInt(A.length);
+		for (int engine=0; engine<3; engine++){
+		    suffixTree T = new suffixTree(K, engine);
+		    contextSet CS = T.add(A, 0, split);
+		    int leaves = split + 1 - CS.size();
+		    treeMetrics M = T.enableMetrics(0);
+		    try (jdk.jfr.Recording recording = new jdk.jfr.Recording()){
+			recording.enable("SuffixTree.SlowAdd");
+			recording.start();
+			calls = 0;
+			for (int i=split; i<A.length; i+=7, calls++) T.add(A, i, Math.min(7, A.length - i));
+			recording.stop();
+			recording.dump(file);
+		    }
+		    int events = 0;
+		    for (jdk.jfr.consumer.RecordedEvent E : jdk.jfr.consumer.RecordingFile.readAllEvents(file)){
+			if (E.getEventType().getName().equals("SuffixTree.SlowAdd")) events++;
+		    }
+		    if ((events != calls) || (M.getNrOfAddCalls() != calls) || (M.getNrOfSlowAdds() != calls))failures++;
+		    if (M.getNrOfSymbolsAdded() != A.length - split) failures++;
+		    if (M.getNrOfLeaves() != A.length + 1 - CS.size()) failures++;
+
+		    long codewords[] = M.getCodewords();
+		    long total = 0;
+		    for (long c : codewords) total += c;
+		    if (total != A.length - split) failures++;
+		    if ((split == 0) && !Arrays.equals(codewords, expected)) failures++;
+
+		    int vertices = 1;
+		    ArrayDeque<Vertex> stack = new ArrayDeque<Vertex>();
+		    stack.push(T.getRoot());
+		    while (!stack.isEmpty()){
+			Vertex V = stack.pop();
+			for (int k=V.getFirstDirection(); k!=-1; k=V.getNextDirection(k)){
+			    if (V.isLeafChild(k)) continue;
+			    vertices++;
+			    stack.push(V.getInternalChild(k));
+			}
+		    }
+		    if (M.getNrOfVertices() != vertices) failures++;
+		    results[engine] = new long[]{M.getNrOfVertices(), M.getNrOfEdgesSplit(), M.getNrOfLeaves() - leaves};
+		}
+		if (!Arrays.equals(results[0], results[1]) || !Arrays.equals(results[0], results[2])) failures++;
+	    }
+	} finally{
+	    Files.deleteIfExists(file);
+	}
+	System.out.println("Checking the metrics and slow add events: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      A suffix tree built on a fork/join pool is the same as the one built by adding
+      the symbols one at a time, for every engine and number of threads, and it goes
+      on the same way when more symbols are added to it.
+    */
+    private static int checkParallelBuild(){
+	Random R = new Random(20);
+	int failures = 0;
+	ForkJoinPool pools[] = {new ForkJoinPool(1), new ForkJoinPool(4)};
+	try{
+	    for (int t=0; t<40; t++){
+		int K = (t % 4 == 3) ? 2 + R.nextInt(300) : 2 + R.nextInt(4);
+		int A[] = randomSymbols(R, K, R.nextInt(2000));
+		int more[] = randomSymbols(R, K, 1 + R.nextInt(50));
+		for (int engine=0; engine<3; engine++){
+		    suffixTree S = new suffixTree(K, engine);
+		    S.add(A, 0, A.length);
+		    String expected = printed(S);
+		    S.add(more, 0, more.length);
+		    String expectedMore = printed(S);
+		    for (ForkJoinPool pool : pools){
+			suffixTree P = new suffixTree(K, engine, A, 0, A.length, pool);
+			if (!printed(P).equals(expected)) failures++;
+			P.add(more, 0, more.length);
+			if (!printed(P).equals(expectedMore)) failures++;
+		    }
+		}
+	    }
+	} finally{
+	    for (ForkJoinPool pool : pools) pool.shutdown();
+	}
+	System.out.println("Checking suffix trees built on fork/join pools: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      The searches keep their stacks from one search to the next, so once the stacks
+      have grown, contains, count, first and forEachOccurrence allocate nothing, and
+      neither do the searches of the snapshots of the vertex engines, whose vertices
+      are not views.
+    */
+    private static int checkQueryAllocation(){
+	com.sun.management.ThreadMXBean M = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	Random R = new Random(16);
+	int failures = 0;
+	long sum[] = new long[1];
+	IntConsumer action = s -> sum[0] += s;
+	for (int engine=0; engine<3; engine++){
+	    int K = 2 + engine;
+	    int A[] = randomSymbols(R, K, 20000);
+	    suffixTree T = new suffixTree(K, engine);
+	    T.enableSnapshots();
+	    T.add(A, 0, A.length);
+	    suffixTreeSnapshot S = T.getSnapshot();
+	    int P[][] = new int[200][];
+	    for (int q=0; q<P.length; q++) P[q] = randomPattern(R, A, A.length, K);
+	    for (int round=0; round<3; round++){  //the first round grows the stacks
+		long before = M.getCurrentThreadAllocatedBytes();
+		for (int q=0; q<P.length; q++){
+		    if (T.contains(P[q])) sum[0] += T.count(P[q]) + T.first(P[q]);
+		    T.forEachOccurrence(P[q], action);
+		    if (engine != suffixTree.ARENA_ENGINE){
+			if (S.contains(P[q])) sum[0] += S.count(P[q]) + S.first(P[q]);
+			S.forEachOccurrence(P[q], action);
+		    }
+		}
+		long allocated = M.getCurrentThreadAllocatedBytes() - before;
+		if ((round > 0) && (allocated != 0)) failures++;
+	    }
+	}
+	System.out.println("Checking that searches allocate nothing: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      The vertices of the arena with many children are found through child tables,
+      which are made again when a checkpoint is read.
+    */
+    private static int checkLargeAlphabet() throws IOException{
+	Random R = new Random(6);
+	int failures = 0;
+	Path file = Files.createTempFile("checkpoint", ".bin");
+	try{
+	    for (int K : new int[]{300, 65536}){
+		int A[] = new int[50000];
+		for (int i=0; i<A.length; i++) A[i] = (i % 3 == 0) ? R.nextInt(K) : R.nextInt(16);
+		suffixTree T1 = new suffixTree(K, suffixTree.SUFFIX_LINK_ENGINE);
+		suffixTree T2 = new suffixTree(K, suffixTree.ARENA_ENGINE);
+		T1.add(A, 0, A.length);
+		T2.add(A, 0, A.length / 2);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+		    T2.checkpoint(channel);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+		    T2 = new suffixTree(channel);
+		}
+		T2.add(A, A.length / 2, A.length - A.length / 2);
+		if (!Arrays.equals(T1.getSuffixArray().getSuffixArray(), T2.getSuffixArray().getSuffixArray())) failures++;
+		for (int q=0; q<1000; q++){
+		    int P[] = randomPattern(R, A, A.length, K);
+		    if ((T1.count(P) != T2.count(P)) || (T1.first(P) != T2.first(P))) failures++;
+		}
+	    }
+	} finally{
+	    Files.delete(file);
+	}
+	System.out.println("Checking the arena engine with large alphabets: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      The symbols added after a suffix tree has been built from a mapped file are
+      stored on the heap.
+    */
+    private static int checkMappedFile() throws IOException{
+	Random R = new Random(7);
+	int failures = 0;
+	Path file = Files.createTempFile("symbols", ".bin");
+	try{
+	    for (int engine=0; engine<3; engine++){
+		for (int t=0; t<20; t++){
+		    int K = 2 + R.nextInt(4);
+		    int A[] = randomSymbols(R, K, 2 + R.nextInt(60));
+		    int middle = 1 + R.nextInt(A.length - 1);
+		    byte bytes[] = new byte[middle];
+		    for (int i=0; i<middle; i++) bytes[i] = (byte) A[i];
+		    Files.write(file, bytes);
+		    suffixTree T1;
+		    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			T1 = new suffixTree(K, engine, channel, mappedSymbolList.U8, ByteOrder.LITTLE_ENDIAN);
+		    }
+		    suffixTree T2 = new suffixTree(K, engine);
+		    T2.add(A, 0, middle);
+		    contextSet CS1 = null, CS2 = null;
+		    for (int i=middle; i<A.length; i++){
+			CS1 = T1.add(A[i]);
+			CS2 = T2.add(A[i]);
+		    }
+		    if ((CS1.size() != CS2.size()) || !T1.getL().equals(T2.getL())) failures++;
+		    failures += check(T1.getSuffixArray(), A);
+		}
+	    }
+	} finally{
+	    Files.delete(file);
+	}
+	System.out.println("Checking symbols added to suffix trees of mapped files: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      Every symbol accepted by submit is added, even when the manager is closed
+      while another thread submits, and flush returns once it is closed.
+    */
+    private static int checkManager() throws Exception{
+	Random R = new Random(8);
+	int failures = 0;
+	for (int t=0; t<10; t++){
+	    int K = 2 + R.nextInt(4);
+	    suffixTreeManager<Integer> M = new suffixTreeManager<Integer>(K, t % 3, 1 + R.nextInt(3), 1 + R.nextInt(8));
+	    int A[][] = new int[5][];
+	    for (int i=0; i<A.length; i++){
+		A[i] = randomSymbols(R, K, 1 + R.nextInt(200));
+		for (int j=0; j<A[i].length; j+=7) M.submit(i, A[i], j, Math.min(7, A[i].length - j));
+	    }
+	    M.flush();
+	    for (int i=0; i<A.length; i++){
+		for (int q=0; q<10; q++){
+		    int P[] = randomPattern(R, A[i], A[i].length, K);
+		    if (M.count(i, P).get() != startPoints(A[i], A[i].length, P).size()) failures++;
+		}
+	    }
+
+	    int accepted[] = new int[1];
+	    Thread submitter = new Thread(() -> {
+		    try{
+			while (true){
+			    M.submit(-1, 0);
+			    accepted[0]++;
+			}
+		    } catch (IllegalStateException ISE){
+		    }
+		});
+	    submitter.start();
+	    Thread.sleep(1);
+	    M.close();
+	    submitter.join();
+	    M.flush();
+	    if (M.getSnapshot(-1).getNrOfSymbols() != accepted[0]) failures++;
+	    try{
+		M.submit(0, 0);
+		failures++;
+	    } catch (IllegalStateException ISE){
+	    }
+	    if (!M.count(0, new int[]{0}).isCompletedExceptionally()) failures++;
+	}
+	System.out.println("Checking the managers of many streams: " + failures + " failures");
+	return failures;
+    }
+
+    private static int checkFrozen() throws IOException{
+	Random R = new Random(9);
+	int failures = 0;
+	Path file = Files.createTempFile("tree", ".bin");
+	try{
+	    for (int engine=0; engine<3; engine++){
+		for (int t=0; t<20; t++){
+		    int K = 2 + R.nextInt(4);
+		    int A[] = randomSymbols(R, K, 1 + R.nextInt(60));
+		    suffixTree T = new suffixTree(K, engine);
+		    T.add(A, 0, A.length);
+		    try (OutputStream out = Files.newOutputStream(file)){
+			T.write(out, true);
+		    }
+		    mappedSuffixTree F1 = T.freeze();
+		    mappedSuffixTree F2;
+		    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			F2 = new mappedSuffixTree(channel);
+		    }
+		    for (mappedSuffixTree F : new mappedSuffixTree[]{F1, F2}){
+			for (int q=0; q<10; q++){
+			    int P[] = randomPattern(R, A, A.length, K);
+			    ArrayList<Integer> E = endPoints(A, A.length, P);
+			    int array[] = F.getInstanceEndPointArray(P);
+			    ArrayList<Integer> B = new ArrayList<Integer>();
+			    for (int e : array) B.add(e);
+			    if (!B.equals(E) || !F.getInstanceEndPoints(P).equals(E)) failures++;
+			    if ((F.count(P) != E.size()) || (F.contains(P) != !E.isEmpty())) failures++;
+			}
+		    }
+		}
+	    }
+	} finally{
+	    Files.delete(file);
+	}
+	System.out.println("Checking frozen and loaded suffix trees: " + failures + " failures");
+	return failures;
+    }
+
+    private static int checkWindow(){
+	Random R = new Random(10);
+	int failures = 0;
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<20; t++){
+		int K = 2 + R.nextInt(4);
+		int W = 1 + R.nextInt(20);
+		int A[] = randomSymbols(R, K, 1 + R.nextInt(100));
+		slidingWindowSuffixTree T = new slidingWindowSuffixTree(K, W, engine);
+		for (int n=1; n<=A.length; n++){
+		    T.add(A[n - 1]);
+		    int window[] = Arrays.copyOfRange(A, Math.max(0, n - W), n);
+		    if (T.size() != window.length) failures++;
+		    for (int q=0; q<3; q++){
+			int P[] = randomPattern(R, window, window.length, K);
+			ArrayList<Integer> E = endPoints(window, window.length, P);
+			if ((T.contains(P) != !E.isEmpty()) || !T.getInstanceEndPoints(P).equals(E)) failures++;
+		    }
+		}
+	    }
+	}
+	System.out.println("Checking sliding windows: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      A context kept from before some edges were split is compared with the
+      contexts of a later context set.
+    */
+    private static int checkExtensions(){
+	Random R = new Random(11);
+	int failures = 0;
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<30; t++){
+		int K = 2 + R.nextInt(3);
+		int A[] = randomSymbols(R, K, 2 + R.nextInt(60));
+		suffixTree T = new suffixTree(K, engine);
+		ArrayList<Context> kept = new ArrayList<Context>();
+		for (int n=1; n<=A.length; n++){
+		    contextSet CS = T.add(A[n - 1]);
+		    for (int i=1; i<CS.size(); i++){
+			Context C = CS.get(i);
+			if (R.nextInt(4) == 0) kept.add(new Context(C.getBaseVertex(), C.getDirection(), C.getOffset(), T.getSymbolList()));
+		    }
+		    for (int i=1; i<CS.size(); i++){
+			Context C = CS.get(i);
+			ArrayList<Integer> symbols = C.getSymbols();
+			for (Context D : kept){
+			    boolean extension = (C.getSize() == D.getSize() + 1) && symbols.subList(0, D.getSize()).equals(D.getSymbols());
+			    if (C.isExtensionOf(D) != extension) failures++;
+			}
+		    }
+		}
+	    }
+	}
+	System.out.println("Checking isExtensionOf across splits: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      Periodic symbol lists have long contexts with many instances, which the suffix
+      trees, their snapshots and their frozen copies find from the leaves.
+    */
+    private static int checkLongContexts(){
+	Random R = new Random(12);
+	int failures = 0;
+	for (int engine=0; engine<3; engine++){
+	    for (int t=0; t<30; t++){
+		int K = 2 + R.nextInt(3);
+		int period[] = randomSymbols(R, K, 1 + R.nextInt(6));
+		int A[] = new int[1 + R.nextInt(300)];
+		for (int i=0; i<A.length; i++) A[i] = (R.nextInt(50) == 0) ? R.nextInt(K) : period[i % period.length];
+		suffixTree T = new suffixTree(K, engine);
+		int half = A.length / 2;
+		T.add(A, 0, half);
+		T.enableSnapshots();
+		suffixTreeSnapshot S = T.getSnapshot();
+		T.add(A, half, A.length - half);
+		mappedSuffixTree F = T.freeze();
+		for (int q=0; q<20; q++){
+		    int P[] = new int[1 + R.nextInt(Math.min(A.length, 30))];
+		    int o = R.nextInt(A.length - P.length + 1);
+		    for (int i=0; i<P.length; i++) P[i] = R.nextBoolean() ? A[o + i] : R.nextInt(K);
+		    ArrayList<Integer> O = startPoints(A, A.length, P);
+		    ArrayList<Integer> found = new ArrayList<Integer>();
+		    T.forEachOccurrence(P, found::add);
+		    if ((T.count(P) != O.size()) || !sorted(found).equals(O)) failures++;
+		    if ((F.count(P) != O.size()) || !F.getInstanceEndPoints(P).equals(endPoints(A, A.length, P))) failures++;
+		    ArrayList<Integer> H = startPoints(A, half, P);
+		    found.clear();
+		    S.forEachOccurrence(P, found::add);
+		    if ((S.count(P) != H.size()) || !sorted(found).equals(H)) failures++;
+		}
+	    }
+	}
+	System.out.println("Checking instances of long contexts: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      Every pattern occurring in the symbol list is counted by the suffix tree, and
+      from the leaf and context counts of its frozen and loaded copies.
+    */
+    private static int checkCountedInstances() throws IOException{
+	Random R = new Random(13);
+	int failures = 0;
+	Path file = Files.createTempFile("tree", ".bin");
+	try{
+	    for (int engine=0; engine<3; engine++){
+		for (int t=0; t<30; t++){
+		    int K = 2 + R.nextInt(3);
+		    int A[] = randomSymbols(R, K, 1 + R.nextInt(80));
+		    suffixTree T = new suffixTree(K, engine);
+		    T.add(A, 0, A.length);
+		    try (OutputStream out = Files.newOutputStream(file)){
+			T.write(out, R.nextBoolean());
+		    }
+		    mappedSuffixTree F1 = T.freeze();
+		    mappedSuffixTree F2;
+		    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			F2 = new mappedSuffixTree(channel);
+		    }
+		    for (int o=0; o<A.length; o++){
+			for (int m=1; o+m<=A.length; m++){
+			    int P[] = Arrays.copyOfRange(A, o, o + m);
+			    int count = startPoints(A, A.length, P).size();
+			    if ((T.count(P) != count) || (F1.count(P) != count) || (F2.count(P) != count)) failures++;
+			}
+		    }
+		}
+	    }
+	} finally{
+	    Files.delete(file);
+	}
+	System.out.println("Checking counts from the leaf and context counts: " + failures + " failures");
+	return failures;
+    }
+
+    /*
+      The FM-indexes of small alphabets use the occurrence table at large sample
+      rates, and the others use the wavelet matrix.
+    */
+    private static int checkFMIndex(){
+	Random R = new Random(14);
+	int failures = 0;
+	for (int K : new int[]{2, 4, 20, 300, 65536}){
+	    for (int sampleRate : new int[]{1, 7, 64, 256}){
+		for (int t=0; t<5; t++){
+		    int A[] = randomSymbols(R, K, 1 + R.nextInt(2000));
+		    suffixTree T = new suffixTree(K, t % 3);
+		    T.add(A, 0, A.length);
+		    fmIndex F = T.getFMIndex(sampleRate);
+		    if (!Arrays.equals(F.getBWT(), T.getBWT())) failures++;
+		    for (int q=0; q<20; q++){
+			int P[] = randomPattern(R, A, A.length, K);
+			ArrayList<Integer> S = startPoints(A, A.length, P);
+			int found[] = F.locate(P);
+			ArrayList<Integer> B = new ArrayList<Integer>();
+			for (int s : found) B.add(s);
+			if ((F.count(P) != S.size()) || !B.equals(S)) failures++;
+		    }
+		}
+	    }
+	}
+	System.out.println("Checking FM-indexes against brute force searches: " + failures + " failures");
+	return failures;
     }
 
     private static void print(suffixTree T, contextSet CS){
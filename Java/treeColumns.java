@@ -0,0 +1,171 @@
+/*
+  Program name: treeColumns.java. Is a class representing the suffix tree laid out in columns of ints.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `treeColumns.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.util.*;
+
+/**
+   The vertices and edges of a suffix tree laid out in columns of ints, which is the layout
+   of the suffix trees written to files and of the frozen suffix trees. The vertices which
+   are not leaves are numbered in preorder from the root, which is vertex 0, so the vertices
+   of every subtree are consecutive. The edges of every vertex are consecutive and ordered by
+   direction, and they come in the order of their vertices, so the edges of every subtree are
+   consecutive as well.
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">firstEdge</font></td><td>The number of the first edge of every
+       vertex, followed by the total number of edges</td></tr>
+   <tr><td><font size="-1">edgeDirection</font></td><td>The direction of every edge</td></tr>
+   <tr><td><font size="-1">edgeIndexFrom</font></td><td>Index of the first symbol on every
+       edge</td></tr>
+   <tr><td><font size="-1">edgeIndexTo</font></td><td>Index of the last symbol on every
+       edge, Integer.MAX_VALUE for an edge to a leaf</td></tr>
+   <tr><td><font size="-1">edgeChild</font></td><td>The number of the vertex every edge
+       leads to, -1 for a leaf</td></tr>
+   <tr><td><font size="-1">nrOfLeaves</font></td><td>The number of leaves below every
+       vertex</td></tr>
+   <tr><td><font size="-1">contextsBelow</font></td><td>The number of contexts ending on
+       the edge to every vertex or below it, where a context ending on an edge to a leaf
+       is counted for the vertex the edge leaves</td></tr>
+   <tr><td><font size="-1">contextEdge</font></td><td>The edge on which every context
+       ends, ordered from the empty context, which gives -1, to the longest
+       context</td></tr>
+   </table>
+
+   @author Tommy Petersen
+ */
+class treeColumns{
+
+    int nrOfVertices, nrOfEdges;
+    int firstEdge[], edgeDirection[], edgeIndexFrom[], edgeIndexTo[], edgeChild[], nrOfLeaves[];
+    int contextsBelow[], contextEdge[];
+
+    /**
+       Lays out a suffix tree in columns. The vertices are visited depth first with
+       an explicit stack, so deep suffix trees do not overflow the call stack.
+
+       @param root     The root of the suffix tree
+       @param numbered Vertices whose numbers are wanted, which are put into the map
+                       with their numbers as values. It may be null
+       @param CS       The context set of the suffix tree
+     */
+    treeColumns(Vertex root, Map<Vertex,Integer> numbered, contextSet CS){
+	Context contexts[] = new Context[CS.size()];
+	if (numbered == null) numbered = new HashMap<Vertex,Integer>();
+	for (int i=1; i<contexts.length; i++){  //the base vertices are numbered to find the edges of the contexts
+	    contexts[i] = CS.get(i);
+	    numbered.put(contexts[i].getBaseVertex(), Integer.valueOf(-1));
+	}
+
+	int edgeTo[] = new int[1024];  //the edge leading to every vertex
+	firstEdge = new int[1024];
+	edgeDirection = new int[1024];
+	edgeIndexFrom = new int[1024];
+	edgeIndexTo   = new int[1024];
+	edgeChild     = new int[1024];
+
+	ArrayList<Vertex> stack = new ArrayList<Vertex>();
+	int parentEdge[] = new int[64];  //the edge leading to every vertex on the stack
+	int directions[] = new int[64];
+	stack.add(root);
+	parentEdge[0] = -1;
+	while (!stack.isEmpty()){
+	    int top = stack.size() - 1;
+	    Vertex V = stack.remove(top);
+	    int v = nrOfVertices++;
+	    if (parentEdge[top] >= 0) edgeChild[parentEdge[top]] = v;
+	    if (numbered.containsKey(V)) numbered.put(V, Integer.valueOf(v));
+	    if (v + 1 >= firstEdge.length){
+		firstEdge = Arrays.copyOf(firstEdge, 2 * firstEdge.length);
+		edgeTo = Arrays.copyOf(edgeTo, 2 * edgeTo.length);
+	    }
+	    firstEdge[v] = nrOfEdges;
+	    edgeTo[v] = parentEdge[top];
+
+	    int nrOfChildren = 0;
+	    for (int k=V.getFirstDirection(); k!=-1; k=V.getNextDirection(k)){
+		if (nrOfChildren == directions.length) directions = Arrays.copyOf(directions, 2 * nrOfChildren);
+		directions[nrOfChildren++] = k;
+	    }
+	    if (nrOfEdges + nrOfChildren > edgeDirection.length){
+		int capacity = Math.max(2 * edgeDirection.length, nrOfEdges + nrOfChildren);
+		edgeDirection = Arrays.copyOf(edgeDirection, capacity);
+		edgeIndexFrom = Arrays.copyOf(edgeIndexFrom, capacity);
+		edgeIndexTo   = Arrays.copyOf(edgeIndexTo, capacity);
+		edgeChild     = Arrays.copyOf(edgeChild, capacity);
+	    }
+	    for (int i=0; i<nrOfChildren; i++){
+		int k = directions[i];
+		int e = nrOfEdges + i;
+		edgeDirection[e] = k;
+		edgeIndexFrom[e] = V.getIndexFrom(k);
+		edgeIndexTo[e]   = V.getIndexTo(k);
+		edgeChild[e]     = -1;
+	    }
+	    for (int i=nrOfChildren-1; i>=0; i--){  //the smallest direction is visited first
+		if (V.isLeafChild(directions[i])) continue;
+		if (stack.size() == parentEdge.length) parentEdge = Arrays.copyOf(parentEdge, 2 * parentEdge.length);
+		parentEdge[stack.size()] = nrOfEdges + i;
+		stack.add(V.getInternalChild(directions[i]));
+	    }
+	    nrOfEdges += nrOfChildren;
+	}
+	firstEdge[nrOfVertices] = nrOfEdges;
+
+	/* Every context is counted where it ends */
+	contextEdge = new int[contexts.length];
+	contextsBelow = new int[nrOfVertices];
+	if (contexts.length > 0) contextEdge[0] = -1;
+	for (int i=1; i<contexts.length; i++){
+	    int v = numbered.get(contexts[i].getBaseVertex()).intValue();
+	    int e = (contexts[i].getDirection() < 0) ? edgeTo[v] : findEdge(v, contexts[i].getDirection());
+	    contextEdge[i] = e;
+	    contextsBelow[(edgeChild[e] < 0) ? v : edgeChild[e]]++;
+	}
+
+	/* In reverse preorder every vertex is counted after its children */
+	nrOfLeaves = new int[nrOfVertices];
+	for (int v=nrOfVertices-1; v>=0; v--){
+	    for (int e=firstEdge[v]; e<firstEdge[v + 1]; e++){
+		if (edgeChild[e] < 0){
+		    nrOfLeaves[v]++;
+		} else{
+		    nrOfLeaves[v] += nrOfLeaves[edgeChild[e]];
+		    contextsBelow[v] += contextsBelow[edgeChild[e]];
+		}
+	    }
+	}
+    }
+
+    /*
+       Finds the edge in direction a from vertex v by binary search.
+     */
+    private int findEdge(int v, int a){
+	int low = firstEdge[v];
+	int high = firstEdge[v + 1] - 1;
+	while (low < high){
+	    int middle = (low + high) >>> 1;
+	    if (edgeDirection[middle] < a) low = middle + 1;
+	    else high = middle;
+	}
+	return low;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+  Program name: treeMetrics.java. Is a class counting what happens while a suffix tree is built.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `treeMetrics.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+/**
+   This class holds the metrics of a suffix tree being built, which are kept once the
+   method enableMetrics in the class suffixTree has been called. They are read by the
+   get methods of this class whenever needed:
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">Context set sizes</font></td><td>A histogram of the size of
+       the context set after every symbol, which is the linear factor of the time the
+       context set engine takes for a symbol</td></tr>
+   <tr><td><font size="-1">Codewords</font></td><td>A histogram of the number of
+       codewords inserted for every symbol, each as a new leaf, counted where the
+       engines insert them, which is codeWordSet.moveSetToTree for the context set
+       engine</td></tr>
+   <tr><td><font size="-1">Add times</font></td><td>A histogram of the time taken by
+       every call of add, and the number of calls taking at least the slow add
+       threshold, which are also recorded as SuffixTree.SlowAdd events by the Java
+       Flight Recorder</td></tr>
+   <tr><td><font size="-1">Vertices</font></td><td>The number of vertices, leaves and
+       edges split, beginning with those in the suffix tree when the metrics were
+       enabled</td></tr>
+   <tr><td><font size="-1">Store</font></td><td>An estimate of the bytes retained by the
+       suffix tree, its symbol list and its context set</td></tr>
+   </table>
+   <p>
+   Bucket i of a histogram counts the values v with 2^(i-1) &lt;= v &lt; 2^i, and
+   bucket 0 counts the values 0. The metrics are only written by the thread adding the
+   symbols, without synchronization, so they cost a few increments for every symbol.
+   Another thread reading them may see values which are slightly behind.
+   </p>
+
+   @author Tommy Petersen
+ */
+public class treeMetrics{
+
+    /*
+      The store of the parts of a suffix tree in the usual layout of a 64 bit virtual
+      machine with compressed references, as found by the footprint benchmark of
+      suffixTreeBenchmark: a vertex with the headers of its child table arrays, an
+      entry of a child table including the room left for more children, and a context
+      of a context set.
+    */
+    private static final int VERTEX_BYTES  = 136;
+    private static final int ENTRY_BYTES   = 16;
+    private static final int CONTEXT_BYTES = 12;
+
+    private suffixTree T;
+    private boolean keepsContexts;  //true if the context set is kept, and not materialized when it is read
+    private long slowAddThreshold;  //in nanoseconds
+
+    long edgesSplit;        //counted by the engines
+    int codewordsInserted;  //counted by the engines for the symbol being added
+    private long innerVertices;  //the vertices which are not leaves, apart from the root
+    private long leaves;
+    private int contextSetSize;
+    private long symbols, addCalls, slowAdds;
+    private long contextSetSizes[] = new long[33];
+    private long codewords[] = new long[33];
+    private long addTimes[] = new long[64];
+
+    /**
+       Creates the metrics of a suffix tree, beginning with the vertices and leaves
+       already in it.
+
+       @param T                The suffix tree
+       @param innerVertices    The number of vertices in the suffix tree which are
+                               neither leaves nor the root
+       @param leaves           The number of leaves in the suffix tree
+       @param contextSetSize   The size of the context set
+       @param keepsContexts    True if the context set is kept as the symbols are
+                               added, as it is by the context set engine
+       @param slowAddThreshold The time in nanoseconds a call of add must take to
+                               be counted as slow
+     */
+    treeMetrics(suffixTree T, long innerVertices, long leaves, int contextSetSize, boolean keepsContexts, long slowAddThreshold){
+	this.T                = T;
+	this.keepsContexts    = keepsContexts;
+	this.innerVertices    = innerVertices;
+	this.leaves           = leaves;
+	this.contextSetSize   = contextSetSize;
+	this.slowAddThreshold = slowAddThreshold;
+    }
+
+    /*
+       Records a symbol added, given the size of the context set after it, with the
+       codewords the engines inserted for it, which are its new leaves.
+     */
+    void recordSymbol(int contextSetSize){
+	symbols++;
+	contextSetSizes[bucket(contextSetSize)]++;
+	codewords[bucket(codewordsInserted)]++;
+	leaves += codewordsInserted;
+	codewordsInserted = 0;
+	this.contextSetSize = contextSetSize;
+    }
+
+    /*
+       Records a call of add taking the given number of nanoseconds, and returns
+       true if it is a slow one.
+     */
+    boolean recordAdd(long time){
+	addCalls++;
+	addTimes[bucket(time)]++;
+	if (time < slowAddThreshold) return false;
+	slowAdds++;
+	return true;
+    }
+
+    private static int bucket(long v){
+	return 64 - Long.numberOfLeadingZeros(Math.max(0, v));
+    }
+
+    /**
+       Gets the time a call of add must take to be counted as slow, and to be
+       recorded as a SuffixTree.SlowAdd event.
+
+       @return The threshold in nanoseconds
+     */
+    public long getSlowAddThreshold(){
+	return slowAddThreshold;
+    }
+
+    /**
+       Gets the number of symbols in the symbol list.
+
+       @return The length of the symbol list
+     */
+    public int getSymbolListLength(){
+	return T.getSizeL();
+    }
+
+    /**
+       Gets the size of the context set after the last symbol added.
+
+       @return The number of contexts, including the empty context
+     */
+    public int getContextSetSize(){
+	return contextSetSize;
+    }
+
+    /**
+       Gets the number of symbols added since the metrics were enabled.
+
+       @return The number of symbols added
+     */
+    public long getNrOfSymbolsAdded(){
+	return symbols;
+    }
+
+    /**
+       Gets the number of calls of add since the metrics were enabled.
+
+       @return The number of calls of add
+     */
+    public long getNrOfAddCalls(){
+	return addCalls;
+    }
+
+    /**
+       Gets the number of calls of add which took at least the slow add threshold.
+
+       @return The number of slow calls of add
+     */
+    public long getNrOfSlowAdds(){
+	return slowAdds;
+    }
+
+    /**
+       Gets the number of vertices of the suffix tree, not counting the leaves.
+
+       @return The number of vertices, including the root
+     */
+    public long getNrOfVertices(){
+	return innerVertices + edgesSplit + 1;
+    }
+
+    /**
+       Gets the number of leaves of the suffix tree, which is the number of suffixes
+       which are not contexts.
+
+       @return The number of leaves
+     */
+    public long getNrOfLeaves(){
+	return leaves;
+    }
+
+    /**
+       Gets the number of edges split since the metrics were enabled, each one
+       making a new vertex.
+
+       @return The number of edges split
+     */
+    public long getNrOfEdgesSplit(){
+	return edgesSplit;
+    }
+
+    /**
+       Gets the histogram of the size of the context set after every symbol.
+
+       @return A copy of the histogram
+     */
+    public long[] getContextSetSizes(){
+	return contextSetSizes.clone();
+    }
+
+    /**
+       Gets the histogram of the number of codewords inserted for every symbol.
+
+       @return A copy of the histogram
+     */
+    public long[] getCodewords(){
+	return codewords.clone();
+    }
+
+    /**
+       Gets the histogram of the time taken by every call of add, in nanoseconds.
+
+       @return A copy of the histogram
+     */
+    public long[] getAddTimes(){
+	return addTimes.clone();
+    }
+
+    /**
+       Gets an estimate of the bytes retained by the suffix tree, its symbol list
+       and its context set. It is found from the numbers of vertices, leaves and
+       contexts, not by visiting the objects, so it takes constant time. A context
+       set which is only materialized when it is read is not counted. The estimate
+       assumes child tables of a few children, so it is low for vertices with many
+       children, whose hashed tables leave room for up to eight times as many.
+
+       @return The estimated number of bytes
+     */
+    public long getEstimatedBytes(){
+	symbolList L = T.getSymbolList();
+	int bytesPerSymbol = (L instanceof byteSymbolList) ? 1 : ((L instanceof shortSymbolList) ? 2 : ((L instanceof intSymbolList) ? 4 : 0));
+	long bytes = (long)bytesPerSymbol * (((long)L.size() + symbolList.CHUNK_MASK) & ~(long)symbolList.CHUNK_MASK);  //whole chunks
+	vertexArena arena = T.getArena();
+	if (arena != null) return bytes + arena.getNrOfBytes();
+	long vertices = innerVertices + edgesSplit + 1;
+	bytes += vertices * VERTEX_BYTES + (vertices - 1 + leaves) * ENTRY_BYTES;
+	return keepsContexts ? bytes + (long)contextSetSize * CONTEXT_BYTES : bytes;
+    }
+
+    /**
+       Produces a simple ascii print of the metrics on sysout.
+     */
+    public void print(){
+	System.out.println("symbols " + getSymbolListLength() + ", contexts " + contextSetSize + ", vertices " + getNrOfVertices()
+			   + ", leaves " + leaves + ", edges split " + edgesSplit + ", estimated bytes " + getEstimatedBytes());
+	System.out.println("add calls " + addCalls + ", slow " + slowAdds + " (at least " + slowAddThreshold + " ns)");
+	System.out.println("context set sizes " + histogram(contextSetSizes));
+	System.out.println("codewords         " + histogram(codewords));
+	System.out.println("add times (ns)    " + histogram(addTimes));
+    }
+
+    /*
+       Prints the buckets in use of a histogram as [from, to): count.
+     */
+    private static String histogram(long H[]){
+	StringBuilder B = new StringBuilder();
+	for (int i=0; i<H.length; i++){
+	    if (H[i] == 0) continue;
+	    if (B.length() > 0) B.append(", ");
+	    if (i == 0) B.append("0: ");
+	    else B.append("[").append(1L << (i - 1)).append(", ").append(1L << i).append("): ");
+	    B.append(H[i]);
+	}
+	return B.toString();
+    }
+}
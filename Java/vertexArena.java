@@ -0,0 +1,800 @@
+/*
+  Program name: vertexArena.java. Is a class storing the vertices of a suffix tree in arrays of integers.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `vertexArena.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.util.*;
+
+/**
+   Stores the vertices of a suffix tree as integer handles into parallel arrays of integers,
+   instead of as one object per vertex. Handle 0 is the root. The following is stored for
+   every vertex which is not a leaf:
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">parent</font></td><td>The parent vertex, which is NONE for the
+       root</td></tr>
+   <tr><td><font size="-1">parentDirection</font></td><td>The direction from the parent
+       vertex to the vertex</td></tr>
+   <tr><td><font size="-1">indexTo</font></td><td>Index of the last symbol on the edge
+       from the parent vertex</td></tr>
+   <tr><td><font size="-1">indexFrom</font></td><td>Index of the first symbol on the edge
+       from the parent vertex</td></tr>
+   <tr><td><font size="-1">depth</font></td><td>The number of symbols from the root to the
+       vertex</td></tr>
+   <tr><td><font size="-1">firstChild</font></td><td>The child with the smallest
+       direction</td></tr>
+   <tr><td><font size="-1">nextSibling</font></td><td>The sibling with the next larger
+       direction</td></tr>
+   <tr><td><font size="-1">suffixLink</font></td><td>The suffix link, which is NONE if it
+       is the root</td></tr>
+   </table>
+   <p>
+   A leaf only needs the direction, the index of the first symbol and the next sibling of
+   the edge to it, so the leaves are kept in three columns of their own, leafDirection,
+   leafIndexFrom and leafNextSibling. Leaf i has the handle -2 - i, so every handle below
+   NONE is a leaf, and a leaf has no parent, no children and no suffix link. As there is a
+   leaf for every suffix which is not a context, this takes a third of the store of making
+   the leaves vertices.
+   </p>
+   <p>
+   Since every vertex but the root has exactly one edge from its parent, the edge is
+   stored with the vertex it leads to, and the edges from a vertex are kept in a list
+   ordered by direction. A traversal of the first child and next sibling lists visits
+   the vertices in preorder. The class Vertex is used as a view of a single handle.
+   </p>
+   <p>
+   A vertex with more than WIDE_LIMIT children also gets a child table, so its children
+   are found without walking the list, like the tables of the class Vertex:
+   </p>
+   <table border="1" width="100%" cellpadding="3" cellspacing="0" summary="">
+   <tr><td><font size="-1">HASHED</font></td><td>An open addressing table with linear
+       probing of directions and child handles, which is at most half full</td></tr>
+   <tr><td><font size="-1">DENSE</font></td><td>An array of length K of child handles
+       indexed by direction, used when more than K/4 directions have a child</td></tr>
+   </table>
+   <p>
+   The tables are only an index of the lists, so they are not written to checkpoints but
+   made again when a checkpoint is read, and they are made once a parallel build ends.
+   </p>
+   <p>
+   One thread may change the arena while other threads read it through the read methods
+   of the views, as done by the snapshots of the suffix tree. A stamp is odd while a
+   change is being made, between beginChange and endChange, and it is increased again
+   with release ordering when the change is done. A reader reads the stamp with acquire
+   ordering, reads the arrays and checks that the stamp is unchanged, and otherwise it
+   reads them again, like the readers of the class Vertex. A change covers every step
+   the readers must not see on its own, such as a split, whose new vertex has no
+   children until the edge it splits has been moved below it.
+   </p>
+   <p>
+   The children of a vertex, and the edges to them, are only changed through the vertex,
+   so a change of the children of v only takes the stamp of v. The vertices share
+   STRIPES stamps, each on a cache line of its own, so a reader only reads again when
+   the writer has changed a vertex of the same stripe while it read, and the readers of
+   the other vertices never wait for the writer. The arena also keeps a stamp of its
+   own, which a reader checks as well, for the changes of the whole arena: making room
+   for more vertices or leaves, which replaces the arrays, and the changes made through
+   the views. A reader which finds a stamp odd spins a little and then yields, so a
+   writer which keeps changing the same vertex does not keep a core busy.
+   </p>
+
+   @author Tommy Petersen
+ */
+class vertexArena{
+
+    static final int ROOT = 0;
+    static final int NONE = -1;
+
+    private static final int WIDE_LIMIT = 8;  //vertices with more children get a child table
+    private static final int COUNT  = 0;      //the child tables hold the number of children,
+    private static final int KIND   = 1;      //their kind
+    private static final int TABLE  = 2;      //and then their slots
+    private static final int HASHED = 0;
+    private static final int DENSE  = 1;
+
+    private int K;
+    private int nrOfVertices;
+    private int parent[], parentDirection[], indexTo[], indexFrom[], depth[];
+    private int firstChild[], nextSibling[], suffixLink[];
+    private int nrOfLeaves;
+    private int leafDirection[], leafIndexFrom[], leafNextSibling[];
+    private int nrOfVerticesSaved;  //the vertices with a smaller handle are in the last checkpoint
+    private int nrOfLeavesSaved;    //the leaves in the last checkpoint
+    private BitSet changed;         //the vertices in the last checkpoint which have been changed since
+    private BitSet changedLeaves;   //the leaves in the last checkpoint which have been changed since
+    private int childTables[][];    //the child table of every vertex with more than WIDE_LIMIT children, else null
+    private int stamp;              //odd while a change of the whole arena is being made
+    private final int stamps[] = new int[STRIPES * STRIDE];  //odd while a change of a vertex of the stripe is being made
+
+    private static final int STRIPES = 64;  //the stamps of the vertices, a power of 2
+    private static final int STRIDE = 16;   //the ints from one stamp to the next, a cache line
+    private static final int SPINS = 64;    //the times a reader spins before it yields
+
+    private static final VarHandle STAMP;
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(int[].class);
+    static{
+	try{
+	    STAMP = MethodHandles.lookup().findVarHandle(vertexArena.class, "stamp", int.class);
+	} catch (ReflectiveOperationException ROE){
+	    throw new ExceptionInInitializerError(ROE);
+	}
+    }
+
+    /**
+       Creates a new arena containing only the root vertex.
+
+       @param K        The number of symbols in the alphabet
+       @param capacity The initial number of vertices there is room for
+     */
+    vertexArena(int K, int capacity){
+	this.K = K;
+	capacity = (capacity < 1) ? 1 : capacity;
+	parent          = new int[capacity];
+	parentDirection = new int[capacity];
+	indexTo         = new int[capacity];
+	indexFrom       = new int[capacity];
+	depth           = new int[capacity];
+	firstChild      = new int[capacity];
+	nextSibling     = new int[capacity];
+	suffixLink      = new int[capacity];
+	childTables     = new int[capacity][];
+	leafDirection   = new int[capacity];
+	leafIndexFrom   = new int[capacity];
+	leafNextSibling = new int[capacity];
+	nrOfVertices = 0;
+	nrOfLeaves = 0;
+	nrOfVerticesSaved = 0;
+	nrOfLeavesSaved = 0;
+	changed = new BitSet();
+	changedLeaves = new BitSet();
+	newVertex(-1, NONE, -1, -1);
+    }
+
+    /**
+       Creates a new vertex without linking it to its parent vertex. The depth is
+       found from the edge from the parent vertex, which the vertex is given
+       before any other vertex is put between them.
+
+       @param indexTo         Index of the last symbol on the edge from the parent vertex
+       @param parent          The parent vertex
+       @param parentDirection The direction from the parent vertex to the new vertex
+       @param indexFrom       Index of the first symbol on the edge from the parent vertex
+       @return                The handle of the new vertex
+     */
+    int newVertex(int indexTo, int parent, int parentDirection, int indexFrom){
+	if (nrOfVertices == this.parent.length) grow();
+	int v = nrOfVertices++;
+	this.parent[v]          = parent;
+	this.parentDirection[v] = parentDirection;
+	this.indexTo[v]         = indexTo;
+	this.indexFrom[v]       = indexFrom;
+	depth[v] = (parent == NONE) ? 0 : depth[parent] + indexTo - indexFrom + 1;
+	firstChild[v]           = NONE;
+	nextSibling[v]          = NONE;
+	suffixLink[v]           = NONE;
+	return v;
+    }
+
+    /**
+       Creates a new leaf without linking it to its parent vertex.
+
+       @param parentDirection The direction from the parent vertex to the new leaf
+       @param indexFrom       Index of the first symbol on the edge from the parent vertex
+       @return                The handle of the new leaf
+     */
+    int newLeaf(int parentDirection, int indexFrom){
+	if (nrOfLeaves == leafIndexFrom.length) growLeaves();
+	int l = nrOfLeaves++;
+	leafDirection[l]   = parentDirection;
+	leafIndexFrom[l]   = indexFrom;
+	leafNextSibling[l] = NONE;
+	return leaf(l);
+    }
+
+    /*
+       Maps the number of a leaf to its handle, and the handle back to the number.
+     */
+    static int leaf(int l){
+	return -2 - l;
+    }
+
+    /*
+       Makes room for twice as many leaves.
+     */
+    private void growLeaves(){
+	int capacity = 2 * leafIndexFrom.length;
+	beginChange();
+	leafDirection   = Arrays.copyOf(leafDirection, capacity);
+	leafIndexFrom   = Arrays.copyOf(leafIndexFrom, capacity);
+	leafNextSibling = Arrays.copyOf(leafNextSibling, capacity);
+	endChange();
+    }
+
+    /*
+       Makes room for twice as many vertices.
+     */
+    private void grow(){
+	int capacity = 2 * parent.length;
+	beginChange();
+	parent          = Arrays.copyOf(parent, capacity);
+	parentDirection = Arrays.copyOf(parentDirection, capacity);
+	indexTo         = Arrays.copyOf(indexTo, capacity);
+	indexFrom       = Arrays.copyOf(indexFrom, capacity);
+	depth           = Arrays.copyOf(depth, capacity);
+	firstChild      = Arrays.copyOf(firstChild, capacity);
+	nextSibling     = Arrays.copyOf(nextSibling, capacity);
+	suffixLink      = Arrays.copyOf(suffixLink, capacity);
+	childTables     = Arrays.copyOf(childTables, capacity);
+	endChange();
+    }
+
+    /**
+       Tells the readers in other threads that a change of the whole arena is
+       being made, so they read the arena again if they read it in the meantime.
+     */
+    void beginChange(){
+	STAMP.setOpaque(this, stamp + 1);
+	VarHandle.storeStoreFence();
+    }
+
+    /**
+       Tells the readers in other threads that the change begun by beginChange
+       is done.
+     */
+    void endChange(){
+	STAMP.setRelease(this, stamp + 1);
+    }
+
+    /**
+       Tells the readers in other threads that the children of vertex v, or the
+       edges to them, are being changed, so they read them again if they read them
+       in the meantime. The change must be ended by endChange(v) before another
+       vertex is changed.
+
+       @param v The vertex whose children are changed
+     */
+    void beginChange(int v){
+	int i = stripe(v);
+	STAMPS.setOpaque(stamps, i, stamps[i] + 1);
+	VarHandle.storeStoreFence();
+    }
+
+    /**
+       Tells the readers in other threads that the change begun by beginChange(v)
+       is done.
+
+       @param v The vertex whose children were changed
+     */
+    void endChange(int v){
+	int i = stripe(v);
+	STAMPS.setRelease(stamps, i, stamps[i] + 1);
+    }
+
+    /**
+       Gets the stamp of the arena and the stamp of vertex v once no change of
+       them is being made, which a reader in another thread checks by isUnchanged
+       after reading the arena.
+
+       @param v The vertex whose children are read, or NONE if only the
+                fields of vertices are read, which are set when a vertex is
+                made and do not change afterwards
+       @return  The stamps, which are even, packed into a long
+     */
+    long readStamp(int v){
+	for (int spins=0; ; spins++){
+	    int s = (int)STAMP.getAcquire(this);
+	    int t = (v == NONE) ? 0 : (int)STAMPS.getAcquire(stamps, stripe(v));
+	    if (((s | t) & 1) == 0) return ((long)s << 32) | (t & 0xFFFFFFFFL);
+	    if (spins < SPINS) Thread.onSpinWait();
+	    else Thread.yield();
+	}
+    }
+
+    /**
+       Tells whether the arena read since the stamps were s has been left alone
+       by the thread changing it, so what was read is consistent.
+
+       @param v The vertex given to readStamp
+       @param s The stamps got by readStamp before reading
+       @return  True if no change of them has been begun since
+     */
+    boolean isUnchanged(int v, long s){
+	VarHandle.acquireFence();
+	if ((int)STAMP.getOpaque(this) != (int)(s >> 32)) return false;
+	return (v == NONE) || ((int)STAMPS.getOpaque(stamps, stripe(v)) == (int)s);
+    }
+
+    private static int stripe(int v){
+	return (v & (STRIPES - 1)) * STRIDE;
+    }
+
+    /**
+       Gets the child of vertex v in direction k.
+
+       @param v The vertex
+       @param k The child's direction
+       @return  The child of v in direction k, or NONE if there is none
+     */
+    int getChild(int v, int k){
+	int table[] = childTables[v];
+	if (table != null) return lookup(table, k);
+	int c = firstChild[v];
+	while ((c != NONE) && (getParentDirection(c) < k)) c = getNextSibling(c);
+	return ((c != NONE) && (getParentDirection(c) == k)) ? c : NONE;
+    }
+
+    /**
+       Makes room for the given numbers of vertices and leaves, so the columns are
+       not replaced while the threads of a parallel build fill them in.
+
+       @param vertices The number of vertices, including those already made
+       @param leaves   The number of leaves, including those already made
+     */
+    void reserve(int vertices, int leaves){
+	while (parent.length < vertices) grow();
+	while (leafIndexFrom.length < leaves) growLeaves();
+    }
+
+    /**
+       Makes vertex v in the room made by reserve, without linking it to a parent
+       vertex. The threads of a parallel build each make the vertices and leaves of
+       ranges of handles of their own by putVertex and putFirst, which change
+       nothing else, and the build ends with the method built.
+
+       @param v       The handle of the vertex
+       @param indexTo Index of the last symbol on the edge from the parent vertex
+       @param depth   The number of symbols from the root to the vertex
+     */
+    void putVertex(int v, int indexTo, int depth){
+	parent[v]          = NONE;
+	parentDirection[v] = -1;
+	this.indexTo[v]    = indexTo;
+	indexFrom[v]       = -1;
+	this.depth[v]      = depth;
+	firstChild[v]      = NONE;
+	nextSibling[v]     = NONE;
+	suffixLink[v]      = NONE;
+	childTables[v]     = null;
+    }
+
+    /**
+       Makes c the first child of v during a parallel build. The direction must be
+       smaller than the directions of the children v already has, so the children
+       are put from the largest direction to the smallest. No child tables are made
+       until the method built is called.
+
+       @param v         The parent vertex
+       @param c         The child, which is a vertex made by putVertex or the
+                        handle of leaf number l given by leaf(l)
+       @param indexFrom Index of the first symbol on the edge from v to c
+       @param k         The direction from v to c
+     */
+    void putFirst(int v, int c, int indexFrom, int k){
+	if (c < NONE){
+	    leafDirection[leaf(c)] = k;
+	    leafIndexFrom[leaf(c)] = indexFrom;
+	} else{
+	    parent[c]          = v;
+	    parentDirection[c] = k;
+	    this.indexFrom[c]  = indexFrom;
+	}
+	setNextSibling(c, firstChild[v]);
+	firstChild[v] = c;
+    }
+
+    /**
+       Moves the vertices with the handles from, ..., from + n - 1 to the handles
+       beginning at to, which is not larger, after a parallel build left room
+       between them. The references among the vertices and from the given range of
+       leaves to them are moved along, so the range must hold every vertex and leaf
+       referring to them apart from their top vertex's parent.
+
+       @param from       The first handle of the vertices
+       @param to         The handle the first vertex is moved to
+       @param n          The number of vertices
+       @param firstLeaf  The number of the first leaf referring to the vertices
+       @param nrOfLeaves The number of leaves referring to the vertices
+     */
+    void move(int from, int to, int n, int firstLeaf, int nrOfLeaves){
+	if (from == to) return;
+	System.arraycopy(parent, from, parent, to, n);
+	System.arraycopy(parentDirection, from, parentDirection, to, n);
+	System.arraycopy(indexTo, from, indexTo, to, n);
+	System.arraycopy(indexFrom, from, indexFrom, to, n);
+	System.arraycopy(depth, from, depth, to, n);
+	System.arraycopy(firstChild, from, firstChild, to, n);
+	System.arraycopy(nextSibling, from, nextSibling, to, n);
+	System.arraycopy(suffixLink, from, suffixLink, to, n);
+	for (int v=to; v<to+n; v++){
+	    parent[v]      = moved(parent[v], from, to, n);
+	    firstChild[v]  = moved(firstChild[v], from, to, n);
+	    nextSibling[v] = moved(nextSibling[v], from, to, n);
+	    childTables[v] = null;
+	}
+	for (int l=firstLeaf; l<firstLeaf+nrOfLeaves; l++) leafNextSibling[l] = moved(leafNextSibling[l], from, to, n);
+    }
+
+    private static int moved(int v, int from, int to, int n){
+	return ((v >= from) && (v < from + n)) ? v - from + to : v;
+    }
+
+    /**
+       Ends a parallel build, which made the given numbers of vertices and leaves,
+       and makes the child tables.
+
+       @param nrOfVertices The number of vertices, including the root
+       @param nrOfLeaves   The number of leaves
+     */
+    void built(int nrOfVertices, int nrOfLeaves){
+	this.nrOfVertices = nrOfVertices;
+	this.nrOfLeaves   = nrOfLeaves;
+	makeTables();
+    }
+
+    /**
+       Makes c the child of v in direction k, replacing any previous child in that
+       direction.
+
+       @param v         The parent vertex
+       @param c         The child vertex
+       @param indexFrom Index of the first symbol on the edge from v to c
+       @param k         The direction from v to c
+     */
+    void setChild(int v, int c, int indexFrom, int k){
+	change(c);
+	if (c < NONE){
+	    leafDirection[leaf(c)] = k;
+	    leafIndexFrom[leaf(c)] = indexFrom;
+	} else{
+	    parent[c]          = v;
+	    parentDirection[c] = k;
+	    this.indexFrom[c]  = indexFrom;
+	}
+
+	int previous = predecessor(v, k);
+	int next = (previous == NONE) ? firstChild[v] : getNextSibling(previous);
+	boolean replaces = (next != NONE) && (getParentDirection(next) == k);
+	if (replaces) next = getNextSibling(next);
+	setNextSibling(c, next);
+	if (previous == NONE){
+	    change(v);
+	    firstChild[v] = c;
+	} else{
+	    change(previous);
+	    setNextSibling(previous, c);
+	}
+
+	//a new direction may need a child table, or a larger or DENSE one:
+	int table[] = childTables[v];
+	if (table == null){
+	    if (!replaces && (countChildren(v) > WIDE_LIMIT)) childTables[v] = newTable(v);
+	    return;
+	}
+	int n = table[COUNT] + 1;
+	if (!replaces && (table[KIND] == HASHED) && ((4 * n > K) || (4 * n > table.length - TABLE))) childTables[v] = newTable(v);
+	else put(table, k, c, replaces);
+    }
+
+    /*
+       Returns the child of v whose direction is the largest one smaller than k,
+       or NONE if there is none. If v has a child table and the expected gap between
+       two children is shorter than the list, the smaller directions are looked up
+       as far as twice the gap, and the list is walked if that finds no child.
+     */
+    private int predecessor(int v, int k){
+	int table[] = childTables[v];
+	if ((table != null) && ((long)table[COUNT] * table[COUNT] > K)){
+	    int limit = 2 * (K / table[COUNT]) + WIDE_LIMIT;
+	    for (int j=k-1; (j >= 0) && (limit > 0); j--, limit--){
+		int c = lookup(table, j);
+		if (c != NONE) return c;
+	    }
+	    if (limit > 0) return NONE;
+	}
+	int previous = NONE;
+	for (int c=firstChild[v]; (c != NONE) && (getParentDirection(c) < k); c=getNextSibling(c)) previous = c;
+	return previous;
+    }
+
+    private int countChildren(int v){
+	int n = 0;
+	for (int c=firstChild[v]; c!=NONE; c=getNextSibling(c)) n++;
+	return n;
+    }
+
+    /*
+       Returns the child in direction k in a child table, or NONE if there is none.
+     */
+    private static int lookup(int table[], int k){
+	if (table[KIND] == DENSE) return ((k >= 0) && (k < table.length - TABLE)) ? table[TABLE + k] : NONE;
+	int mask = (table.length - TABLE) / 2 - 1;
+	for (int j=hash(k) & mask; table[TABLE + 2 * j] != NONE; j=(j + 1) & mask){
+	    if (table[TABLE + 2 * j] == k) return table[TABLE + 2 * j + 1];
+	}
+	return NONE;
+    }
+
+    private static int hash(int k){
+	int h = k * 0x9E3779B9;
+	return h ^ (h >>> 16);
+    }
+
+    /*
+       Puts the child c in direction k into a child table having room for it.
+     */
+    private static void put(int table[], int k, int c, boolean replaces){
+	if (!replaces) table[COUNT]++;
+	if (table[KIND] == DENSE){
+	    table[TABLE + k] = c;
+	    return;
+	}
+	int mask = (table.length - TABLE) / 2 - 1;
+	int j = hash(k) & mask;
+	while ((table[TABLE + 2 * j] != NONE) && (table[TABLE + 2 * j] != k)) j = (j + 1) & mask;
+	table[TABLE + 2 * j] = k;
+	table[TABLE + 2 * j + 1] = c;
+    }
+
+    /*
+       Makes a child table of the children of v with room for twice as many. It is
+       DENSE if more than K/4 directions have a child, and HASHED otherwise.
+     */
+    private int[] newTable(int v){
+	int n = countChildren(v);
+	int table[];
+	if (4 * n > K){
+	    table = new int[TABLE + K];
+	    table[KIND] = DENSE;
+	} else{
+	    table = new int[TABLE + 2 * (Integer.highestOneBit(4 * n - 1) << 1)];
+	    table[KIND] = HASHED;
+	}
+	Arrays.fill(table, TABLE, table.length, NONE);
+	for (int c=firstChild[v]; c!=NONE; c=getNextSibling(c)) put(table, getParentDirection(c), c, false);
+	return table;
+    }
+
+    /**
+       Gets the parent of a vertex. The leaves do not keep their parents.
+
+       @param v The vertex, which is not a leaf
+       @return  The parent of v, which is NONE for the root
+     */
+    int getParent(int v){
+	return parent[v];
+    }
+
+    void setParent(int v, int parent){
+	change(v);
+	this.parent[v] = parent;
+    }
+
+    int getParentDirection(int v){
+	return (v < NONE) ? leafDirection[leaf(v)] : parentDirection[v];
+    }
+
+    void setParentDirection(int v, int parentDirection){
+	change(v);
+	this.parentDirection[v] = parentDirection;
+    }
+
+    int getIndexTo(int v){
+	return (v < NONE) ? Integer.MAX_VALUE : indexTo[v];
+    }
+
+    int getIndexFrom(int v){
+	return (v < NONE) ? leafIndexFrom[leaf(v)] : indexFrom[v];
+    }
+
+    int getDepth(int v){
+	return (v < NONE) ? -1 : depth[v];
+    }
+
+    int getFirstChild(int v){
+	return (v < NONE) ? NONE : firstChild[v];
+    }
+
+    int getNextSibling(int v){
+	return (v < NONE) ? leafNextSibling[leaf(v)] : nextSibling[v];
+    }
+
+    private void setNextSibling(int v, int nextSibling){
+	if (v < NONE) leafNextSibling[leaf(v)] = nextSibling;
+	else this.nextSibling[v] = nextSibling;
+    }
+
+    int getSuffixLink(int v){
+	return (v < NONE) ? NONE : suffixLink[v];
+    }
+
+    void setSuffixLink(int v, int suffixLink){
+	change(v);
+	this.suffixLink[v] = suffixLink;
+    }
+
+    boolean isLeaf(int v){
+	return (v < NONE) || (firstChild[v] == NONE);
+    }
+
+    int getK(){
+	return K;
+    }
+
+    /**
+       Gets the number of vertices in this arena, not counting the leaves.
+
+       @return The number of vertices in this arena
+     */
+    int getNrOfVertices(){
+	return nrOfVertices;
+    }
+
+    /**
+       Gets the number of leaves in this arena.
+
+       @return The number of leaves in this arena
+     */
+    int getNrOfLeaves(){
+	return nrOfLeaves;
+    }
+
+    /**
+       Gets the number of bytes of the columns of this arena, including the room
+       for vertices and leaves which are not made yet.
+
+       @return The number of bytes of the columns
+     */
+    long getNrOfBytes(){
+	long bytes = 9L * 4 * parent.length + 3L * 4 * leafIndexFrom.length;  //the eight columns and the child table reference of every vertex, and the three columns of every leaf
+	for (int v=0; v<nrOfVertices; v++){
+	    if (childTables[v] != null) bytes += 16 + 4L * childTables[v].length;
+	}
+	return bytes;
+    }
+
+    /*
+       Records that a vertex has been changed since the last checkpoint. Vertices
+       created since then are written anyway, so they are not recorded.
+     */
+    private void change(int v){
+	if (v < NONE){
+	    if (leaf(v) < nrOfLeavesSaved) changedLeaves.set(leaf(v));
+	} else if (v < nrOfVerticesSaved){
+	    changed.set(v);
+	}
+    }
+
+    /**
+       Gets the number of bytes written by the next checkpoint for the vertices and
+       leaves changed or created since the last checkpoint.
+
+       @return The number of bytes written by the method writeChanges
+     */
+    long getChangesLength(){
+	long vertices = changed.cardinality() + nrOfVertices - nrOfVerticesSaved;
+	long leaves = changedLeaves.cardinality() + nrOfLeaves - nrOfLeavesSaved;
+	return 8 + 36 * vertices + 8 + 16 * leaves;
+    }
+
+    /**
+       Writes the vertices changed or created since the last checkpoint, and then
+       the leaves. Each vertex is written as its handle followed by its eight
+       fields, and each leaf as its number followed by its three fields.
+
+       @param  D The stream to which the vertices are written
+       @throws   java.io.IOException If the stream cannot be written
+     */
+    void writeChanges(DataOutput D) throws IOException{
+	D.writeInt(nrOfVertices);
+	D.writeInt(changed.cardinality() + nrOfVertices - nrOfVerticesSaved);
+	for (int v=changed.nextSetBit(0); v>=0; v=changed.nextSetBit(v + 1)) writeVertex(D, v);
+	for (int v=nrOfVerticesSaved; v<nrOfVertices; v++) writeVertex(D, v);
+	D.writeInt(nrOfLeaves);
+	D.writeInt(changedLeaves.cardinality() + nrOfLeaves - nrOfLeavesSaved);
+	for (int l=changedLeaves.nextSetBit(0); l>=0; l=changedLeaves.nextSetBit(l + 1)) writeLeaf(D, l);
+	for (int l=nrOfLeavesSaved; l<nrOfLeaves; l++) writeLeaf(D, l);
+    }
+
+    private void writeLeaf(DataOutput D, int l) throws IOException{
+	D.writeInt(l);
+	D.writeInt(leafDirection[l]);
+	D.writeInt(leafIndexFrom[l]);
+	D.writeInt(leafNextSibling[l]);
+    }
+
+    private void writeVertex(DataOutput D, int v) throws IOException{
+	D.writeInt(v);
+	D.writeInt(parent[v]);
+	D.writeInt(parentDirection[v]);
+	D.writeInt(indexTo[v]);
+	D.writeInt(indexFrom[v]);
+	D.writeInt(depth[v]);
+	D.writeInt(firstChild[v]);
+	D.writeInt(nextSibling[v]);
+	D.writeInt(suffixLink[v]);
+    }
+
+    /**
+       Reads the vertices written by the method writeChanges into this arena,
+       replacing the vertices with the same handles. The child tables are not
+       made, so makeTables must be called once the last changes are read.
+
+       @param  D The stream from which the vertices are read
+       @throws   java.io.IOException If the stream cannot be read
+     */
+    void readChanges(DataInput D) throws IOException{
+	int n = D.readInt();
+	for (int i=D.readInt(); i>0; i--){
+	    int v = D.readInt();
+	    if ((v < 0) || (v >= n)) throw new IOException("Vertex " + v + " is outside the arena");
+	    while (v >= parent.length) grow();
+	    parent[v]          = D.readInt();
+	    parentDirection[v] = D.readInt();
+	    indexTo[v]         = D.readInt();
+	    indexFrom[v]       = D.readInt();
+	    depth[v]           = D.readInt();
+	    firstChild[v]      = D.readInt();
+	    nextSibling[v]     = D.readInt();
+	    suffixLink[v]      = D.readInt();
+	}
+	nrOfVertices = n;
+	n = D.readInt();
+	for (int i=D.readInt(); i>0; i--){
+	    int l = D.readInt();
+	    if ((l < 0) || (l >= n)) throw new IOException("Leaf " + l + " is outside the arena");
+	    while (l >= leafIndexFrom.length) growLeaves();
+	    leafDirection[l]   = D.readInt();
+	    leafIndexFrom[l]   = D.readInt();
+	    leafNextSibling[l] = D.readInt();
+	}
+	nrOfLeaves = n;
+    }
+
+    /**
+       Makes the child tables of the vertices with more than WIDE_LIMIT children
+       again, after the vertices have been read by readChanges or made by a
+       parallel build. It takes time proportional to the number of vertices.
+     */
+    void makeTables(){
+	for (int v=0; v<nrOfVertices; v++) childTables[v] = (countChildren(v) > WIDE_LIMIT) ? newTable(v) : null;
+    }
+
+    /**
+       Records that every vertex and every leaf is in the last checkpoint.
+     */
+    void saved(){
+	changed.clear();
+	changedLeaves.clear();
+	nrOfVerticesSaved = nrOfVertices;
+	nrOfLeavesSaved = nrOfLeaves;
+    }
+
+    /**
+       Returns a vertex which is a view of a handle.
+
+       @param v The handle of the vertex, which is not a leaf
+       @return  A vertex which is a view of v, or null if v is NONE
+     */
+    Vertex view(int v){
+	return (v == NONE) ? null : new arenaVertex(this, v);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+  Program name: waveletMatrix.java. Is a class representing a wavelet matrix of a sequence of symbols.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA
+
+  AI Agents, hereby disclaims all copyright interest in the program `waveletMatrix.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+/**
+   A wavelet matrix of a sequence of symbols, which counts the occurrences of a symbol
+   before a position in time proportional to the number of bits of a symbol. There is a
+   level for every bit of the symbols, from the highest bit down. A level holds that bit
+   of every symbol, with the symbols ordered by their higher bits with 0 first, and the
+   number of ones before every 64 bits. It takes 1.5 bits per bit of every symbol, so
+   its size does not grow with the number of symbols in the alphabet, only with the
+   logarithm of it.
+
+   @author Tommy Petersen
+ */
+class waveletMatrix{
+
+    private int nrOfBits;
+    private long bits[][];     //the bits of every level
+    private int onesBefore[][];  //the number of ones before every 64 bits of every level
+    private int zeros[];       //the number of zeros of every level
+
+    /**
+       Makes the wavelet matrix of the first symbols of a symbol list.
+
+       @param S The symbol list
+       @param n The number of symbols
+       @param K The number of symbols in the alphabet
+     */
+    waveletMatrix(symbolList S, int n, int K){
+	nrOfBits = getNrOfBits(K);
+	bits = new long[nrOfBits][(n + 64) >>> 6];
+	onesBefore = new int[nrOfBits][bits[0].length + 1];
+	zeros = new int[nrOfBits];
+
+	int A[] = new int[n];
+	int B[] = new int[n];
+	for (int i=0; i<n; i++) A[i] = S.get(i);
+	for (int l=0; l<nrOfBits; l++){
+	    int shift = nrOfBits - 1 - l;
+	    long level[] = bits[l];
+	    int z = 0;
+	    for (int i=0; i<n; i++){
+		if (((A[i] >>> shift) & 1) == 0) z++;
+		else level[i >>> 6] |= 1L << (i & 63);
+	    }
+	    zeros[l] = z;
+	    for (int w=0; w<level.length; w++) onesBefore[l][w + 1] = onesBefore[l][w] + Long.bitCount(level[w]);
+
+	    int o = z;  //the symbols with a 0 are put first, in their order, and then the ones with a 1
+	    z = 0;
+	    for (int i=0; i<n; i++){
+		if (((A[i] >>> shift) & 1) == 0) B[z++] = A[i];
+		else B[o++] = A[i];
+	    }
+	    int T[] = A;
+	    A = B;
+	    B = T;
+	}
+    }
+
+    /**
+       Counts the occurrences of a symbol before a position.
+
+       @param a The symbol
+       @param r The position, which is at most the number of symbols
+       @return  The number of occurrences of a before position r
+     */
+    int rank(int a, int r){
+	int from = 0;
+	for (int l=0; l<nrOfBits; l++){
+	    if (((a >>> (nrOfBits - 1 - l)) & 1) == 0){
+		from -= ones(l, from);
+		r -= ones(l, r);
+	    } else{
+		from = zeros[l] + ones(l, from);
+		r = zeros[l] + ones(l, r);
+	    }
+	}
+	return r - from;
+    }
+
+    /**
+       Gets the number of bits a wavelet matrix takes per symbol.
+
+       @param K The number of symbols in the alphabet
+       @return  The number of bits per symbol, rounded down
+     */
+    static int getBitsPerSymbol(int K){
+	return 3 * getNrOfBits(K) / 2;
+    }
+
+    /*
+       Gets the number of bits of the symbols of an alphabet, which is the number of
+       levels.
+     */
+    private static int getNrOfBits(int K){
+	return Math.max(1, 32 - Integer.numberOfLeadingZeros(K - 1));
+    }
+
+    /*
+       Counts the ones of level l before position i.
+     */
+    private int ones(int l, int i){
+	return onesBefore[l][i >>> 6] + Long.bitCount(bits[l][i >>> 6] & ((1L << (i & 63)) - 1));
+    }
+}
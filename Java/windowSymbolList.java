@@ -0,0 +1,68 @@
+/*
+  Program name: windowSymbolList.java. Is a class representing a symbol list kept in a ring buffer.
+
+  Copyright (C) 2006 Tommy Petersen, AI Agents, e-mail: tp@ai-agents.com.
+
+  This program is free software; you can redistribute it and/or modify it under the terms of
+  the GNU General Public License as published by the Free Software Foundation; either version
+  2 of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  See the GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License along with this program;
+  if not, write to the Free Software Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+  MA 02111-1307 USA  
+
+  AI Agents, hereby disclaims all copyright interest in the program `windowSymbolList.java' written
+  by Tommy Petersen.
+*/
+
+package SuffixTree.Java;
+
+/**
+   A symbol list whose symbols are kept in a ring buffer, which may be shared with other
+   symbol lists. The first symbol of the list is stored at a given offset in the ring
+   buffer, and the list must never hold more symbols than the capacity of the ring buffer.
+   <p>
+   Symbol lists sharing a ring buffer write the same symbol to the same place, so one
+   of them may start where the other one is in the middle of the ring buffer.
+   </p>
+
+   @author Tommy Petersen
+ */
+class windowSymbolList extends symbolList{
+
+    private partitionedIntList ring;
+    private int offset;
+
+    /**
+       Creates a new empty symbol list in a ring buffer.
+
+       @param ring   The ring buffer holding the symbols
+       @param offset The index into the ring buffer of the first symbol
+     */
+    windowSymbolList(partitionedIntList ring, int offset){
+	this.ring   = ring;
+	this.offset = offset;
+    }
+
+    public int get(int i){
+	return ring.get(offset + i);
+    }
+
+    protected void add(int a){
+	ring.set(offset + size, a);
+	size++;
+    }
+
+    /**
+       Gets the index into the ring buffer of the first symbol.
+
+       @return The index into the ring buffer of the first symbol
+     */
+    int getOffset(){
+	return offset;
+    }
+}
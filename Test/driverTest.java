@@ -0,0 +1,17 @@
+package SuffixTree.Java;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/*
+  Runs the checks of the test driver, the class test, in the test phase of the build,
+  which fails if any of them fails.
+*/
+class driverTest{
+
+    @Test
+    void checks() throws Exception{
+	assertEquals(0, test.runChecks(), "failed checks");
+    }
+}